@@ -17,5 +17,11 @@ public abstract class Commands
 		return affectedFrame;
 	}
 	
+	// A command which can no longer be undone is kept on the stack, see Frame.undo()
+	public boolean canUndo()
+	{
+		return true;
+	}
+	
 	public abstract void undo();
 }
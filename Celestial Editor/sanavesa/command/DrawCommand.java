@@ -3,6 +3,7 @@ package sanavesa.command;
 import sanavesa.source.Frame;
 import sanavesa.source.Layer;
 import sanavesa.source.Pixel;
+import sanavesa.source.PixelRaster;
 
 public class DrawCommand extends Commands
 {
@@ -42,13 +43,9 @@ public class DrawCommand extends Commands
 	@Override
 	public void undo()
 	{
-		// Attempt to find the pixel
-		Pixel pixel = affectedFrame.findPixel(p ->
-			(p.getX() == pixelX) && 
-			(p.getY() == pixelY) && 
-			(p.getBrightnessFactor() == pixelBrightnessFactor) &&
-			(p.getLayer() == pixelLayer));
-		
-		affectedFrame.removePixel(pixel);
+		// Look up the pixel, only removing it if it still has the drawn brightness
+		Pixel pixel = affectedFrame.getPixelAt(pixelX, pixelY, pixelLayer);
+		if(pixel != null && PixelRaster.quantizeBrightness(pixel.getBrightnessFactor()) == PixelRaster.quantizeBrightness(pixelBrightnessFactor))
+			affectedFrame.removePixel(pixel);
 	}
 }
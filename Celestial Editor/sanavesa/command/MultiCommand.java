@@ -26,9 +26,13 @@ public class MultiCommand<T extends Commands> extends Commands
 	@Override
 	public void undo()
 	{
-		for(T command : commands)
+		// Undo all of the commands as a single change of the frame
+		affectedFrame.applyBatch(() ->
 		{
-			command.undo();
-		}
+			for(T command : commands)
+			{
+				command.undo();
+			}
+		});
 	}
 }
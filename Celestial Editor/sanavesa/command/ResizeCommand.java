@@ -0,0 +1,96 @@
+package sanavesa.command;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Stack;
+import java.util.WeakHashMap;
+
+import sanavesa.source.Anchor;
+import sanavesa.source.Frame;
+import sanavesa.source.PixelBounds;
+import sanavesa.source.PixelRaster;
+
+public class ResizeCommand extends Commands
+{
+	// The resizes not undone yet, in order, as each frame's stack only holds some of them
+	private static final Stack<ResizeCommand> history = new Stack<>();
+
+	private final int oldWidth, oldHeight;
+	private final int newWidth, newHeight;
+	private final int offsetX, offsetY;
+
+	// Held weakly, so the frames deleted after the resize are not kept alive
+	private final Map<Frame, PixelRaster> croppedPixels = new WeakHashMap<>();
+
+	public ResizeCommand(Frame affectedFrame, Collection<Frame> frames, int newWidth, int newHeight, Anchor anchor)
+	{
+		super(affectedFrame);
+		oldWidth = Frame.getFrameWidth();
+		oldHeight = Frame.getFrameHeight();
+		this.newWidth = newWidth;
+		this.newHeight = newHeight;
+		offsetX = anchor.getOffsetX(oldWidth, newWidth);
+		offsetY = anchor.getOffsetY(oldHeight, newHeight);
+
+		// Only record the pixels the resize will crop, the cells it keeps are moved back on undo
+		PixelBounds kept = new PixelBounds(-offsetX, -offsetY, newWidth - 1 - offsetX, newHeight - 1 - offsetY);
+		for(Frame frame : frames)
+		{
+			PixelRaster cropped = frame.copyPixelsOutside(kept);
+			if(cropped.size() > 0)
+				croppedPixels.put(frame, cropped);
+		}
+
+		// Created right before the frames are resized
+		history.push(this);
+	}
+
+	// The latest resize not undone yet, null if there is none
+	public static ResizeCommand getLatest()
+	{
+		return history.isEmpty() ? null : history.peek();
+	}
+
+	public int getOldWidth()
+	{
+		return oldWidth;
+	}
+
+	public int getOldHeight()
+	{
+		return oldHeight;
+	}
+
+	public int getNewWidth()
+	{
+		return newWidth;
+	}
+
+	public int getNewHeight()
+	{
+		return newHeight;
+	}
+
+	// Only the latest resize can be undone, the cropped pixels of the earlier ones no longer line up
+	@Override
+	public boolean canUndo()
+	{
+		return !history.isEmpty() && history.peek() == this
+				&& Frame.getFrameWidth() == newWidth && Frame.getFrameHeight() == newHeight;
+	}
+
+	@Override
+	public void undo()
+	{
+		if(!canUndo())
+			return;
+		history.pop();
+
+		// Resize back with the opposite offset, which keeps everything drawn since, then put back the cropped pixels
+		Frame.resizeFrame(oldWidth, oldHeight, -offsetX, -offsetY);
+		for(Map.Entry<Frame, PixelRaster> entry : croppedPixels.entrySet())
+		{
+			entry.getKey().restorePixels(entry.getValue());
+		}
+	}
+}
@@ -0,0 +1,304 @@
+/***************************************************************************************************************************
+ * Class:		BatchExport.java
+ * Author:		Mohammad Alali
+ *
+ * Description:	Exports many frames as PNG files into a directory, compositing and encoding them concurrently on a bounded
+ * 				pool of background threads. The files are named after the position of their frame, so they sort in the
+ * 				order of the frames. The progress is reported as the frames are written, and the export can be cancelled.
+ *
+ * Attributes:
+ * 				List<FrameSnapshot> frames
+ * 				List<File> files
+ * 				int threadCount
+ * 				Listener listener
+ * 				AtomicInteger exportedCount
+ * 				AtomicInteger remainingCount
+ * 				AtomicReference<Exception> failure
+ * 				boolean isCancelled
+ * 				CountDownLatch finished
+ *
+ * Methods:
+ * 				static String fileNameOf(int, int, String)
+ * 				void start()
+ * 				void cancel()
+ * 				boolean isCancelled()
+ * 				boolean isFinished()
+ * 				int getExportedCount()
+ * 				int getFrameCount()
+ * 				List<File> getFiles()
+ * 				void await()
+ *
+ ***************************************************************************************************************************/
+
+package sanavesa.export;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import sanavesa.source.Frame;
+import sanavesa.source.FrameSnapshot;
+
+/**
+ * Exports many frames as PNG files into a directory, on a bounded pool of background threads.
+ * <p>
+ * Each frame is composited and encoded by {@link FrameExporter#writePng(FrameSnapshot, File)} on its own
+ * task, so the export scales with the amount of cores, and at most one image per thread is held in memory.
+ * The snapshots are taken with {@link Frame#snapshot()} on the JavaFX thread before the export starts,
+ * so the frames can keep being edited meanwhile.
+ * </p>
+ * <p>
+ * The {@link Listener} is called on the threads of the export, and must hand its work over to the JavaFX
+ * thread itself. If a frame fails to export, or the export is cancelled, the frames which did not start
+ * yet are skipped, and the files already written are kept.
+ * </p>
+ * @author Mohammad Alali
+ */
+public class BatchExport
+{
+	/** The snapshots of the frames to export, in order */
+	private final List<FrameSnapshot> frames;
+
+	/** The file of each frame, in the same order */
+	private final List<File> files;
+
+	/** The amount of threads which export the frames */
+	private final int threadCount;
+
+	/** Notified of the progress of the export */
+	private final Listener listener;
+
+	/** The amount of frames written */
+	private final AtomicInteger exportedCount = new AtomicInteger();
+
+	/** The amount of frames which are neither written nor skipped */
+	private final AtomicInteger remainingCount;
+
+	/** The first failure of the export, null if none */
+	private final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+
+	/** Whether the export was cancelled */
+	private volatile boolean isCancelled = false;
+
+	/** Whether {@link #start()} was called */
+	private boolean isStarted = false;
+
+	/** Released once every frame is written or skipped */
+	private final CountDownLatch finished = new CountDownLatch(1);
+
+	/**
+	 * Creates an export of the frames, using a thread per available core.
+	 * @param frames		the snapshots of the frames to export, in order
+	 * @param directory		the directory to write the files into
+	 * @param listener		notified of the progress of the export
+	 */
+	public BatchExport(List<FrameSnapshot> frames, File directory, Listener listener)
+	{
+		this(frames, directory, listener, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates an export of the frames.
+	 * @param frames		the snapshots of the frames to export, in order
+	 * @param directory		the directory to write the files into
+	 * @param listener		notified of the progress of the export
+	 * @param threadCount	the most frames exported at once
+	 */
+	public BatchExport(List<FrameSnapshot> frames, File directory, Listener listener, int threadCount)
+	{
+		this.frames = new ArrayList<FrameSnapshot>(frames);
+		this.listener = listener;
+		this.threadCount = Math.max(1, Math.min(threadCount, this.frames.size()));
+		remainingCount = new AtomicInteger(this.frames.size());
+
+		// Name the files up front, so their order never depends on which thread finishes first
+		List<File> files = new ArrayList<File>(this.frames.size());
+		for(int i = 0; i < this.frames.size(); i++)
+		{
+			files.add(new File(directory, fileNameOf(i, this.frames.size(), this.frames.get(i).getName())));
+		}
+		this.files = Collections.unmodifiableList(files);
+	}
+
+	/**
+	 * Returns the name of the file of a frame. The position of the frame comes first, padded with zeros,
+	 * so the files sort in the order of the frames even if frames share a name. Characters which are not
+	 * allowed in file names are replaced.
+	 * @param index			the position of the frame
+	 * @param frameCount	the amount of frames exported
+	 * @param frameName		the name of the frame
+	 * @return the name of the PNG file of the frame
+	 */
+	public static String fileNameOf(int index, int frameCount, String frameName)
+	{
+		int digits = String.valueOf(Math.max(frameCount - 1, 0)).length();
+		String name = (frameName == null) ? "" : frameName.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_").trim();
+		if(name.isEmpty())
+			name = "Frame";
+
+		return String.format("%0" + digits + "d_%s.png", index, name);
+	}
+
+	/**
+	 * Starts exporting the frames in the background, and returns immediately.
+	 * @throws IllegalStateException	if the export was already started
+	 */
+	public void start()
+	{
+		if(isStarted)
+			throw new IllegalStateException("The export was already started");
+		isStarted = true;
+
+		if(frames.isEmpty())
+		{
+			finish();
+			return;
+		}
+
+		ExecutorService workers = Executors.newFixedThreadPool(threadCount, runnable ->
+		{
+			Thread thread = new Thread(runnable, "Batch Export");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		for(int i = 0; i < frames.size(); i++)
+		{
+			int index = i;
+			workers.execute(() -> export(index));
+		}
+
+		// The threads end once the queued frames are done
+		workers.shutdown();
+	}
+
+	/**
+	 * Cancels the export. The frames being written are finished, and the remaining ones are skipped.
+	 */
+	public void cancel()
+	{
+		isCancelled = true;
+	}
+
+	/**
+	 * @return true if the export was cancelled
+	 */
+	public boolean isCancelled()
+	{
+		return isCancelled;
+	}
+
+	/**
+	 * @return true once every frame is written or skipped
+	 */
+	public boolean isFinished()
+	{
+		return finished.getCount() == 0;
+	}
+
+	/**
+	 * @return the amount of frames written so far
+	 */
+	public int getExportedCount()
+	{
+		return exportedCount.get();
+	}
+
+	/**
+	 * @return the amount of frames to export
+	 */
+	public int getFrameCount()
+	{
+		return frames.size();
+	}
+
+	/**
+	 * @return the file of each frame, in the order of the frames
+	 */
+	public List<File> getFiles()
+	{
+		return files;
+	}
+
+	/**
+	 * Waits until every frame is written or skipped.
+	 * @throws IOException				if a frame failed to export
+	 * @throws CancellationException	if the export was cancelled
+	 * @throws InterruptedException		if the waiting thread is interrupted
+	 */
+	public void await() throws IOException, InterruptedException
+	{
+		finished.await();
+
+		Exception exception = failure.get();
+		if(exception instanceof IOException)
+			throw (IOException) exception;
+		if(exception != null)
+			throw new IOException(exception);
+		if(isCancelled)
+			throw new CancellationException("The export was cancelled");
+	}
+
+	/**
+	 * Exports a single frame on a thread of the export, unless the export was cancelled or failed.
+	 * @param index	the position of the frame
+	 */
+	private void export(int index)
+	{
+		try
+		{
+			if(!isCancelled && failure.get() == null)
+			{
+				FrameExporter.writePng(frames.get(index), files.get(index));
+				listener.onProgress(exportedCount.incrementAndGet(), frames.size());
+			}
+		}
+		catch(Exception e)
+		{
+			// Only the first failure is reported, the remaining frames are skipped
+			failure.compareAndSet(null, e);
+		}
+		finally
+		{
+			if(remainingCount.decrementAndGet() == 0)
+				finish();
+		}
+	}
+
+	/** Called once every frame is written or skipped */
+	private void finish()
+	{
+		finished.countDown();
+
+		Exception exception = failure.get();
+		if(exception == null && isCancelled)
+			exception = new CancellationException("The export was cancelled");
+		listener.onFinished(exception);
+	}
+
+	/** Notified of the progress of a {@link BatchExport}, on the threads of the export */
+	public interface Listener
+	{
+		/**
+		 * Called whenever a frame is written.
+		 * @param exportedCount		the amount of frames written so far
+		 * @param frameCount		the amount of frames to export
+		 */
+		void onProgress(int exportedCount, int frameCount);
+
+		/**
+		 * Called once every frame is written or skipped.
+		 * @param failure	the first failure of the export, a {@link CancellationException} if it was cancelled,
+		 * 					null if every frame was written
+		 */
+		void onFinished(Exception failure);
+	}
+}
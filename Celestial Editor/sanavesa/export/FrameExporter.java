@@ -0,0 +1,92 @@
+/***************************************************************************************************************************
+ * Class:		FrameExporter.java
+ * Author:		Mohammad Alali
+ *
+ * Description:	Contains the methods which composite a snapshot of a frame into an image to be exported. The pixels are
+ * 				blended in software straight into an int ARGB array, or into the raster of a BufferedImage, so exporting
+ * 				neither needs the JavaFX thread nor a running toolkit.
+ *
+ * Attributes:
+ * 				N/A
+ *
+ * Methods:
+ * 				static int[] toArgb(FrameSnapshot)
+ * 				static BufferedImage toBufferedImage(FrameSnapshot)
+ * 				static void writePng(FrameSnapshot, File)
+ *
+ ***************************************************************************************************************************/
+
+package sanavesa.export;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import sanavesa.source.Frame;
+import sanavesa.source.FrameSnapshot;
+import sanavesa.source.PixelBounds;
+
+/**
+ * Contains the methods which composite a {@link FrameSnapshot} into an image to be exported.
+ * <p>
+ * The snapshot is taken with {@link Frame#snapshot()} on the JavaFX thread, after which every method
+ * can be called from any thread. The colors of the layers were captured by the snapshot once per
+ * layer and brightness, and the pixels of each cell are blended in depth order. A hidden frame
+ * exports as a fully transparent image, the same size as the frame.
+ * </p>
+ * <p>
+ * The FrameExporter class cannot be instantiated.
+ * </p>
+ * @author Mohammad Alali
+ */
+public class FrameExporter
+{
+	/** Private constructor to disallow instantiation of this class */
+	private FrameExporter() {}
+
+	/**
+	 * Composites the frame over a transparent background.
+	 * @param snapshot	the snapshot of the frame to composite
+	 * @return the ARGB value of every cell of the frame, row by row
+	 */
+	public static int[] toArgb(FrameSnapshot snapshot)
+	{
+		return snapshot.toArgb(0);
+	}
+
+	/**
+	 * Composites the frame over a transparent background, straight into the pixels of the image.
+	 * @param snapshot	the snapshot of the frame to composite
+	 * @return an image of type {@link BufferedImage#TYPE_INT_ARGB}, the same size as the frame
+	 */
+	public static BufferedImage toBufferedImage(FrameSnapshot snapshot)
+	{
+		int width = snapshot.getWidth();
+		BufferedImage image = new BufferedImage(Math.max(width, 1), Math.max(snapshot.getHeight(), 1), BufferedImage.TYPE_INT_ARGB);
+
+		// The image starts transparent, so only the painted area is blended
+		PixelBounds paintedBounds = snapshot.getPaintedBounds();
+		if(snapshot.getVisibility() && paintedBounds != null)
+		{
+			int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+			snapshot.blendInto(paintedBounds, pixels, paintedBounds.getMinY() * width + paintedBounds.getMinX(), width);
+		}
+
+		return image;
+	}
+
+	/**
+	 * Composites the frame over a transparent background, and writes it as a PNG file.
+	 * @param snapshot	the snapshot of the frame to export
+	 * @param file		the file to write, replaced if it exists
+	 * @throws IOException	if the file could not be written
+	 */
+	public static void writePng(FrameSnapshot snapshot, File file) throws IOException
+	{
+		if(!ImageIO.write(toBufferedImage(snapshot), "png", file))
+			throw new IOException("No PNG writer is available");
+	}
+}
@@ -0,0 +1,552 @@
+/***************************************************************************************************************************
+ * Class:		GifEncoder.java
+ * Author:		Mohammad Alali
+ *
+ * Description:	Writes frames as an animated GIF89a image, one frame at a time. The global color table holds the colors of
+ * 				the layers, at the brightness they are used, so pixel art needs no quantization. Each frame only stores the
+ * 				rectangle which changed since the previous frame, and the cells which did not change inside it are stored
+ * 				as transparent, which compresses well. Only the previous frame is kept, so the frames are streamed.
+ *
+ * Attributes:
+ * 				OutputStream out
+ * 				int width
+ * 				int height
+ * 				ColorTable globalColors
+ * 				int loopCount
+ * 				boolean isHeaderWritten
+ * 				int[] previousArgb
+ * 				EncodedFrame pendingFrame
+ * 				GifLzwEncoder lzwEncoder
+ *
+ * Methods:
+ * 				static int[] collectColors(Iterable<FrameSnapshot>)
+ * 				static void writeGif(List<FrameSnapshot>, int, File)
+ * 				void setLoopCount(int)
+ * 				void addFrame(FrameSnapshot, int)
+ * 				void finish()
+ * 				void close()
+ *
+ ***************************************************************************************************************************/
+
+package sanavesa.export;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import sanavesa.source.Frame;
+import sanavesa.source.FrameSnapshot;
+import sanavesa.source.PixelBounds;
+
+/**
+ * Writes frames as an animated GIF89a image, one frame at a time.
+ * <p>
+ * Every pixel of a frame references a layer, so the colors of the animation are the colors of the layers
+ * at the brightness they are used, see {@link #collectColors(Iterable)}, which make up the global color table.
+ * Only cells where translucent layers overlap can have other colors, in which case the frame gets a local
+ * color table of its exact colors. Should a frame have more than 255 colors, its least used colors are
+ * replaced by the nearest of the remaining ones.
+ * </p>
+ * <p>
+ * Color index 0 is transparent, which is used for the empty cells, the cells of hidden layers, and hidden frames.
+ * A GIF has no partial transparency, so every other cell is fully opaque.
+ * </p>
+ * <p>
+ * Each frame is written once the next one is added, since a frame which clears cells requires the previous
+ * frame to cover those cells, and to restore its rectangle to the background once it is done. Frames which
+ * do not change anything extend the delay of the previous frame instead.
+ * </p>
+ * <p>
+ * The snapshots are taken with {@link Frame#snapshot()} on the JavaFX thread, after which the encoder can run on any thread.
+ * </p>
+ * @author Mohammad Alali
+ */
+public class GifEncoder implements Closeable
+{
+	/** Leaves the frame in place once its delay is over */
+	private static final int disposeNone = 1;
+
+	/** Restores the rectangle of the frame to the transparent background once its delay is over */
+	private static final int disposeToBackground = 2;
+
+	/** The color index of the transparent cells */
+	private static final int transparentIndex = 0;
+
+	/** The stream the image is written to */
+	private final OutputStream out;
+
+	/** The width of the image */
+	private final int width;
+
+	/** The height of the image */
+	private final int height;
+
+	/** The colors of the layers, shared by every frame */
+	private final ColorTable globalColors;
+
+	/** The amount of times the animation repeats, 0 to repeat forever */
+	private int loopCount = 0;
+
+	/** Whether the header and the global color table were written */
+	private boolean isHeaderWritten = false;
+
+	/** The cells shown once the pending frame is displayed, null before the first frame */
+	private int[] previousArgb = null;
+
+	/** The last frame added, written once the next frame is added or the image is finished */
+	private EncodedFrame pendingFrame = null;
+
+	/** Whether the image was finished */
+	private boolean isFinished = false;
+
+	/** Compresses the color indices of the frames */
+	private final GifLzwEncoder lzwEncoder = new GifLzwEncoder();
+
+	/**
+	 * Creates an encoder which writes to the stream. Nothing is written until the first frame is added.
+	 * @param out			the stream to write to, which should be buffered
+	 * @param width			the width of the image, the width of the frames
+	 * @param height		the height of the image, the height of the frames
+	 * @param colors		the RGB colors of the global color table, at most 255, see {@link #collectColors(Iterable)}
+	 */
+	public GifEncoder(OutputStream out, int width, int height, int[] colors)
+	{
+		this.out = out;
+		this.width = width;
+		this.height = height;
+		globalColors = new ColorTable(colors);
+	}
+
+	/**
+	 * Collects the colors of the visible pixels of the frames, which are the colors of their layers at the
+	 * brightness they are used. Only the painted cells are visited, without compositing the frames.
+	 * If there are more than 255 colors, the most used ones are returned.
+	 * @param frames	the snapshots of the frames
+	 * @return the distinct RGB colors, most used first
+	 */
+	public static int[] collectColors(Iterable<FrameSnapshot> frames)
+	{
+		Map<Integer, Integer> usage = new HashMap<Integer, Integer>();
+		for(FrameSnapshot frame : frames)
+		{
+			PixelBounds paintedBounds = frame.getPaintedBounds();
+			if(frame.getVisibility() && paintedBounds != null)
+			{
+				frame.forEachArgb(paintedBounds, (x, y, argb) ->
+				{
+					if((argb >>> 24) != 0)
+						usage.merge(argb & 0xFFFFFF, 1, Integer::sum);
+				});
+			}
+		}
+
+		return mostUsed(usage, 255);
+	}
+
+	/**
+	 * Writes the frames as an animated GIF file, which repeats forever.
+	 * @param frames		the snapshots of the frames, in order
+	 * @param delay			the time each frame is shown, in milliseconds
+	 * @param file			the file to write, replaced if it exists
+	 * @throws IOException	if the file could not be written
+	 */
+	public static void writeGif(List<FrameSnapshot> frames, int delay, File file) throws IOException
+	{
+		int width = frames.isEmpty() ? 1 : frames.get(0).getWidth();
+		int height = frames.isEmpty() ? 1 : frames.get(0).getHeight();
+		try(GifEncoder encoder = new GifEncoder(new BufferedOutputStream(new FileOutputStream(file)), width, height, collectColors(frames)))
+		{
+			for(FrameSnapshot frame : frames)
+			{
+				encoder.addFrame(frame, delay);
+			}
+		}
+	}
+
+	/**
+	 * @param loopCount		the amount of times the animation repeats, 0 to repeat forever, which is the default.
+	 * 						Must be set before the first frame is added.
+	 */
+	public void setLoopCount(int loopCount)
+	{
+		this.loopCount = Math.max(0, Math.min(loopCount, 0xFFFF));
+	}
+
+	/**
+	 * Adds a frame to the animation. The previous frame is written, so only the added frame is kept.
+	 * @param frame		the snapshot of the frame, the same size as the image
+	 * @param delay		the time the frame is shown, in milliseconds
+	 * @throws IOException	if the stream fails
+	 * @throws IllegalArgumentException	if the frame is not the same size as the image
+	 */
+	public void addFrame(FrameSnapshot frame, int delay) throws IOException
+	{
+		if(isFinished)
+			throw new IllegalStateException("The image was already finished");
+		if(frame.getWidth() != width || frame.getHeight() != height)
+			throw new IllegalArgumentException("The frame is " + frame.getWidth() + "x" + frame.getHeight()
+					+ " but the image is " + width + "x" + height);
+
+		if(!isHeaderWritten)
+			writeHeader();
+
+		// A GIF cell is either fully transparent or opaque
+		int[] argb = frame.toArgb(0);
+		for(int i = 0; i < argb.length; i++)
+		{
+			argb[i] = ((argb[i] >>> 24) == 0) ? 0 : (0xFF000000 | argb[i]);
+		}
+
+		// The first frame is stored whole
+		if(previousArgb == null)
+		{
+			pendingFrame = encode(argb, null, 0, 0, width, height, delay);
+			previousArgb = argb;
+			return;
+		}
+
+		// Find the rectangle of the cells which changed, and whether any of them was cleared
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		boolean isClearing = false;
+		for(int y = 0, i = 0; y < height; y++)
+		{
+			for(int x = 0; x < width; x++, i++)
+			{
+				if(argb[i] != previousArgb[i])
+				{
+					minX = Math.min(minX, x);
+					maxX = Math.max(maxX, x);
+					minY = Math.min(minY, y);
+					maxY = Math.max(maxY, y);
+					isClearing |= (argb[i] == 0);
+				}
+			}
+		}
+
+		// Nothing changed, the previous frame is shown for longer instead
+		if(minX > maxX)
+		{
+			pendingFrame.delay += delay;
+			return;
+		}
+
+		if(isClearing)
+		{
+			// A cell can only become transparent if the previous frame restores a rectangle covering it to the
+			// background. The previous frame is stored again over both rectangles, every cell as shown, and this
+			// frame then stores every cell of that rectangle as well.
+			minX = Math.min(minX, pendingFrame.x);
+			minY = Math.min(minY, pendingFrame.y);
+			maxX = Math.max(maxX, pendingFrame.x + pendingFrame.width - 1);
+			maxY = Math.max(maxY, pendingFrame.y + pendingFrame.height - 1);
+			EncodedFrame restoringFrame = encode(previousArgb, null, minX, minY, maxX - minX + 1, maxY - minY + 1, pendingFrame.delay);
+			restoringFrame.disposal = disposeToBackground;
+			writeFrame(restoringFrame);
+			pendingFrame = encode(argb, null, minX, minY, maxX - minX + 1, maxY - minY + 1, delay);
+		}
+		else
+		{
+			// The cells which did not change are already shown, and are stored as transparent
+			writeFrame(pendingFrame);
+			pendingFrame = encode(argb, previousArgb, minX, minY, maxX - minX + 1, maxY - minY + 1, delay);
+		}
+
+		previousArgb = argb;
+	}
+
+	/**
+	 * Writes the last frame and the trailer of the image, and flushes the stream. The stream is not closed.
+	 * @throws IOException	if the stream fails
+	 */
+	public void finish() throws IOException
+	{
+		if(isFinished)
+			return;
+
+		if(!isHeaderWritten)
+			writeHeader();
+		if(pendingFrame != null)
+			writeFrame(pendingFrame);
+
+		out.write(0x3B);
+		out.flush();
+		pendingFrame = null;
+		previousArgb = null;
+		isFinished = true;
+	}
+
+	/**
+	 * Finishes the image, and closes the stream.
+	 * @throws IOException	if the stream fails
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			finish();
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 * Turns a rectangle of the cells into color indices.
+	 * @param argb				the cells of the frame, either transparent or opaque
+	 * @param unchangedArgb		the cells already shown, which are stored as transparent, null to store every cell
+	 * @return the frame, ready to be written
+	 */
+	private EncodedFrame encode(int[] argb, int[] unchangedArgb, int x, int y, int rectWidth, int rectHeight, int delay)
+	{
+		EncodedFrame encoded = new EncodedFrame(x, y, rectWidth, rectHeight, delay);
+		ColorTable colors = globalColors;
+
+		// Use the global color table, unless a cell has a color which is not part of it
+		if(!fillIndices(encoded, argb, unchangedArgb, colors))
+		{
+			Map<Integer, Integer> usage = new HashMap<Integer, Integer>();
+			for(int row = y; row < y + rectHeight; row++)
+			{
+				for(int i = row * width + x; i < row * width + x + rectWidth; i++)
+				{
+					if(argb[i] != 0 && (unchangedArgb == null || argb[i] != unchangedArgb[i]))
+						usage.merge(argb[i] & 0xFFFFFF, 1, Integer::sum);
+				}
+			}
+
+			colors = new ColorTable(mostUsed(usage, 255));
+			colors.isApproximate = usage.size() > 255;
+			encoded.localColors = colors;
+			fillIndices(encoded, argb, unchangedArgb, colors);
+		}
+
+		return encoded;
+	}
+
+	/**
+	 * Fills the color indices of the frame from the color table.
+	 * @return false if a color is not part of an exact color table, in which case the indices are incomplete
+	 */
+	private boolean fillIndices(EncodedFrame encoded, int[] argb, int[] unchangedArgb, ColorTable colors)
+	{
+		int index = 0;
+		for(int row = encoded.y; row < encoded.y + encoded.height; row++)
+		{
+			for(int i = row * width + encoded.x; i < row * width + encoded.x + encoded.width; i++)
+			{
+				int colorIndex = transparentIndex;
+				if(argb[i] != 0 && (unchangedArgb == null || argb[i] != unchangedArgb[i]))
+				{
+					colorIndex = colors.indexOf(argb[i] & 0xFFFFFF);
+					if(colorIndex < 0)
+						return false;
+				}
+				encoded.indices[index++] = (byte) colorIndex;
+			}
+		}
+		return true;
+	}
+
+	/** Writes the header, the global color table, and the looping extension */
+	private void writeHeader() throws IOException
+	{
+		out.write(new byte[] {'G', 'I', 'F', '8', '9', 'a'});
+
+		// Logical screen descriptor, with a global color table and 8 bits per primary color
+		writeShort(width);
+		writeShort(height);
+		out.write(0x80 | (7 << 4) | (globalColors.sizeBits - 1));
+		out.write(transparentIndex);
+		out.write(0);
+		globalColors.write(out);
+
+		// The NETSCAPE2.0 application extension makes the animation repeat
+		out.write(0x21);
+		out.write(0xFF);
+		out.write(11);
+		out.write(new byte[] {'N', 'E', 'T', 'S', 'C', 'A', 'P', 'E', '2', '.', '0'});
+		out.write(3);
+		out.write(1);
+		writeShort(loopCount);
+		out.write(0);
+
+		isHeaderWritten = true;
+	}
+
+	/** Writes the graphic control extension, the image descriptor, the local color table if any, and the indices */
+	private void writeFrame(EncodedFrame frame) throws IOException
+	{
+		// Graphic control extension, with the disposal, the delay in hundredths of a second, and the transparent index.
+		// Most viewers show delays below 2 hundredths as 10, so short delays are rounded up to 2.
+		int delay = (frame.delay <= 0) ? 0 : Math.max(2, Math.min((frame.delay + 5) / 10, 0xFFFF));
+		out.write(0x21);
+		out.write(0xF9);
+		out.write(4);
+		out.write((frame.disposal << 2) | 1);
+		writeShort(delay);
+		out.write(transparentIndex);
+		out.write(0);
+
+		// Image descriptor
+		ColorTable colors = (frame.localColors == null) ? globalColors : frame.localColors;
+		out.write(0x2C);
+		writeShort(frame.x);
+		writeShort(frame.y);
+		writeShort(frame.width);
+		writeShort(frame.height);
+		out.write((frame.localColors == null) ? 0 : (0x80 | (colors.sizeBits - 1)));
+		if(frame.localColors != null)
+			frame.localColors.write(out);
+
+		lzwEncoder.encode(frame.indices, frame.indices.length, Math.max(2, colors.sizeBits), out);
+	}
+
+	/** Writes a 16-bit value, least significant byte first */
+	private void writeShort(int value) throws IOException
+	{
+		out.write(value & 0xFF);
+		out.write((value >> 8) & 0xFF);
+	}
+
+	/**
+	 * @return the colors ordered from the most to the least used, at most the specified amount
+	 */
+	private static int[] mostUsed(Map<Integer, Integer> usage, int maxColors)
+	{
+		List<Map.Entry<Integer, Integer>> entries = new ArrayList<Map.Entry<Integer, Integer>>(usage.entrySet());
+		entries.sort((entry1, entry2) -> Integer.compare(entry2.getValue(), entry1.getValue()));
+
+		int[] colors = new int[Math.min(entries.size(), maxColors)];
+		for(int i = 0; i < colors.length; i++)
+		{
+			colors[i] = entries.get(i).getKey();
+		}
+		return colors;
+	}
+
+	/** A frame turned into color indices, waiting to be written */
+	private static class EncodedFrame
+	{
+		/** The rectangle of the image covered by the frame */
+		final int x, y, width, height;
+
+		/** The color index of each cell of the rectangle, row by row */
+		final byte[] indices;
+
+		/** The time the frame is shown, in milliseconds */
+		int delay;
+
+		/** What happens to the rectangle once the delay is over */
+		int disposal = disposeNone;
+
+		/** The colors of the frame, null if it uses the global color table */
+		ColorTable localColors = null;
+
+		EncodedFrame(int x, int y, int width, int height, int delay)
+		{
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+			this.delay = delay;
+			indices = new byte[width * height];
+		}
+	}
+
+	/** The colors of a color table, after the transparent color at index 0 */
+	private static class ColorTable
+	{
+		/** The RGB color of each index, index 0 being transparent */
+		final int[] colors;
+
+		/** The index of each RGB color */
+		final Map<Integer, Integer> indices = new HashMap<Integer, Integer>();
+
+		/** The amount of bits of an index, the table holds 2 to the power of this many colors */
+		final int sizeBits;
+
+		/** Whether colors missing from the table are replaced by the nearest one */
+		boolean isApproximate = false;
+
+		/** The last color looked up, neighbouring cells tend to share their color */
+		private int lastColor = -1;
+
+		/** The index of the last color looked up */
+		private int lastIndex = -1;
+
+		ColorTable(int[] rgbColors)
+		{
+			colors = new int[rgbColors.length + 1];
+			for(int i = 0; i < rgbColors.length; i++)
+			{
+				colors[i + 1] = rgbColors[i];
+				indices.putIfAbsent(rgbColors[i], i + 1);
+			}
+
+			int bits = 1;
+			while((1 << bits) < colors.length)
+			{
+				bits++;
+			}
+			sizeBits = bits;
+		}
+
+		/**
+		 * @return the index of the RGB color, -1 if it is not part of an exact table
+		 */
+		int indexOf(int rgb)
+		{
+			if(rgb == lastColor)
+				return lastIndex;
+
+			Integer index = indices.get(rgb);
+			int result = (index != null) ? index : (isApproximate ? nearestIndexOf(rgb) : -1);
+			lastColor = rgb;
+			lastIndex = result;
+			return result;
+		}
+
+		/** @return the index of the color nearest to the RGB color, by the squared distance of their components */
+		private int nearestIndexOf(int rgb)
+		{
+			int nearest = 1;
+			int nearestDistance = Integer.MAX_VALUE;
+			for(int i = 1; i < colors.length; i++)
+			{
+				int dr = ((rgb >> 16) & 0xFF) - ((colors[i] >> 16) & 0xFF);
+				int dg = ((rgb >> 8) & 0xFF) - ((colors[i] >> 8) & 0xFF);
+				int db = (rgb & 0xFF) - (colors[i] & 0xFF);
+				int distance = dr * dr + dg * dg + db * db;
+				if(distance < nearestDistance)
+				{
+					nearest = i;
+					nearestDistance = distance;
+				}
+			}
+			indices.put(rgb, nearest);
+			return nearest;
+		}
+
+		/** Writes the table, padded with black up to its size */
+		void write(OutputStream out) throws IOException
+		{
+			for(int i = 0; i < (1 << sizeBits); i++)
+			{
+				int rgb = (i < colors.length) ? colors[i] : 0;
+				out.write((rgb >> 16) & 0xFF);
+				out.write((rgb >> 8) & 0xFF);
+				out.write(rgb & 0xFF);
+			}
+		}
+	}
+}
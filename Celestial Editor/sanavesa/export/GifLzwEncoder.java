@@ -0,0 +1,183 @@
+/***************************************************************************************************************************
+ * Class:		GifLzwEncoder.java
+ * Author:		Mohammad Alali
+ *
+ * Description:	Compresses the color indices of a GIF image with the variable-length LZW compression of the GIF format,
+ * 				and writes them as data sub-blocks of at most 255 bytes each. The dictionary is an open addressing hash
+ * 				table of the strings seen so far, which is cleared once all of the 4096 codes are used.
+ *
+ * Attributes:
+ * 				int[] hashKeys
+ * 				int[] hashCodes
+ * 				byte[] block
+ * 				int blockSize
+ * 				int bitBuffer
+ * 				int bitCount
+ *
+ * Methods:
+ * 				void encode(byte[], int, int, OutputStream)
+ *
+ ***************************************************************************************************************************/
+
+package sanavesa.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Compresses the color indices of a GIF image with the LZW compression of the GIF format.
+ * <p>
+ * Codes start one bit wider than the minimum code size, and widen by one bit whenever the next
+ * code would not fit, up to 12 bits. Once all 4096 codes are used, a clear code is written and the
+ * dictionary starts over. The codes are packed least significant bit first into sub-blocks.
+ * </p>
+ * @author Mohammad Alali
+ */
+class GifLzwEncoder
+{
+	/** The most codes of the dictionary, which are at most 12 bits wide */
+	private static final int maxCodes = 4096;
+
+	/** The size of the hash table of the dictionary, a prime larger than the amount of codes */
+	private static final int hashSize = 5003;
+
+	/** The strings of the dictionary, as their prefix code and their last index, -1 if the slot is empty */
+	private final int[] hashKeys = new int[hashSize];
+
+	/** The code of the string in each slot of the hash table */
+	private final int[] hashCodes = new int[hashSize];
+
+	/** The sub-block being filled */
+	private final byte[] block = new byte[255];
+
+	/** The amount of bytes in the sub-block */
+	private int blockSize = 0;
+
+	/** The bits not yet written into the sub-block, least significant first */
+	private int bitBuffer = 0;
+
+	/** The amount of bits in the bit buffer */
+	private int bitCount = 0;
+
+	/**
+	 * Writes the minimum code size, followed by the compressed indices in sub-blocks, and the block terminator.
+	 * @param indices			the color indices of the image, row by row
+	 * @param length			the amount of indices to compress
+	 * @param minimumCodeSize	the amount of bits of the color indices, at least 2
+	 * @param out				the stream to write to
+	 * @throws IOException	if the stream fails
+	 */
+	void encode(byte[] indices, int length, int minimumCodeSize, OutputStream out) throws IOException
+	{
+		int clearCode = 1 << minimumCodeSize;
+		int endCode = clearCode + 1;
+		int nextCode = endCode + 1;
+		int codeSize = minimumCodeSize + 1;
+
+		out.write(minimumCodeSize);
+		blockSize = 0;
+		bitBuffer = 0;
+		bitCount = 0;
+		Arrays.fill(hashKeys, -1);
+
+		writeCode(clearCode, codeSize, out);
+		if(length > 0)
+		{
+			int prefix = indices[0] & 0xFF;
+			for(int i = 1; i < length; i++)
+			{
+				int index = indices[i] & 0xFF;
+				int key = (prefix << 8) | index;
+
+				// Extend the string while it is in the dictionary
+				int slot = findSlot(key);
+				if(hashKeys[slot] == key)
+				{
+					prefix = hashCodes[slot];
+					continue;
+				}
+
+				writeCode(prefix, codeSize, out);
+
+				// Add the extended string, or start over once the dictionary is full
+				if(nextCode == maxCodes)
+				{
+					writeCode(clearCode, codeSize, out);
+					Arrays.fill(hashKeys, -1);
+					nextCode = endCode + 1;
+					codeSize = minimumCodeSize + 1;
+				}
+				else
+				{
+					if(nextCode >= (1 << codeSize))
+						codeSize++;
+					hashKeys[slot] = key;
+					hashCodes[slot] = nextCode++;
+				}
+
+				prefix = index;
+			}
+			writeCode(prefix, codeSize, out);
+
+			// The decoder adds the string of the last code once read, so it may widen before the end code
+			if(nextCode >= (1 << codeSize) && codeSize < 12)
+				codeSize++;
+		}
+		writeCode(endCode, codeSize, out);
+
+		// Flush the remaining bits and the last sub-block, followed by the block terminator
+		if(bitCount > 0)
+			writeByte(bitBuffer & 0xFF, out);
+		flushBlock(out);
+		out.write(0);
+	}
+
+	/**
+	 * @return the slot of the key in the hash table, or the empty slot where it belongs
+	 */
+	private int findSlot(int key)
+	{
+		int slot = (key * 31 + (key >>> 12)) % hashSize;
+		if(slot < 0)
+			slot += hashSize;
+
+		while(hashKeys[slot] != -1 && hashKeys[slot] != key)
+		{
+			slot = (slot + 1 == hashSize) ? 0 : slot + 1;
+		}
+		return slot;
+	}
+
+	/** Appends the code to the bit buffer, writing every completed byte */
+	private void writeCode(int code, int codeSize, OutputStream out) throws IOException
+	{
+		bitBuffer |= code << bitCount;
+		bitCount += codeSize;
+		while(bitCount >= 8)
+		{
+			writeByte(bitBuffer & 0xFF, out);
+			bitBuffer >>>= 8;
+			bitCount -= 8;
+		}
+	}
+
+	/** Appends a byte to the sub-block, writing the sub-block once full */
+	private void writeByte(int value, OutputStream out) throws IOException
+	{
+		block[blockSize++] = (byte) value;
+		if(blockSize == block.length)
+			flushBlock(out);
+	}
+
+	/** Writes the sub-block, preceded by its size, if it is not empty */
+	private void flushBlock(OutputStream out) throws IOException
+	{
+		if(blockSize > 0)
+		{
+			out.write(blockSize);
+			out.write(block, 0, blockSize);
+			blockSize = 0;
+		}
+	}
+}
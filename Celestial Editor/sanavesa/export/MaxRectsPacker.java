@@ -0,0 +1,170 @@
+/***************************************************************************************************************************
+ * Class:		MaxRectsPacker.java
+ * Author:		Mohammad Alali
+ *
+ * Description:	Packs rectangles into a bin of a fixed size using the MaxRects algorithm. The free space of the bin is kept
+ * 				as a list of maximal free rectangles, which may overlap each other. Each rectangle is placed into the free
+ * 				rectangle it fits best, after which the free rectangles it overlaps are split around it.
+ *
+ * Attributes:
+ * 				List<Rect> freeRects
+ *
+ * Methods:
+ * 				Rect insert(int, int)
+ *
+ ***************************************************************************************************************************/
+
+package sanavesa.export;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packs rectangles into a bin of a fixed size using the MaxRects algorithm, with the best short side fit rule:
+ * each rectangle goes where it leaves the least space along its shorter remaining side.
+ * @author Mohammad Alali
+ */
+class MaxRectsPacker
+{
+	/** The maximal free rectangles of the bin, which may overlap each other */
+	private final List<Rect> freeRects = new ArrayList<Rect>();
+
+	/**
+	 * Creates an empty bin.
+	 * @param binWidth	the width of the bin
+	 * @param binHeight	the height of the bin
+	 */
+	MaxRectsPacker(int binWidth, int binHeight)
+	{
+		freeRects.add(new Rect(0, 0, binWidth, binHeight));
+	}
+
+	/**
+	 * Places a rectangle into the bin.
+	 * @param width		the width of the rectangle
+	 * @param height	the height of the rectangle
+	 * @return where the rectangle was placed, null if it does not fit anywhere
+	 */
+	Rect insert(int width, int height)
+	{
+		// Find the free rectangle which the rectangle fits best
+		Rect best = null;
+		int bestShortSide = Integer.MAX_VALUE;
+		int bestLongSide = Integer.MAX_VALUE;
+		for(Rect free : freeRects)
+		{
+			if(free.width < width || free.height < height)
+				continue;
+
+			int leftoverX = free.width - width;
+			int leftoverY = free.height - height;
+			int shortSide = Math.min(leftoverX, leftoverY);
+			int longSide = Math.max(leftoverX, leftoverY);
+			if(shortSide < bestShortSide || (shortSide == bestShortSide && longSide < bestLongSide))
+			{
+				best = free;
+				bestShortSide = shortSide;
+				bestLongSide = longSide;
+			}
+		}
+
+		if(best == null)
+			return null;
+
+		Rect placed = new Rect(best.x, best.y, width, height);
+
+		// Split every free rectangle which overlaps the placed one into the parts around it
+		List<Rect> splitRects = new ArrayList<Rect>();
+		for(int i = freeRects.size() - 1; i >= 0; i--)
+		{
+			Rect free = freeRects.get(i);
+			if(free.overlaps(placed))
+			{
+				freeRects.remove(i);
+				split(free, placed, splitRects);
+			}
+		}
+		freeRects.addAll(splitRects);
+
+		pruneFreeRects();
+		return placed;
+	}
+
+	/** Adds the parts of the free rectangle which are left, right, above and below the placed rectangle */
+	private static void split(Rect free, Rect placed, List<Rect> parts)
+	{
+		if(placed.x > free.x)
+			parts.add(new Rect(free.x, free.y, placed.x - free.x, free.height));
+		if(placed.right() < free.right())
+			parts.add(new Rect(placed.right(), free.y, free.right() - placed.right(), free.height));
+		if(placed.y > free.y)
+			parts.add(new Rect(free.x, free.y, free.width, placed.y - free.y));
+		if(placed.bottom() < free.bottom())
+			parts.add(new Rect(free.x, placed.bottom(), free.width, free.bottom() - placed.bottom()));
+	}
+
+	/** Removes the free rectangles which are contained in another, so only the maximal ones remain */
+	private void pruneFreeRects()
+	{
+		for(int i = freeRects.size() - 1; i >= 0; i--)
+		{
+			Rect rect = freeRects.get(i);
+			for(int j = 0; j < freeRects.size(); j++)
+			{
+				if(i != j && freeRects.get(j).contains(rect))
+				{
+					freeRects.remove(i);
+					break;
+				}
+			}
+		}
+	}
+
+	/** A rectangle of the bin */
+	static class Rect
+	{
+		/** The x-coordinate of the left edge */
+		final int x;
+
+		/** The y-coordinate of the top edge */
+		final int y;
+
+		/** The width of the rectangle */
+		final int width;
+
+		/** The height of the rectangle */
+		final int height;
+
+		Rect(int x, int y, int width, int height)
+		{
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+		}
+
+		/** @return the x-coordinate just past the right edge */
+		int right()
+		{
+			return x + width;
+		}
+
+		/** @return the y-coordinate just past the bottom edge */
+		int bottom()
+		{
+			return y + height;
+		}
+
+		/** @return true if the rectangles share any area */
+		boolean overlaps(Rect other)
+		{
+			return x < other.right() && other.x < right() && y < other.bottom() && other.y < bottom();
+		}
+
+		/** @return true if the other rectangle lies entirely inside this one */
+		boolean contains(Rect other)
+		{
+			return other.x >= x && other.y >= y && other.right() <= right() && other.bottom() <= bottom();
+		}
+	}
+}
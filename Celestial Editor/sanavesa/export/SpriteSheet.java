@@ -0,0 +1,267 @@
+/***************************************************************************************************************************
+ * Class:		SpriteSheet.java
+ * Author:		Mohammad Alali
+ *
+ * Description:	A sprite sheet packed by the SpriteSheetPacker: a single image holding the frames, along with where each frame
+ * 				lies in the image. The image can be written as a PNG file, and the sprites as a JSON atlas in the widely
+ * 				supported "JSON array" layout of sprite sheet tools, which game engines load directly.
+ *
+ * Attributes:
+ * 				BufferedImage image
+ * 				List<Sprite> sprites
+ * 				String layoutName
+ *
+ * Methods:
+ * 				BufferedImage getImage()
+ * 				List<Sprite> getSprites()
+ * 				void writePng(File)
+ * 				void writeAtlas(Writer, String)
+ *
+ ***************************************************************************************************************************/
+
+package sanavesa.export;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+/**
+ * A single image holding the packed frames, along with where each frame lies in the image.
+ * <p>
+ * There is a {@link Sprite} for every frame, in the order of the frames. Trimmed sprites remember where
+ * they were cut from their frame, and duplicate frames share the area of the image of their original.
+ * </p>
+ * @author Mohammad Alali
+ */
+public class SpriteSheet
+{
+	/** The image holding the packed frames */
+	private final BufferedImage image;
+
+	/** The sprite of every frame, in the order of the frames */
+	private final List<Sprite> sprites;
+
+	/** The name of the layout the frames were packed with */
+	private final String layoutName;
+
+	/**
+	 * Creates the sprite sheet, once the frames are packed.
+	 * @param image			the image holding the packed frames
+	 * @param sprites		the sprite of every frame, in the order of the frames
+	 * @param layoutName	the name of the layout the frames were packed with
+	 */
+	SpriteSheet(BufferedImage image, List<Sprite> sprites, String layoutName)
+	{
+		this.image = image;
+		this.sprites = Collections.unmodifiableList(sprites);
+		this.layoutName = layoutName;
+	}
+
+	/**
+	 * @return the image holding the packed frames, of type {@link BufferedImage#TYPE_INT_ARGB}
+	 */
+	public BufferedImage getImage()
+	{
+		return image;
+	}
+
+	/**
+	 * @return the sprite of every frame, in the order of the frames
+	 */
+	public List<Sprite> getSprites()
+	{
+		return sprites;
+	}
+
+	/**
+	 * Writes the image as a PNG file.
+	 * @param file	the file to write, replaced if it exists
+	 * @throws IOException	if the file could not be written
+	 */
+	public void writePng(File file) throws IOException
+	{
+		if(!ImageIO.write(image, "png", file))
+			throw new IOException("No PNG writer is available");
+	}
+
+	/**
+	 * Writes the sprites as a JSON atlas. Each frame has its area in the image, whether it was trimmed,
+	 * the area it was cut from in its frame, and the size of its frame. Duplicate frames also have the
+	 * index of the frame whose area they share.
+	 * @param writer	the writer to write to, which is not closed
+	 * @param imageName	the name of the image file, as referenced by the atlas
+	 * @throws IOException	if the writer fails
+	 */
+	public void writeAtlas(Writer writer, String imageName) throws IOException
+	{
+		writer.write("{\n\t\"frames\": [\n");
+		for(int i = 0; i < sprites.size(); i++)
+		{
+			Sprite sprite = sprites.get(i);
+			writer.write("\t\t{\n");
+			writer.write("\t\t\t\"filename\": " + quote(sprite.getName()) + ",\n");
+			writer.write("\t\t\t\"frame\": " + rect(sprite.getX(), sprite.getY(), sprite.getWidth(), sprite.getHeight()) + ",\n");
+			writer.write("\t\t\t\"rotated\": false,\n");
+			writer.write("\t\t\t\"trimmed\": " + sprite.isTrimmed() + ",\n");
+			writer.write("\t\t\t\"spriteSourceSize\": " + rect(sprite.getOffsetX(), sprite.getOffsetY(), sprite.getWidth(), sprite.getHeight()) + ",\n");
+			if(sprite.getDuplicateOf() >= 0)
+				writer.write("\t\t\t\"duplicateOf\": " + sprite.getDuplicateOf() + ",\n");
+			writer.write("\t\t\t\"sourceSize\": {\"w\": " + sprite.getSourceWidth() + ", \"h\": " + sprite.getSourceHeight() + "}\n");
+			writer.write((i + 1 < sprites.size()) ? "\t\t},\n" : "\t\t}\n");
+		}
+		writer.write("\t],\n");
+		writer.write("\t\"meta\": {\n");
+		writer.write("\t\t\"app\": \"Celestial Editor\",\n");
+		writer.write("\t\t\"image\": " + quote(imageName) + ",\n");
+		writer.write("\t\t\"format\": \"RGBA8888\",\n");
+		writer.write("\t\t\"layout\": " + quote(layoutName) + ",\n");
+		writer.write("\t\t\"size\": {\"w\": " + image.getWidth() + ", \"h\": " + image.getHeight() + "},\n");
+		writer.write("\t\t\"scale\": \"1\"\n");
+		writer.write("\t}\n}\n");
+	}
+
+	/** @return the rectangle as a JSON object */
+	private static String rect(int x, int y, int width, int height)
+	{
+		return "{\"x\": " + x + ", \"y\": " + y + ", \"w\": " + width + ", \"h\": " + height + "}";
+	}
+
+	/** @return the text as a JSON string, with its special characters escaped */
+	private static String quote(String text)
+	{
+		StringBuilder builder = new StringBuilder("\"");
+		for(char c : text.toCharArray())
+		{
+			switch(c)
+			{
+			case '"':
+				builder.append("\\\"");
+				break;
+			case '\\':
+				builder.append("\\\\");
+				break;
+			case '\n':
+				builder.append("\\n");
+				break;
+			case '\r':
+				builder.append("\\r");
+				break;
+			case '\t':
+				builder.append("\\t");
+				break;
+			default:
+				if(c < 0x20)
+					builder.append(String.format("\\u%04x", (int) c));
+				else
+					builder.append(c);
+				break;
+			}
+		}
+		return builder.append('"').toString();
+	}
+
+	/** Where a single frame lies in the image of the sprite sheet */
+	public static class Sprite
+	{
+		/** The name of the frame */
+		private final String name;
+
+		/** The area of the image holding the frame, empty if the frame has no visible pixel and is trimmed */
+		private final int x, y, width, height;
+
+		/** The position in the frame of the top-left pixel of the sprite, not 0 if the frame was trimmed */
+		private final int offsetX, offsetY;
+
+		/** The size of the frame */
+		private final int sourceWidth, sourceHeight;
+
+		/** The index of the frame whose area is shared, -1 if the frame is not a duplicate */
+		private final int duplicateOf;
+
+		Sprite(String name, int x, int y, int width, int height, int offsetX, int offsetY,
+				int sourceWidth, int sourceHeight, int duplicateOf)
+		{
+			this.name = name;
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+			this.offsetX = offsetX;
+			this.offsetY = offsetY;
+			this.sourceWidth = sourceWidth;
+			this.sourceHeight = sourceHeight;
+			this.duplicateOf = duplicateOf;
+		}
+
+		/** @return the name of the frame */
+		public String getName()
+		{
+			return name;
+		}
+
+		/** @return the x-coordinate of the sprite in the image */
+		public int getX()
+		{
+			return x;
+		}
+
+		/** @return the y-coordinate of the sprite in the image */
+		public int getY()
+		{
+			return y;
+		}
+
+		/** @return the width of the sprite */
+		public int getWidth()
+		{
+			return width;
+		}
+
+		/** @return the height of the sprite */
+		public int getHeight()
+		{
+			return height;
+		}
+
+		/** @return the x-coordinate in the frame of the left edge of the sprite */
+		public int getOffsetX()
+		{
+			return offsetX;
+		}
+
+		/** @return the y-coordinate in the frame of the top edge of the sprite */
+		public int getOffsetY()
+		{
+			return offsetY;
+		}
+
+		/** @return the width of the frame */
+		public int getSourceWidth()
+		{
+			return sourceWidth;
+		}
+
+		/** @return the height of the frame */
+		public int getSourceHeight()
+		{
+			return sourceHeight;
+		}
+
+		/** @return the index of the frame whose area is shared, -1 if the frame is not a duplicate */
+		public int getDuplicateOf()
+		{
+			return duplicateOf;
+		}
+
+		/** @return true if the sprite is smaller than its frame */
+		public boolean isTrimmed()
+		{
+			return width != sourceWidth || height != sourceHeight;
+		}
+	}
+}
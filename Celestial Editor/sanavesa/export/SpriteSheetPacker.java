@@ -0,0 +1,522 @@
+/***************************************************************************************************************************
+ * Class:		SpriteSheetPacker.java
+ * Author:		Mohammad Alali
+ *
+ * Description:	Packs many frames into a single sprite sheet image, laid out as a grid, a horizontal strip, or packed tightly
+ * 				with the MaxRects algorithm. The transparent borders of the frames can be trimmed, and identical frames can
+ * 				share a single area of the image. The frames are measured and then composited straight into the image
+ * 				on a bounded pool of background threads.
+ *
+ * Attributes:
+ * 				Layout layout
+ * 				boolean isTrimming
+ * 				boolean isDeduplicating
+ * 				int padding
+ * 				int columns
+ * 				int threadCount
+ *
+ * Methods:
+ * 				void setLayout(Layout)
+ * 				void setTrimming(boolean)
+ * 				void setDeduplicating(boolean)
+ * 				void setPadding(int)
+ * 				void setColumns(int)
+ * 				void setThreadCount(int)
+ * 				SpriteSheet pack(List<FrameSnapshot>)
+ *
+ ***************************************************************************************************************************/
+
+package sanavesa.export;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import sanavesa.source.Frame;
+import sanavesa.source.FrameSnapshot;
+import sanavesa.source.PixelBounds;
+
+/**
+ * Packs many frames into a single {@link SpriteSheet}.
+ * <p>
+ * Packing happens in three steps. First, every frame is composited on its own task to find the bounds
+ * of its visible pixels and a hash of them. Then, the duplicate frames are found, and the remaining
+ * sprites are laid out. Last, every sprite is composited on its own task straight into its area of the
+ * image, so at most one composited frame per thread is held in memory besides the image itself.
+ * </p>
+ * <p>
+ * The snapshots are taken with {@link Frame#snapshot()} on the JavaFX thread, after which packing can
+ * run on any thread. A hidden frame packs as a fully transparent one.
+ * </p>
+ * @author Mohammad Alali
+ */
+public class SpriteSheetPacker
+{
+	/** The ways the sprites can be laid out in the image */
+	public enum Layout
+	{
+		/** Rows and columns of cells as large as the largest sprite */
+		GRID,
+
+		/** A single row of sprites */
+		STRIP,
+
+		/** Packed tightly with the MaxRects algorithm */
+		PACKED
+	}
+
+	/** The way the sprites are laid out */
+	private Layout layout = Layout.PACKED;
+
+	/** Whether the transparent borders of the frames are trimmed */
+	private boolean isTrimming = true;
+
+	/** Whether identical frames share a single area of the image */
+	private boolean isDeduplicating = true;
+
+	/** The transparent pixels between two sprites */
+	private int padding = 0;
+
+	/** The amount of columns of the grid layout, 0 for about as many columns as rows */
+	private int columns = 0;
+
+	/** The most frames measured or composited at once */
+	private int threadCount = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * @param layout	the way the sprites are laid out, packed by default
+	 */
+	public void setLayout(Layout layout)
+	{
+		this.layout = layout;
+	}
+
+	/**
+	 * @param isTrimming	true to trim the transparent borders of the frames, which is the default
+	 */
+	public void setTrimming(boolean isTrimming)
+	{
+		this.isTrimming = isTrimming;
+	}
+
+	/**
+	 * @param isDeduplicating	true to let identical frames share a single area of the image, which is the default
+	 */
+	public void setDeduplicating(boolean isDeduplicating)
+	{
+		this.isDeduplicating = isDeduplicating;
+	}
+
+	/**
+	 * @param padding	the transparent pixels between two sprites, 0 by default
+	 */
+	public void setPadding(int padding)
+	{
+		this.padding = Math.max(padding, 0);
+	}
+
+	/**
+	 * @param columns	the amount of columns of the grid layout, 0 for about as many columns as rows
+	 */
+	public void setColumns(int columns)
+	{
+		this.columns = Math.max(columns, 0);
+	}
+
+	/**
+	 * @param threadCount	the most frames measured or composited at once, one per available core by default
+	 */
+	public void setThreadCount(int threadCount)
+	{
+		this.threadCount = Math.max(threadCount, 1);
+	}
+
+	/**
+	 * Packs the frames into a sprite sheet.
+	 * @param frames	the snapshots of the frames to pack, in order
+	 * @return the sprite sheet, with a sprite for every frame in the same order
+	 * @throws InterruptedException	if the packing thread is interrupted
+	 */
+	public SpriteSheet pack(List<FrameSnapshot> frames) throws InterruptedException
+	{
+		int frameCount = frames.size();
+		ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, Math.min(threadCount, frameCount)), runnable ->
+		{
+			Thread thread = new Thread(runnable, "Sprite Sheet Packer");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		try
+		{
+			// Measure every frame in parallel
+			List<Callable<Measure>> measureTasks = new ArrayList<Callable<Measure>>(frameCount);
+			for(FrameSnapshot frame : frames)
+			{
+				measureTasks.add(() -> measure(frame));
+			}
+			List<Measure> measures = runAll(workers, measureTasks);
+
+			// Find the duplicates, a frame is only compared to the earlier frames with the same hash
+			int[] originals = new int[frameCount];
+			Arrays.fill(originals, -1);
+			if(isDeduplicating)
+			{
+				Map<Long, List<Integer>> framesByHash = new HashMap<Long, List<Integer>>();
+				for(int i = 0; i < frameCount; i++)
+				{
+					List<Integer> candidates = framesByHash.computeIfAbsent(measures.get(i).hash, hash -> new ArrayList<Integer>());
+					for(int candidate : candidates)
+					{
+						if(isSameSprite(frames.get(candidate), measures.get(candidate), frames.get(i), measures.get(i)))
+						{
+							originals[i] = candidate;
+							break;
+						}
+					}
+
+					if(originals[i] < 0)
+						candidates.add(i);
+				}
+			}
+
+			// Lay out the sprites of the frames which are not duplicates
+			List<Integer> uniqueFrames = new ArrayList<Integer>();
+			for(int i = 0; i < frameCount; i++)
+			{
+				if(originals[i] < 0)
+					uniqueFrames.add(i);
+			}
+			int[] positionsX = new int[frameCount];
+			int[] positionsY = new int[frameCount];
+			int[] sheetSize = layOut(measures, uniqueFrames, positionsX, positionsY);
+
+			// Composite every sprite straight into its area of the image, in parallel. The areas never overlap.
+			BufferedImage image = new BufferedImage(Math.max(sheetSize[0], 1), Math.max(sheetSize[1], 1), BufferedImage.TYPE_INT_ARGB);
+			int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+			int sheetWidth = image.getWidth();
+			List<Callable<Void>> compositeTasks = new ArrayList<Callable<Void>>(uniqueFrames.size());
+			for(int i : uniqueFrames)
+			{
+				FrameSnapshot frame = frames.get(i);
+				PixelBounds region = measures.get(i).region;
+				int offset = positionsY[i] * sheetWidth + positionsX[i];
+				if(frame.getVisibility() && region != null)
+				{
+					compositeTasks.add(() ->
+					{
+						frame.blendInto(region, pixels, offset, sheetWidth);
+						return null;
+					});
+				}
+			}
+			runAll(workers, compositeTasks);
+
+			// Describe where every frame lies, duplicates share the area of their original.
+			// A trimmed duplicate may have been cut from another place of its frame, which keeps its own offset.
+			List<SpriteSheet.Sprite> sprites = new ArrayList<SpriteSheet.Sprite>(frameCount);
+			for(int i = 0; i < frameCount; i++)
+			{
+				FrameSnapshot frame = frames.get(i);
+				int original = (originals[i] < 0) ? i : originals[i];
+				PixelBounds region = measures.get(i).region;
+				sprites.add(new SpriteSheet.Sprite(frame.getName(), positionsX[original], positionsY[original],
+						(region == null) ? 0 : region.getWidth(), (region == null) ? 0 : region.getHeight(),
+						(region == null) ? 0 : region.getMinX(), (region == null) ? 0 : region.getMinY(),
+						frame.getWidth(), frame.getHeight(), originals[i]));
+			}
+
+			return new SpriteSheet(image, sprites, layout.name().toLowerCase());
+		}
+		finally
+		{
+			workers.shutdownNow();
+		}
+	}
+
+	/**
+	 * Finds the area of the frame which becomes its sprite, and the hash of its pixels.
+	 * Runs on the threads of the packer.
+	 */
+	private Measure measure(FrameSnapshot frame)
+	{
+		// Composite the painted area, to find the bounds of the pixels which are not fully transparent
+		PixelBounds visibleBounds = null;
+		int pixelsHash = 1;
+		PixelBounds paintedBounds = frame.getVisibility() ? frame.getPaintedBounds() : null;
+		if(paintedBounds != null)
+		{
+			int paintedWidth = paintedBounds.getWidth();
+			int[] paintedPixels = new int[paintedWidth * paintedBounds.getHeight()];
+			frame.blendInto(paintedBounds, paintedPixels, 0, paintedWidth);
+			visibleBounds = findVisibleBounds(paintedPixels, paintedBounds);
+
+			// Hash the visible pixels only, the same way as Arrays.hashCode would
+			if(visibleBounds != null)
+			{
+				for(int y = visibleBounds.getMinY(); y <= visibleBounds.getMaxY(); y++)
+				{
+					int rowStart = (y - paintedBounds.getMinY()) * paintedWidth + (visibleBounds.getMinX() - paintedBounds.getMinX());
+					for(int i = rowStart; i < rowStart + visibleBounds.getWidth(); i++)
+					{
+						pixelsHash = 31 * pixelsHash + paintedPixels[i];
+					}
+				}
+			}
+		}
+
+		PixelBounds region;
+		if(isTrimming)
+			region = visibleBounds;
+		else
+			region = (frame.getWidth() > 0 && frame.getHeight() > 0) ? new PixelBounds(0, 0, frame.getWidth() - 1, frame.getHeight() - 1) : null;
+
+		// Two sprites are identical if they are the same size, and their visible pixels are the same at the same place
+		long hash = 17;
+		if(region != null)
+		{
+			hash = hash * 31 + region.getWidth();
+			hash = hash * 31 + region.getHeight();
+		}
+		if(visibleBounds != null)
+		{
+			hash = hash * 31 + (visibleBounds.getMinX() - region.getMinX());
+			hash = hash * 31 + (visibleBounds.getMinY() - region.getMinY());
+			hash = hash * 31 + visibleBounds.getWidth();
+			hash = hash * 31 + pixelsHash;
+		}
+
+		return new Measure(region, visibleBounds, hash);
+	}
+
+	/**
+	 * Compares the pixels of two frames with the same hash, compositing them again.
+	 * @return true if both sprites have the same size and pixels
+	 */
+	private static boolean isSameSprite(FrameSnapshot frame1, Measure measure1, FrameSnapshot frame2, Measure measure2)
+	{
+		if(measure1.hash != measure2.hash)
+			return false;
+		if(measure1.region == null || measure2.region == null)
+			return measure1.region == measure2.region;
+		if(measure1.region.getWidth() != measure2.region.getWidth() || measure1.region.getHeight() != measure2.region.getHeight())
+			return false;
+
+		// The visible pixels are the only ones which are not transparent
+		if(measure1.visibleBounds == null || measure2.visibleBounds == null)
+			return measure1.visibleBounds == measure2.visibleBounds;
+		if(measure1.visibleBounds.getMinX() - measure1.region.getMinX() != measure2.visibleBounds.getMinX() - measure2.region.getMinX()
+				|| measure1.visibleBounds.getMinY() - measure1.region.getMinY() != measure2.visibleBounds.getMinY() - measure2.region.getMinY())
+			return false;
+
+		return Arrays.equals(composite(frame1, measure1.visibleBounds), composite(frame2, measure2.visibleBounds));
+	}
+
+	/**
+	 * Places the sprites of the frames in the image, according to the layout.
+	 * @param measures		the measures of every frame
+	 * @param frames		the indices of the frames to place
+	 * @param positionsX	receives the x-coordinate in the image of each placed frame
+	 * @param positionsY	receives the y-coordinate in the image of each placed frame
+	 * @return the width and height of the image
+	 */
+	private int[] layOut(List<Measure> measures, List<Integer> frames, int[] positionsX, int[] positionsY)
+	{
+		// Sprites without any pixel take no space
+		List<Integer> placedFrames = new ArrayList<Integer>();
+		int largestWidth = 0, largestHeight = 0;
+		long totalArea = 0;
+		for(int i : frames)
+		{
+			PixelBounds region = measures.get(i).region;
+			if(region != null)
+			{
+				placedFrames.add(i);
+				largestWidth = Math.max(largestWidth, region.getWidth());
+				largestHeight = Math.max(largestHeight, region.getHeight());
+				totalArea += (long) (region.getWidth() + padding) * (region.getHeight() + padding);
+			}
+		}
+
+		if(placedFrames.isEmpty())
+			return new int[] {0, 0};
+
+		int sheetWidth = 0, sheetHeight = 0;
+		switch(layout)
+		{
+		case GRID:
+		{
+			int columnCount = (columns > 0) ? Math.min(columns, placedFrames.size()) : (int) Math.ceil(Math.sqrt(placedFrames.size()));
+			int rowCount = (placedFrames.size() + columnCount - 1) / columnCount;
+			for(int k = 0; k < placedFrames.size(); k++)
+			{
+				int i = placedFrames.get(k);
+				positionsX[i] = (k % columnCount) * (largestWidth + padding);
+				positionsY[i] = (k / columnCount) * (largestHeight + padding);
+			}
+			sheetWidth = columnCount * (largestWidth + padding) - padding;
+			sheetHeight = rowCount * (largestHeight + padding) - padding;
+			break;
+		}
+		case STRIP:
+		{
+			int x = 0;
+			for(int i : placedFrames)
+			{
+				positionsX[i] = x;
+				positionsY[i] = 0;
+				x += measures.get(i).region.getWidth() + padding;
+			}
+			sheetWidth = x - padding;
+			sheetHeight = largestHeight;
+			break;
+		}
+		case PACKED:
+		{
+			// The tallest sprites are placed first, into a roughly square bin
+			placedFrames.sort(Comparator.comparingInt((Integer i) -> measures.get(i).region.getHeight())
+					.thenComparingInt(i -> measures.get(i).region.getWidth()).reversed());
+			int binWidth = Math.max(largestWidth + padding, (int) Math.ceil(Math.sqrt(totalArea)));
+
+			// Grow the bin until everything fits, then search for the shortest bin which still fits,
+			// since the free space of a tall bin lets the sprites spread out
+			int fittingHeight = largestHeight + padding;
+			while(!packInto(binWidth, fittingHeight, measures, placedFrames, positionsX, positionsY))
+			{
+				fittingHeight *= 2;
+			}
+			int tooShortHeight = Math.max(largestHeight + padding - 1, (int) (totalArea / binWidth) - 1);
+			while(fittingHeight - tooShortHeight > 1)
+			{
+				int binHeight = (tooShortHeight + fittingHeight) / 2;
+				if(packInto(binWidth, binHeight, measures, placedFrames, positionsX, positionsY))
+					fittingHeight = binHeight;
+				else
+					tooShortHeight = binHeight;
+			}
+			packInto(binWidth, fittingHeight, measures, placedFrames, positionsX, positionsY);
+
+			for(int i : placedFrames)
+			{
+				PixelBounds region = measures.get(i).region;
+				sheetWidth = Math.max(sheetWidth, positionsX[i] + region.getWidth());
+				sheetHeight = Math.max(sheetHeight, positionsY[i] + region.getHeight());
+			}
+			break;
+		}
+		}
+
+		return new int[] {sheetWidth, sheetHeight};
+	}
+
+	/**
+	 * Packs the sprites of the frames into a bin with the MaxRects algorithm.
+	 * @return true if every sprite fits, in which case their positions are set
+	 */
+	private boolean packInto(int binWidth, int binHeight, List<Measure> measures, List<Integer> frames, int[] positionsX, int[] positionsY)
+	{
+		// The padding of the last column and row lies outside of the image
+		MaxRectsPacker packer = new MaxRectsPacker(binWidth + padding, binHeight + padding);
+		for(int i : frames)
+		{
+			PixelBounds region = measures.get(i).region;
+			MaxRectsPacker.Rect placed = packer.insert(region.getWidth() + padding, region.getHeight() + padding);
+			if(placed == null)
+				return false;
+
+			positionsX[i] = placed.x;
+			positionsY[i] = placed.y;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the bounds, in the frame, of the pixels which are not fully transparent, null if there are none
+	 */
+	private static PixelBounds findVisibleBounds(int[] pixels, PixelBounds area)
+	{
+		int width = area.getWidth();
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		for(int i = 0; i < pixels.length; i++)
+		{
+			if((pixels[i] >>> 24) != 0)
+			{
+				int x = i % width, y = i / width;
+				minX = Math.min(minX, x);
+				maxX = Math.max(maxX, x);
+				minY = Math.min(minY, y);
+				maxY = Math.max(maxY, y);
+			}
+		}
+
+		if(minX > maxX)
+			return null;
+		return new PixelBounds(area.getMinX() + minX, area.getMinY() + minY, area.getMinX() + maxX, area.getMinY() + maxY);
+	}
+
+	/**
+	 * @return the pixels of the region of the frame, composited over a transparent background, row by row
+	 */
+	private static int[] composite(FrameSnapshot frame, PixelBounds region)
+	{
+		int[] pixels = new int[region.getWidth() * region.getHeight()];
+		frame.blendInto(region, pixels, 0, region.getWidth());
+		return pixels;
+	}
+
+	/**
+	 * Runs the tasks on the workers, and waits for all of them.
+	 * @return the results of the tasks, in order
+	 */
+	private static <T> List<T> runAll(ExecutorService workers, List<Callable<T>> tasks) throws InterruptedException
+	{
+		List<T> results = new ArrayList<T>(tasks.size());
+		for(Future<T> future : workers.invokeAll(tasks))
+		{
+			try
+			{
+				results.add(future.get());
+			}
+			catch(ExecutionException e)
+			{
+				if(e.getCause() instanceof RuntimeException)
+					throw (RuntimeException) e.getCause();
+				if(e.getCause() instanceof Error)
+					throw (Error) e.getCause();
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		return results;
+	}
+
+	/** The area of a frame which becomes its sprite, and the hash of its pixels */
+	private static class Measure
+	{
+		/** The area of the frame which becomes its sprite, null if the sprite is empty */
+		final PixelBounds region;
+
+		/** The bounds of the pixels which are not fully transparent, null if there are none */
+		final PixelBounds visibleBounds;
+
+		/** The hash of the size and the pixels of the sprite */
+		final long hash;
+
+		Measure(PixelBounds region, PixelBounds visibleBounds, long hash)
+		{
+			this.region = region;
+			this.visibleBounds = visibleBounds;
+			this.hash = hash;
+		}
+	}
+}
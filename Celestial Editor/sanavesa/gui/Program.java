@@ -6,6 +6,7 @@
  * 	
  * Attributes: 	
  * 				static int pixelScale
+ * 				static int viewportSize
  * 		
  * Methods:		
  * 				static void main
@@ -66,8 +67,12 @@ public class Program extends Application
 		launch(args);
 	}
 	
+	/** The size of a single cell of the frame in canvas coordinates, the size of a cell in the viewport when not zoomed */
 	public static int pixelScale = 16;
 	
+	/** The size of the viewport of the canvas, which does not depend on the size of the frame */
+	public static final int viewportSize = 32 * 26;
+	
 	/** Initializes the program's GUI */
 	@Override
 	public void start(Stage primaryStage) throws Exception
@@ -80,9 +85,9 @@ public class Program extends Application
 		pane.relocate(0, 0);
 		pane.setStyle("-fx-border-color: black;");
 		pane.setBackground(new Background(new BackgroundFill(Color.ANTIQUEWHITE, CornerRadii.EMPTY, Insets.EMPTY)));
-		pane.setMinSize(32*26, 32*26);
-        pane.setPrefSize(32*26, 32*26);
-        pane.setMaxSize(32*26, 32*26);
+		pane.setMinSize(viewportSize, viewportSize);
+        pane.setPrefSize(viewportSize, viewportSize);
+        pane.setMaxSize(viewportSize, viewportSize);
         
         // Scale the program with the width 
 		primaryStage.widthProperty().addListener((args, oldW, newW) ->
@@ -116,10 +121,10 @@ public class Program extends Application
 		// By default, start with a 64x64 image
 		Frame.resizeFrame(64, 64);
 		
-		// Initialize the canvas
-		Canvas gridLinesCanvas = new Canvas(Frame.getFrameWidth() * pixelScale, Frame.getFrameHeight() * pixelScale);
-		Canvas temporaryDrawCanvas = new Canvas(Frame.getFrameWidth() * pixelScale, Frame.getFrameHeight() * pixelScale);
-		PixelatedCanvas canvas = new PixelatedCanvas(Frame.getFrameWidth() * pixelScale, Frame.getFrameHeight() * pixelScale, gridLinesCanvas, temporaryDrawCanvas); //32*28 perfect
+		// Initialize the canvas, all three canvases are the size of the viewport no matter the size of the frame
+		Canvas gridLinesCanvas = new Canvas(viewportSize, viewportSize);
+		Canvas temporaryDrawCanvas = new Canvas(viewportSize, viewportSize);
+		PixelatedCanvas canvas = new PixelatedCanvas(viewportSize, viewportSize, pixelScale, gridLinesCanvas, temporaryDrawCanvas);
 		canvas.initializeKeyMap(scene);
 		
 		// Ask for permission to close when pressing the X button
@@ -156,8 +161,8 @@ public class Program extends Application
 		canvas.setFrameDisplay(frameDisplay);
 		canvas.setColorSelector(colorSelector);
 
-		// Request a canvas redraw whenever the color selector changes color
-		colorSelector.colorProperty().addListener((args, oldColor, newColor) -> canvas.requestRedraw());
+		// Request a canvas and thumbnails redraw whenever the color selector changes color
+		colorSelector.colorProperty().addListener((args, oldColor, newColor) -> frameDisplay.requestCanvasRedraw());
 		
 		// Create the project
 		Project project = new Project(new ISerializable[]{palette, frameDisplay});
@@ -215,9 +220,14 @@ public class Program extends Application
 		HBox.setMargin(leftVertical, new Insets(10));
 		
 		// The clipping pane of the canvas
-		Rectangle clipRect = new Rectangle(32*26, 32*26);
+		Rectangle clipRect = new Rectangle(viewportSize, viewportSize);
 		pane.setClip(clipRect);
-		pane.getChildren().addAll(canvas, temporaryDrawCanvas, gridLinesCanvas);
+		pane.getChildren().addAll(canvas, temporaryDrawCanvas, gridLinesCanvas, canvas.getMetricsOverlay());
+		StackPane.setAlignment(canvas.getMetricsOverlay(), Pos.TOP_LEFT);
+		
+		// The animation plays in a corner above the canvas, so the selected frame can be drawn on meanwhile
+		pane.getChildren().add(topToolBar.getAnimationPlayer().getView());
+		StackPane.setAlignment(topToolBar.getAnimationPlayer().getView(), Pos.BOTTOM_RIGHT);
 		
 		// Setup the border pane
 		borderPane.setLeft(left);
@@ -14,35 +14,30 @@
 
 package sanavesa.gui;
 
-import java.awt.image.RenderedImage;
 import java.io.File;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 
-import javax.imageio.ImageIO;
-
-import javafx.animation.Animation;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
-import javafx.embed.swing.SwingFXUtils;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Orientation;
 import javafx.scene.Scene;
-import javafx.scene.SnapshotParameters;
-import javafx.scene.canvas.Canvas;
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.Button;
 import javafx.scene.control.ColorPicker;
 import javafx.scene.control.Label;
-import javafx.scene.control.ListView;
 import javafx.scene.control.Separator;
 import javafx.scene.control.Slider;
+import javafx.scene.control.Spinner;
 import javafx.scene.control.ToolBar;
 import javafx.scene.control.Tooltip;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
-import javafx.scene.image.WritableImage;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Pane;
@@ -51,14 +46,22 @@ import javafx.scene.paint.Color;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import javafx.stage.FileChooser.ExtensionFilter;
-import javafx.util.Duration;
+import sanavesa.command.ResizeCommand;
+import sanavesa.export.BatchExport;
+import sanavesa.export.FrameExporter;
+import sanavesa.export.GifEncoder;
+import sanavesa.export.SpriteSheet;
+import sanavesa.export.SpriteSheetPacker;
+import sanavesa.gui.canvas.AnimationPlayer;
 import sanavesa.gui.canvas.PixelatedCanvas;
 import sanavesa.gui.frameDisplay.FrameDisplay;
 import sanavesa.gui.popup.MessagePopup;
 import sanavesa.gui.popup.PermissionPopup;
+import sanavesa.gui.popup.ProgressPopup;
 import sanavesa.gui.popup.SizeInputPopup;
+import sanavesa.source.Anchor;
 import sanavesa.source.Frame;
-import sanavesa.source.Pixel;
+import sanavesa.source.FrameSnapshot;
 import sanavesa.source.Project;
 
 /**
@@ -95,6 +98,8 @@ public class TopToolBar implements IGraphicalInterface, IKeyMapping
 	private Button btnNew = new Button("New");
 	private Button btnExportSelected = new Button("Export Selected");
 	private Button btnExportAll = new Button("Export All");
+	private Button btnExportSheet = new Button("Export Sheet");
+	private Button btnExportGif = new Button("Export GIF");
 	private Button btnGridLines = new Button("Toggle Grid Lines");
 	private Button btnResetView = new Button("Reset View");
 	private Button btnResizeFrame = new Button("Resize");
@@ -102,11 +107,14 @@ public class TopToolBar implements IGraphicalInterface, IKeyMapping
 	private Button btnOnionSkin = new Button("Toggle Onion Skinning");
 	private Label labelOnionSkinFactor = new Label();
 	private Slider sliderOnionSkinFactor = new Slider(0.0, 1.0, 0.0);
+	private Label labelOnionSkins = new Label("Before/After");
+	private Spinner<Integer> spinnerOnionSkinsBefore = new Spinner<Integer>(0, PixelatedCanvas.maxOnionSkins, 1);
+	private Spinner<Integer> spinnerOnionSkinsAfter = new Spinner<Integer>(0, PixelatedCanvas.maxOnionSkins, 0);
 	private Button btnPlayAnimation = new Button("Play");
 	private Button btnStopAnimation = new Button("Stop");
 	private Label labelAnimationSpeed = new Label();
 	private Slider sliderAnimationSpeed = new Slider(0, 1000, 150);
-	private Timeline animationTimeline = new Timeline();
+	private AnimationPlayer animationPlayer = null;
 	private Label canvasBackgroundColorLabel = new Label("Background Color");
 	private ColorPicker canvasBackgroundColorPicker = new ColorPicker(Color.WHITE);
 
@@ -116,14 +124,20 @@ public class TopToolBar implements IGraphicalInterface, IKeyMapping
 		this.project = project;
 		this.frameDisplay = frameDisplay;
 		this.canvas = canvas;
+		animationPlayer = new AnimationPlayer(frameDisplay, canvas);
+	}
+	
+	/**
+	 * @return the player of the animation, whose preview is placed above the canvas
+	 */
+	public AnimationPlayer getAnimationPlayer()
+	{
+		return animationPlayer;
 	}
 	
 	@Override
 	public void initializeLayout()
 	{
-		animationTimeline.setCycleCount(Timeline.INDEFINITE);
-		animationTimeline.getKeyFrames().add(new KeyFrame(Duration.millis(150), e -> cycleFramesInAnimation()));
-		
 		// Load the images and set the ratio
 		ImageView saveImgView = new ImageView(imgSave);
 		saveImgView.setPreserveRatio(true);
@@ -159,6 +173,16 @@ public class TopToolBar implements IGraphicalInterface, IKeyMapping
 		exportSelectedImgView.setPreserveRatio(true);
 		exportSelectedImgView.setFitHeight(20);
 		
+		// Load the images and set the ratio
+		ImageView exportSheetImgView = new ImageView(imgExport);
+		exportSheetImgView.setPreserveRatio(true);
+		exportSheetImgView.setFitHeight(20);
+		
+		// Load the images and set the ratio
+		ImageView exportGifImgView = new ImageView(imgExport);
+		exportGifImgView.setPreserveRatio(true);
+		exportGifImgView.setFitHeight(20);
+		
 		// Load the images and set the ratio
 		ImageView playImgView = new ImageView(imgPlay);
 		playImgView.setPreserveRatio(true);
@@ -197,6 +221,8 @@ public class TopToolBar implements IGraphicalInterface, IKeyMapping
 		btnGridLines.setGraphic(gridLinesImgView);
 		btnExportAll.setGraphic(exportAllImgView);
 		btnExportSelected.setGraphic(exportSelectedImgView);
+		btnExportSheet.setGraphic(exportSheetImgView);
+		btnExportGif.setGraphic(exportGifImgView);
 		btnPlayAnimation.setGraphic(playImgView);
 		btnStopAnimation.setGraphic(stopImgView);
 		btnResizeFrame.setGraphic(resizeImgView);
@@ -212,6 +238,8 @@ public class TopToolBar implements IGraphicalInterface, IKeyMapping
 		btnGridLines.setFocusTraversable(false);
 		btnExportAll.setFocusTraversable(false);
 		btnExportSelected.setFocusTraversable(false);
+		btnExportSheet.setFocusTraversable(false);
+		btnExportGif.setFocusTraversable(false);
 		btnPlayAnimation.setFocusTraversable(false);
 		btnStopAnimation.setFocusTraversable(false);
 		btnResizeFrame.setFocusTraversable(false);
@@ -226,6 +254,8 @@ public class TopToolBar implements IGraphicalInterface, IKeyMapping
 		btnOpen.setTooltip(new Tooltip("[CTRL + O] Opens a project."));
 		btnExportAll.setTooltip(new Tooltip("[CTRL + E] Exports all frames."));
 		btnExportSelected.setTooltip(new Tooltip("[CTRL + F] Exports the selected frame."));
+		btnExportSheet.setTooltip(new Tooltip("[CTRL + SHIFT + E] Exports all frames as a packed sprite sheet with a JSON atlas."));
+		btnExportGif.setTooltip(new Tooltip("[CTRL + SHIFT + G] Exports all frames as an animated GIF, at the speed of the animation."));
 		btnGridLines.setTooltip(new Tooltip("[G] Toggles the visibility of the grid lines."));
 		btnPlayAnimation.setTooltip(new Tooltip("[CTRL + SPACE] Starts or stops the animation."));
 		btnStopAnimation.setTooltip(new Tooltip("[CTRL + SPACE] Starts or stops the animation."));
@@ -241,6 +271,8 @@ public class TopToolBar implements IGraphicalInterface, IKeyMapping
 		btnNew.setOnAction(e -> onBtnNewClicked());
 		btnExportAll.setOnAction(e -> onBtnExportAllClicked());
 		btnExportSelected.setOnAction(e -> onBtnExportSelectedClicked());
+		btnExportSheet.setOnAction(e -> onBtnExportSheetClicked());
+		btnExportGif.setOnAction(e -> onBtnExportGifClicked());
 		btnGridLines.setOnAction(e -> canvas.setDisplayGridLines(!canvas.getDisplayGridLines()));
 		btnPlayAnimation.setOnAction(e -> onBtnPlayAnimationClicked());
 		btnStopAnimation.setOnAction(e -> onBtnStopAnimationClicked());
@@ -264,6 +296,20 @@ public class TopToolBar implements IGraphicalInterface, IKeyMapping
 		labelOnionSkinFactor.setPadding(new Insets(0, 5, 0, 5));
 		labelOnionSkinFactor.setTooltip(new Tooltip("The opacity factor for the onion skinning."));
 		
+		// The amount of previous and next frames shown as onion skins
+		spinnerOnionSkinsBefore.getValueFactory().setValue(canvas.getOnionSkinsBefore());
+		spinnerOnionSkinsBefore.valueProperty().addListener((args, oldV, newV) -> canvas.setOnionSkinsBefore(newV));
+		spinnerOnionSkinsBefore.setPrefWidth(60);
+		spinnerOnionSkinsBefore.setFocusTraversable(false);
+		spinnerOnionSkinsBefore.setTooltip(new Tooltip("The amount of previous frames shown as onion skins, tinted red."));
+		spinnerOnionSkinsAfter.getValueFactory().setValue(canvas.getOnionSkinsAfter());
+		spinnerOnionSkinsAfter.valueProperty().addListener((args, oldV, newV) -> canvas.setOnionSkinsAfter(newV));
+		spinnerOnionSkinsAfter.setPrefWidth(60);
+		spinnerOnionSkinsAfter.setFocusTraversable(false);
+		spinnerOnionSkinsAfter.setTooltip(new Tooltip("The amount of next frames shown as onion skins, tinted blue."));
+		labelOnionSkins.setPadding(new Insets(0, 5, 0, 5));
+		labelOnionSkins.setTooltip(new Tooltip("The amount of frames shown as onion skins before and after the selected frame.\nFarther frames fade out."));
+		
 		sliderAnimationSpeed.valueProperty().addListener((args, oldV, newV) -> onAnimationSpeedChanged(newV.doubleValue()));
 		sliderAnimationSpeed.setTranslateY(5);
 		sliderAnimationSpeed.setMajorTickUnit(250);
@@ -277,8 +323,9 @@ public class TopToolBar implements IGraphicalInterface, IKeyMapping
 		
 		canvasBackgroundColorPicker.valueProperty().addListener((args, oldColor, newColor) ->
 		{
-			// Update the pixelated canvas background color
+			// Update the pixelated canvas background color, which the thumbnails are drawn on as well
 			canvas.setCanvasClearColor(newColor);
+			frameDisplay.refreshThumbnails();
 		});
 		
 		// Updates the size of the frame and centers it on view
@@ -286,13 +333,7 @@ public class TopToolBar implements IGraphicalInterface, IKeyMapping
 		int newHeight = Frame.getFrameHeight();
 		
 		Frame.resizeFrame(newWidth, newHeight);
-		canvas.setWidth(Program.pixelScale * newWidth);
-		canvas.setHeight(Program.pixelScale * newHeight);
-		canvas.setTranslateX(0);
-		canvas.setTranslateY(0);
-		canvas.setZoomScale((32 * 1.5) / Math.max(newWidth, newHeight));
-		canvas.requestRedraw();
-		canvas.redrawGridLines();
+		canvas.resetView();
 		
 		Pane pane = new Pane();
 		HBox.setHgrow(pane, Priority.ALWAYS);
@@ -301,13 +342,14 @@ public class TopToolBar implements IGraphicalInterface, IKeyMapping
 		toolBar.getItems().addAll(
 				btnNew, btnOpen, btnSave, btnSaveAs,
 				new Separator(Orientation.HORIZONTAL),
-				btnExportAll, btnExportSelected,
+				btnExportAll, btnExportSelected, btnExportSheet, btnExportGif,
 				new Separator(Orientation.HORIZONTAL),
 				canvasBackgroundColorLabel, canvasBackgroundColorPicker, btnGridLines,
 				new Separator(Orientation.HORIZONTAL),
 				btnResetView, btnResizeFrame, btnShiftFrame,
 				new Separator(Orientation.HORIZONTAL),
 				btnOnionSkin, labelOnionSkinFactor, sliderOnionSkinFactor,
+				labelOnionSkins, spinnerOnionSkinsBefore, spinnerOnionSkinsAfter,
 				new Separator(Orientation.HORIZONTAL),
 				//pane,
 				btnPlayAnimation, btnStopAnimation, labelAnimationSpeed,
@@ -325,26 +367,30 @@ public class TopToolBar implements IGraphicalInterface, IKeyMapping
 		popup.setupOkButton("Resize");
 		popup.setupTextField1(String.valueOf(Frame.getFrameWidth()), "Frame Width");
 		popup.setupTextField2(String.valueOf(Frame.getFrameHeight()), "FrameHeight");
+		popup.setupAnchorChoice(Anchor.TOP_LEFT);
 		popup.show();
 		
 		// Attempt to resize the frame
 		try{
 			int newWidth = Integer.parseInt(popup.getResponse1());
 			int newHeight = Integer.parseInt(popup.getResponse2());
+			Anchor anchor = popup.getAnchorResponse();
 			
-			// Reize the frame
-			Frame.resizeFrame(newWidth, newHeight);
+			// Abort if cancelled or nothing would change
+			if(anchor == null || newWidth < 1 || newHeight < 1 ||
+				(newWidth == Frame.getFrameWidth() && newHeight == Frame.getFrameHeight()))
+				return;
 			
-			canvas.setWidth(Program.pixelScale * newWidth);
-			canvas.setHeight(Program.pixelScale * newHeight);
+			// Record the pixels the resize crops from each frame, so the resize can be undone in a single step
+			Frame selectedFrame = frameDisplay.getSelectedFrame();
+			ResizeCommand command = new ResizeCommand(selectedFrame, frameDisplay.getFrames(), newWidth, newHeight, anchor);
 			
-			canvas.setTranslateX(0);
-			canvas.setTranslateY(0);
+			// Resize the frames, the canvas follows the new frame size
+			Frame.resizeFrame(newWidth, newHeight, anchor);
+			selectedFrame.getCommands().add(command);
 			
 			// Reset view of the canvas and redraw it 
-			canvas.setZoomScale((32 * 1.5) / Math.max(newWidth, newHeight));
-			canvas.requestRedraw();
-			canvas.redrawGridLines();
+			canvas.resetView();
 		}
 		catch(Exception e)
 		{
@@ -367,7 +413,6 @@ public class TopToolBar implements IGraphicalInterface, IKeyMapping
 			int shiftY = Integer.parseInt(popup.getResponse2());
 			canvas.shiftFrame(shiftX, shiftY);
 			canvas.requestRedraw();
-			canvas.redrawGridLines();
 		}
 		catch(Exception e)
 		{
@@ -377,33 +422,19 @@ public class TopToolBar implements IGraphicalInterface, IKeyMapping
 	/** Called when the animation speed slider is modified */
 	private void onAnimationSpeedChanged(double newSpeed)
 	{
-		if(newSpeed != 0)
-			animationTimeline.setRate(150 / newSpeed);
-		else
-			animationTimeline.setRate(0);
-	}
-
-	/** Cycles through the frames as in an animation */
-	private void cycleFramesInAnimation()
-	{
-		ListView<Frame> frames = frameDisplay.getListViewFrames();
-		
-		if(frames.getSelectionModel().getSelectedIndex() < frames.getItems().size() - 1)
-			frameDisplay.getListViewFrames().getSelectionModel().selectNext();
-		else
-			frameDisplay.getListViewFrames().getSelectionModel().select(0);
+		animationPlayer.setFrameDelay(newSpeed);
 	}
 
 	/** Called when the stop button is clicked */
 	private void onBtnStopAnimationClicked()
 	{
-		animationTimeline.stop();
+		animationPlayer.stop();
 	}
 
 	/** Called when the play button is clicked */
 	private void onBtnPlayAnimationClicked()
 	{
-		animationTimeline.play();
+		animationPlayer.play();
 	}
 	
 	/** Called when the export selected button is clicked */
@@ -414,37 +445,19 @@ public class TopToolBar implements IGraphicalInterface, IKeyMapping
 		fileChooser.setTitle("Choose Location to Export Image to");
 		fileChooser.getExtensionFilters().add(new ExtensionFilter("PNG (*.png)", "|*.png"));
 		
-		WritableImage writableImage = null;
-		RenderedImage renderedImage = null;
-		
 		File exportFile = fileChooser.showSaveDialog(null);
 		Frame frame = frameDisplay.getSelectedFrame();
 		
-		// If our target file we chose isnt empty, export png
+		// If our target file we chose isnt empty, export png in the background
 		if(exportFile != null)
 		{
-			try
+			// Snapshot the frame, so it can keep being edited while it is exported
+			FrameSnapshot snapshot = frame.snapshot();
+			runExport("image", exportFile, () ->
 			{
-				writableImage = exportFrame(frame);
-				
-				renderedImage = SwingFXUtils.fromFXImage(writableImage, null);
-				
-				ImageIO.write(renderedImage, "png", exportFile);
-				
-				MessagePopup message = new MessagePopup("Successfully exported!");
-				message.setupOkButton("Ok");
-				message.setupDisplayLabel("Successfully exported image to " + exportFile.getAbsolutePath() + "!");
-				message.show();
-			}
-			catch (Exception e2)
-			{
-				e2.printStackTrace();
-				MessagePopup message = new MessagePopup("Failed To Export!");
-				message.setupOkButton("Ok");
-				message.setupDisplayLabel("Failed to export image!");
-				message.show();
-				System.out.println("Failed to export!");
-			}
+				FrameExporter.writePng(snapshot, exportFile);
+				return null;
+			});
 		}
 	}
 
@@ -457,38 +470,172 @@ public class TopToolBar implements IGraphicalInterface, IKeyMapping
 		
 		File directory = directoryChooser.showDialog(null);
 		
-		WritableImage writableImage = null;
-		RenderedImage renderedImage = null;
+		// If we chose a directory, export the pngs in the background
+		if(directory != null)
+		{
+			List<FrameSnapshot> snapshots = snapshotFrames();
+			
+			ProgressPopup progressPopup = new ProgressPopup("Exporting...");
+			progressPopup.setupCancelButton("Cancel");
+			progressPopup.setupDisplayLabel("Exporting " + snapshots.size() + " frames...");
+			
+			// The export notifies on its own threads, the popups are updated on the JavaFX thread
+			BatchExport export = new BatchExport(snapshots, directory, new BatchExport.Listener()
+			{
+				@Override
+				public void onProgress(int exportedCount, int frameCount)
+				{
+					Platform.runLater(() -> progressPopup.setProgress(exportedCount, frameCount));
+				}
+				
+				@Override
+				public void onFinished(Exception failure)
+				{
+					Platform.runLater(() -> onExportAllFinished(progressPopup, directory, failure));
+				}
+			});
+			
+			progressPopup.setOnCancel(() -> export.cancel());
+			progressPopup.show();
+			export.start();
+		}
+	}
+	
+	/** Called once every frame is exported, or the export failed or was cancelled */
+	private void onExportAllFinished(ProgressPopup progressPopup, File directory, Exception failure)
+	{
+		progressPopup.close();
+		
+		// Cancelled by the user, who already knows
+		if(failure instanceof CancellationException)
+			return;
+		
+		showExportResult("images", directory, failure);
+	}
+
+	/** Called when the export sheet button is clicked */
+	private void onBtnExportSheetClicked()
+	{
+		FileChooser fileChooser = new FileChooser();
+		fileChooser.setInitialDirectory(new File(System.getProperty("user.home") + "/Desktop"));
+		fileChooser.setTitle("Choose Location to Export Sprite Sheet to");
+		fileChooser.getExtensionFilters().add(new ExtensionFilter("PNG (*.png)", "|*.png"));
 		
-		File file = null;
+		File imageFile = fileChooser.showSaveDialog(null);
 		
-		// If we chose a directory, export the png
-		if(directory != null)
+		// If our target file we chose isnt empty, pack and export the sheet in the background
+		if(imageFile != null)
 		{
-			try
+			// The atlas is written next to the image, with the same name
+			String imageName = imageFile.getName();
+			String baseName = imageName.toLowerCase().endsWith(".png") ? imageName.substring(0, imageName.length() - 4) : imageName;
+			File atlasFile = new File(imageFile.getParentFile(), baseName + ".json");
+			
+			List<FrameSnapshot> snapshots = snapshotFrames();
+			runExport("sprite sheet", imageFile, () ->
 			{
-				for(Frame frame : frameDisplay.getFrames())
+				SpriteSheet sheet = new SpriteSheetPacker().pack(snapshots);
+				sheet.writePng(imageFile);
+				try(Writer writer = new OutputStreamWriter(new FileOutputStream(atlasFile), StandardCharsets.UTF_8))
 				{
-					writableImage = exportFrame(frame);
-					
-					renderedImage = SwingFXUtils.fromFXImage(writableImage, null);
-					file = new File(directory.getAbsolutePath() + "//" + frame.getName() + ".png");
-					ImageIO.write(renderedImage, "png", file);
+					sheet.writeAtlas(writer, imageName);
 				}
-				MessagePopup message = new MessagePopup("Successfully exported!");
-				message.setupOkButton("Ok");
-				message.setupDisplayLabel("Successfully exported images to " + directory.getAbsolutePath() + "!");
-				message.show();
+				return null;
+			});
+		}
+	}
+
+	/** Called when the export gif button is clicked */
+	private void onBtnExportGifClicked()
+	{
+		FileChooser fileChooser = new FileChooser();
+		fileChooser.setInitialDirectory(new File(System.getProperty("user.home") + "/Desktop"));
+		fileChooser.setTitle("Choose Location to Export Animation to");
+		fileChooser.getExtensionFilters().add(new ExtensionFilter("GIF (*.gif)", "|*.gif"));
+		
+		File exportFile = fileChooser.showSaveDialog(null);
+		
+		// If our target file we chose isnt empty, encode the gif in the background
+		if(exportFile != null)
+		{
+			List<FrameSnapshot> snapshots = snapshotFrames();
+			
+			// A paused animation is exported at the default speed
+			int delay = (int) Math.round(sliderAnimationSpeed.getValue());
+			int frameDelay = (delay > 0) ? delay : 150;
+			
+			runExport("animation", exportFile, () ->
+			{
+				GifEncoder.writeGif(snapshots, frameDelay, exportFile);
+				return null;
+			});
+		}
+	}
+
+	/**
+	 * Snapshots every frame, so the frames can keep being edited while they are exported.
+	 * @return	the snapshots of the frames, in order
+	 */
+	private List<FrameSnapshot> snapshotFrames()
+	{
+		List<FrameSnapshot> snapshots = new ArrayList<FrameSnapshot>();
+		for(Frame frame : frameDisplay.getFrames())
+		{
+			snapshots.add(frame.snapshot());
+		}
+		return snapshots;
+	}
+	
+	/**
+	 * Runs an export on a background thread, then tells the user whether it succeeded.
+	 * @param what		what is exported, as shown to the user
+	 * @param target	the file or directory exported to
+	 * @param export	the export, which only reads snapshots of the frames
+	 */
+	private void runExport(String what, File target, Callable<?> export)
+	{
+		Thread exportThread = new Thread(() ->
+		{
+			Exception failure = null;
+			try
+			{
+				export.call();
 			}
-			catch (Exception e2)
+			catch (Exception e)
 			{
-				e2.printStackTrace();
-				MessagePopup message = new MessagePopup("Failed To Export!");
-				message.setupOkButton("Ok");
-				message.setupDisplayLabel("Failed to export images!");
-				message.show();
-				System.out.println("Failed to export!");
+				failure = e;
 			}
+			
+			Exception result = failure;
+			Platform.runLater(() -> showExportResult(what, target, result));
+		}, "Export");
+		exportThread.setDaemon(true);
+		exportThread.start();
+	}
+	
+	/**
+	 * Tells the user whether an export succeeded.
+	 * @param what		what was exported, as shown to the user
+	 * @param target	the file or directory exported to
+	 * @param failure	the reason the export failed, null if it succeeded
+	 */
+	private void showExportResult(String what, File target, Exception failure)
+	{
+		if(failure == null)
+		{
+			MessagePopup message = new MessagePopup("Successfully exported!");
+			message.setupOkButton("Ok");
+			message.setupDisplayLabel("Successfully exported " + what + " to " + target.getAbsolutePath() + "!");
+			message.show();
+		}
+		else
+		{
+			failure.printStackTrace();
+			MessagePopup message = new MessagePopup("Failed To Export!");
+			message.setupOkButton("Ok");
+			message.setupDisplayLabel("Failed to export " + what + "!");
+			message.show();
+			System.out.println("Failed to export!");
 		}
 	}
 
@@ -503,8 +650,8 @@ public class TopToolBar implements IGraphicalInterface, IKeyMapping
 		
 		if(popup.getResponse())
 		{
-			canvas.resetView();
 			project.newProject();
+			canvas.resetView();
 		}
 	}
 	
@@ -515,19 +662,11 @@ public class TopToolBar implements IGraphicalInterface, IKeyMapping
 		if(!file.exists())
 			return;
 		
-		canvas.resetView();
 		project.setProjectFile(file);
 		project.loadProject();
 		
-		canvas.setWidth(Program.pixelScale * Frame.getFrameWidth());
-		canvas.setHeight(Program.pixelScale * Frame.getFrameHeight());
-		
-		canvas.setTranslateX(0);
-		canvas.setTranslateY(0);
-		
-		canvas.setZoomScale((32 * 1.5) / Math.max(Frame.getFrameWidth(), Frame.getFrameHeight()));
-		canvas.requestRedraw();
-		canvas.redrawGridLines();
+		// Fit the loaded frames in the view
+		canvas.resetView();
 	}
 
 	/** Called when the open button is clicked */
@@ -537,19 +676,11 @@ public class TopToolBar implements IGraphicalInterface, IKeyMapping
 		
 		if(loadFile != null)
 		{
-			canvas.resetView();
 			project.setProjectFile(loadFile);
 			project.loadProject();
 			
-			canvas.setWidth(Program.pixelScale * Frame.getFrameWidth());
-			canvas.setHeight(Program.pixelScale * Frame.getFrameHeight());
-			
-			canvas.setTranslateX(0);
-			canvas.setTranslateY(0);
-			
-			canvas.setZoomScale((32 * 1.5) / Math.max(Frame.getFrameWidth(), Frame.getFrameHeight()));
-			canvas.requestRedraw();
-			canvas.redrawGridLines();
+			// Fit the loaded frames in the view
+			canvas.resetView();
 		}
 	}
 
@@ -612,7 +743,9 @@ public class TopToolBar implements IGraphicalInterface, IKeyMapping
 				break;
 				
 			case E:
-				if(event.isControlDown())
+				if(event.isControlDown() && event.isShiftDown())
+					btnExportSheet.fire();
+				else if(event.isControlDown())
 					btnExportAll.fire();
 				break;
 				
@@ -622,7 +755,10 @@ public class TopToolBar implements IGraphicalInterface, IKeyMapping
 				break;
 			
 			case G:
-				btnGridLines.fire();
+				if(event.isControlDown() && event.isShiftDown())
+					btnExportGif.fire();
+				else
+					btnGridLines.fire();
 			break;
 			
 			case V:
@@ -632,7 +768,7 @@ public class TopToolBar implements IGraphicalInterface, IKeyMapping
 			case SPACE:
 				if(event.isControlDown())
 				{
-					if(animationTimeline.getStatus() == Animation.Status.RUNNING)
+					if(animationPlayer.isPlaying())
 						btnStopAnimation.fire();
 					else
 						btnPlayAnimation.fire();
@@ -649,52 +785,4 @@ public class TopToolBar implements IGraphicalInterface, IKeyMapping
 			}
 		});
 	}
-	
-	public WritableImage exportFrame(Frame frame)
-	{
-		WritableImage writableImage = new WritableImage(Frame.getFrameWidth(), Frame.getFrameHeight());
-		
-		// Draw the frame pixels only if it is visible
-		if(frame.getVisibility())
-		{
-			// Retrieve the pixels in the frame
-			Pixel[] pixels = frame.getPixels().toArray(new Pixel[0]);
-			
-			// Create a list from the array pixels
-			List<Pixel> pixelsList = Arrays.asList(pixels);
-			
-			// Sort the list in respect to the layer's depth
-			// Rendering background first, and then the layers in the foreground ontop
-			pixelsList.sort(new Comparator<Pixel>()
-			{
-				@Override
-				public int compare(Pixel a, Pixel b)
-				{
-					return Integer.compare(a.getLayer().getDepth(), b.getLayer().getDepth());
-				}
-			});
-
-			Canvas miniCanvas = new Canvas(Frame.getFrameWidth(), Frame.getFrameHeight());
-			GraphicsContext canvasGraphics = miniCanvas.getGraphicsContext2D();
-			
-			canvasGraphics.clearRect(0, 0, miniCanvas.getWidth(), miniCanvas.getHeight());
-			
-			// Draw each pixel in order of ascending depth (background first, foreground last)
-			for(Pixel pixel : pixelsList)
-			{
-				// Draw the pixel only if its layer is visible
-				if(pixel.getLayer().getVisibility())
-				{
-					canvasGraphics.setFill(pixel.getColor());
-					canvasGraphics.fillRect(pixel.getX(), pixel.getY(), 1, 1);
-				}
-			}
-			
-			SnapshotParameters sp = new SnapshotParameters();
-			sp.setFill(Color.TRANSPARENT); // Have a transparent background
-			miniCanvas.snapshot(sp, writableImage);
-		}
-		
-		return writableImage;
-	}
 }
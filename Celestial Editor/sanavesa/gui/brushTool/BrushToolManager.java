@@ -67,8 +67,8 @@ public class BrushToolManager
 		if(primaryTool != null)
 		{
 			// Round the mouse position to the nearest cell in the canvas
-			double canvasX = MathUtil.snapValueFloor(e.getX(), canvas.getCanvasToFrameScaleX());
-			double canvasY = MathUtil.snapValueFloor(e.getY(), canvas.getCanvasToFrameScaleY());
+			double canvasX = MathUtil.snapValueFloor(canvas.convertViewXToCanvasX(e.getX()), canvas.getCanvasToFrameScaleX());
+			double canvasY = MathUtil.snapValueFloor(canvas.convertViewYToCanvasY(e.getY()), canvas.getCanvasToFrameScaleY());
 			primaryTool.get().onMouseMovedOnCanvas(canvas, e, canvasX, canvasY);
 		}
 		
@@ -83,9 +83,12 @@ public class BrushToolManager
 	 */
 	private void onMouseReleased(MouseEvent e)
 	{
+		// Start measuring the time until the change made by the event is presented
+		canvas.getRenderMetrics().markInput();
+		
 		// Round the mouse position to the nearest cell in the canvas
-		double canvasX = MathUtil.snapValueFloor(e.getX(), canvas.getCanvasToFrameScaleX());
-		double canvasY = MathUtil.snapValueFloor(e.getY(), canvas.getCanvasToFrameScaleY());
+		double canvasX = MathUtil.snapValueFloor(canvas.convertViewXToCanvasX(e.getX()), canvas.getCanvasToFrameScaleX());
+		double canvasY = MathUtil.snapValueFloor(canvas.convertViewYToCanvasY(e.getY()), canvas.getCanvasToFrameScaleY());
 		
 		// Primary brush released
 		if(e.getButton() == MouseButton.PRIMARY && primaryTool != null)
@@ -107,9 +110,12 @@ public class BrushToolManager
 	 */
 	private void onMousePressed(MouseEvent e)
 	{
+		// Start measuring the time until the change made by the event is presented
+		canvas.getRenderMetrics().markInput();
+		
 		// Round the mouse position to the nearest cell in the canvas
-		double canvasX = MathUtil.snapValueFloor(e.getX(), canvas.getCanvasToFrameScaleX());
-		double canvasY = MathUtil.snapValueFloor(e.getY(), canvas.getCanvasToFrameScaleY());
+		double canvasX = MathUtil.snapValueFloor(canvas.convertViewXToCanvasX(e.getX()), canvas.getCanvasToFrameScaleX());
+		double canvasY = MathUtil.snapValueFloor(canvas.convertViewYToCanvasY(e.getY()), canvas.getCanvasToFrameScaleY());
 		
 		// Primary brush on LMB
 		if(e.isPrimaryButtonDown() && primaryTool != null)
@@ -135,9 +141,12 @@ public class BrushToolManager
 	 */
 	private void onMouseDragged(MouseEvent e)
 	{
+		// Start measuring the time until the change made by the event is presented
+		canvas.getRenderMetrics().markInput();
+		
 		// Round the mouse position to the nearest cell in the canvas
-		double canvasX = MathUtil.snapValueFloor(e.getX(), canvas.getCanvasToFrameScaleX());
-		double canvasY = MathUtil.snapValueFloor(e.getY(), canvas.getCanvasToFrameScaleY());
+		double canvasX = MathUtil.snapValueFloor(canvas.convertViewXToCanvasX(e.getX()), canvas.getCanvasToFrameScaleX());
+		double canvasY = MathUtil.snapValueFloor(canvas.convertViewYToCanvasY(e.getY()), canvas.getCanvasToFrameScaleY());
 		
 		// Primary brush on LMB
 		if(e.isPrimaryButtonDown() && primaryTool != null)
@@ -197,8 +206,8 @@ public class BrushToolManager
 		this.brushSize = brushSize;
 		if(primaryTool != null)
 		{
-			double canvasX = MathUtil.snapValueFloor(mousePrevX, canvas.getCanvasToFrameScaleX());
-			double canvasY = MathUtil.snapValueFloor(mousePrevY, canvas.getCanvasToFrameScaleY());
+			double canvasX = MathUtil.snapValueFloor(canvas.convertViewXToCanvasX(mousePrevX), canvas.getCanvasToFrameScaleX());
+			double canvasY = MathUtil.snapValueFloor(canvas.convertViewYToCanvasY(mousePrevY), canvas.getCanvasToFrameScaleY());
 			primaryTool.get().onMouseMovedOnCanvas(canvas, null, canvasX, canvasY);
 		}
 	}
@@ -6,13 +6,17 @@ import javafx.scene.input.MouseEvent;
 import sanavesa.command.DrawCommand;
 import sanavesa.command.MultiCommand;
 import sanavesa.gui.canvas.PixelatedCanvas;
-import sanavesa.util.MathUtil;
+import sanavesa.source.Frame;
+import sanavesa.util.Rasterizer;
 
 public class CircleTool extends BrushTool
 {
 	private double startX = 0, startY = 0;
 	private double endX = 0, endY = 0;
 	
+	/** The cells of the circle shown on the temporary canvas while dragging */
+	private final ToolPreview preview = new ToolPreview();
+	
 	public CircleTool(Image image, BrushToolManager brushToolManager, BrushType brushType)
 	{
 		super(image, brushToolManager, brushType);
@@ -27,7 +31,7 @@ public class CircleTool extends BrushTool
 		startY = snappedMouseY;
 		
 		// Clear the temporary canvas
-		canvas.clearTemporaryCanvas();
+		preview.clear(canvas);
 	}
 	
 	@Override
@@ -36,78 +40,9 @@ public class CircleTool extends BrushTool
 		endX = snappedMouseX;
 		endY = snappedMouseY;
 		
-		// Clear the temporary canvas
-		canvas.clearTemporaryCanvas();
-		
-		// Draw a display
-		double radius = Math.round(Math.sqrt(Math.pow(endX - startX, 2) + Math.pow(endY - startY, 2)));
-		
-		double x = radius;
-	    double y = 0;
-	    double err = 0;
-
-	    while (x >= y)
-	    {
-	    	canvas.drawOnTemporaryCanvas(
-	        		MathUtil.snapValue(snappedMouseX + x, canvas.getCanvasToFrameScaleX()),
-	        		MathUtil.snapValue(snappedMouseY + y, canvas.getCanvasToFrameScaleY()),
-	        		canvas.getCanvasToFrameScaleX(),
-	        		canvas.getCanvasToFrameScaleY());
-	    	
-	    	canvas.drawOnTemporaryCanvas(
-	        		MathUtil.snapValue(snappedMouseX + y, canvas.getCanvasToFrameScaleX()),
-	        		MathUtil.snapValue(snappedMouseY + x, canvas.getCanvasToFrameScaleY()),
-	        		canvas.getCanvasToFrameScaleX(),
-	        		canvas.getCanvasToFrameScaleY());
-	    	
-	    	canvas.drawOnTemporaryCanvas(
-	        		MathUtil.snapValue(snappedMouseX - y, canvas.getCanvasToFrameScaleX()),
-	        		MathUtil.snapValue(snappedMouseY + x, canvas.getCanvasToFrameScaleY()),
-	        		canvas.getCanvasToFrameScaleX(),
-	        		canvas.getCanvasToFrameScaleY());
-	    	
-	    	canvas.drawOnTemporaryCanvas(
-	        		MathUtil.snapValue(snappedMouseX - x, canvas.getCanvasToFrameScaleX()),
-	        		MathUtil.snapValue(snappedMouseY + y, canvas.getCanvasToFrameScaleY()),
-	        		canvas.getCanvasToFrameScaleX(),
-	        		canvas.getCanvasToFrameScaleY());
-	    	
-	    	canvas.drawOnTemporaryCanvas(
-	        		MathUtil.snapValue(snappedMouseX - x, canvas.getCanvasToFrameScaleX()),
-	        		MathUtil.snapValue(snappedMouseY - y, canvas.getCanvasToFrameScaleY()),
-	        		canvas.getCanvasToFrameScaleX(),
-	        		canvas.getCanvasToFrameScaleY());
-	    	
-	    	canvas.drawOnTemporaryCanvas(
-	        		MathUtil.snapValue(snappedMouseX - y, canvas.getCanvasToFrameScaleX()),
-	        		MathUtil.snapValue(snappedMouseY - x, canvas.getCanvasToFrameScaleY()),
-	        		canvas.getCanvasToFrameScaleX(),
-	        		canvas.getCanvasToFrameScaleY());
-	    	
-	    	canvas.drawOnTemporaryCanvas(
-	        		MathUtil.snapValue(snappedMouseX + y, canvas.getCanvasToFrameScaleX()),
-	        		MathUtil.snapValue(snappedMouseY - x, canvas.getCanvasToFrameScaleY()),
-	        		canvas.getCanvasToFrameScaleX(),
-	        		canvas.getCanvasToFrameScaleY());
-	    	
-	    	canvas.drawOnTemporaryCanvas(
-	        		MathUtil.snapValue(snappedMouseX + x, canvas.getCanvasToFrameScaleX()),
-	        		MathUtil.snapValue(snappedMouseY - y, canvas.getCanvasToFrameScaleY()),
-	        		canvas.getCanvasToFrameScaleX(),
-	        		canvas.getCanvasToFrameScaleY());
-
-	        if (err <= 0)
-	        {
-	            y += 1;
-	            err += 2*y + 1;
-	        }
-	        if (err > 0)
-	        {
-	            x -= 1;
-	            err -= 2*x + 1;
-	        }
-	    }
-		
+		// Preview the circle on the temp canvas, only the cells which changed since the last drag are touched
+		Rasterizer.circle(canvas.convertCanvasXToFrameX(endX), canvas.convertCanvasYToFrameY(endY), getRadius(canvas), preview::add);
+		preview.show(canvas);
 	}
 	
 	@Override
@@ -117,57 +52,44 @@ public class CircleTool extends BrushTool
 		endY = snappedMouseY;
 		
 		// Clear the temporary canvas
-		canvas.clearTemporaryCanvas();
+		preview.clear(canvas);
 		
 		// Used for undo'ing
-		MultiCommand<DrawCommand> multiCommands = new MultiCommand<DrawCommand>(canvas.getFrameDisplay().getSelectedFrame());
+		Frame frame = canvas.getFrameDisplay().getSelectedFrame();
+		MultiCommand<DrawCommand> multiCommands = new MultiCommand<DrawCommand>(frame);
 		
-		double radius = Math.round(Math.sqrt(Math.pow(endX - startX, 2) + Math.pow(endY - startY, 2)));
+		// The whole circle is reported to the canvas as a single change
+		frame.applyBatch(() -> drawCircle(canvas, snappedMouseX, snappedMouseY, multiCommands));
 		
-		double x = radius;
-	    double y = 0;
-	    double err = 0;
-
-	    while (x >= y)
-	    {
-	    	DrawCommand cmd;
-	        
-	        cmd = new DrawCommand(canvas.getFrameDisplay().getSelectedFrame(), canvas.draw(snappedMouseX + x, snappedMouseY + y));
-	        multiCommands.getCommands().add(cmd);
-	        
-	        cmd = new DrawCommand(canvas.getFrameDisplay().getSelectedFrame(), canvas.draw(snappedMouseX + y, snappedMouseY + x));
-	        multiCommands.getCommands().add(cmd);
-	        
-	        cmd = new DrawCommand(canvas.getFrameDisplay().getSelectedFrame(), canvas.draw(snappedMouseX - y, snappedMouseY + x));
-	        multiCommands.getCommands().add(cmd);
-	        
-	        cmd = new DrawCommand(canvas.getFrameDisplay().getSelectedFrame(), canvas.draw(snappedMouseX - x, snappedMouseY + y));
-	        multiCommands.getCommands().add(cmd);
-	        
-	        cmd = new DrawCommand(canvas.getFrameDisplay().getSelectedFrame(), canvas.draw(snappedMouseX - x, snappedMouseY - y));
-	        multiCommands.getCommands().add(cmd);
-	        
-	        cmd = new DrawCommand(canvas.getFrameDisplay().getSelectedFrame(), canvas.draw(snappedMouseX - y, snappedMouseY - x));
-	        multiCommands.getCommands().add(cmd);
-	        
-	        cmd = new DrawCommand(canvas.getFrameDisplay().getSelectedFrame(), canvas.draw(snappedMouseX + y, snappedMouseY - x));
-	        multiCommands.getCommands().add(cmd);
-	        
-	        cmd = new DrawCommand(canvas.getFrameDisplay().getSelectedFrame(), canvas.draw(snappedMouseX + x, snappedMouseY - y));
-	        multiCommands.getCommands().add(cmd);
-
-	        if (err <= 0)
-	        {
-	            y += 1;
-	            err += 2*y + 1;
-	        }
-	        if (err > 0)
-	        {
-	            x -= 1;
-	            err -= 2*x + 1;
-	        }
-	    }
-	    
-	    canvas.getFrameDisplay().getSelectedFrame().getCommands().add(multiCommands);
+		frame.getCommands().add(multiCommands);
+	}
+	
+	/**
+	 * Draws the circle around the center, passing through the start position, onto the selected frame.
+	 * The circle covers the same cells as its preview.
+	 * @param canvas			the canvas to draw on
+	 * @param snappedMouseX		the x-coordinate of the center in canvas coordinates
+	 * @param snappedMouseY		the y-coordinate of the center in canvas coordinates
+	 * @param multiCommands		the commands to record the drawn pixels into, used for undo'ing
+	 */
+	private void drawCircle(PixelatedCanvas canvas, double snappedMouseX, double snappedMouseY, MultiCommand<DrawCommand> multiCommands)
+	{
+		Rasterizer.circle(canvas.convertCanvasXToFrameX(snappedMouseX), canvas.convertCanvasYToFrameY(snappedMouseY), getRadius(canvas), (x, y) ->
+		{
+			DrawCommand cmd = new DrawCommand(canvas.getFrameDisplay().getSelectedFrame(),
+					canvas.draw(x * canvas.getCanvasToFrameScaleX(), y * canvas.getCanvasToFrameScaleY()));
+			multiCommands.getCommands().add(cmd);
+		});
+	}
+	
+	/**
+	 * @param canvas	the canvas being drawn on
+	 * @return the radius of the circle in cells, the distance between the start and end positions
+	 */
+	private int getRadius(PixelatedCanvas canvas)
+	{
+		int dx = canvas.convertCanvasXToFrameX(endX) - canvas.convertCanvasXToFrameX(startX);
+		int dy = canvas.convertCanvasYToFrameY(endY) - canvas.convertCanvasYToFrameY(startY);
+		return (int) Math.round(Math.sqrt(dx * dx + dy * dy));
 	}
-}
+}
\ No newline at end of file
@@ -6,6 +6,7 @@ import javafx.scene.input.MouseEvent;
 import sanavesa.command.EraseCommand;
 import sanavesa.command.MultiCommand;
 import sanavesa.gui.canvas.PixelatedCanvas;
+import sanavesa.source.Frame;
 import sanavesa.source.Pixel;
 
 public class EraserTool extends BrushTool
@@ -24,8 +25,31 @@ public class EraserTool extends BrushTool
 		canvas.clearTemporaryCanvas();
 		
 		// Used for undo'ing
-		MultiCommand<EraseCommand> multiCommands = new MultiCommand<EraseCommand>(canvas.getFrameDisplay().getSelectedFrame());
+		Frame frame = canvas.getFrameDisplay().getSelectedFrame();
+		MultiCommand<EraseCommand> multiCommands = new MultiCommand<EraseCommand>(frame);
 		
+		// The whole dab is reported to the canvas as a single change
+		frame.applyBatch(() -> eraseDab(canvas, frame, multiCommands, snappedMouseX, snappedMouseY));
+		
+		frame.getCommands().add(multiCommands);
+	}
+	
+	@Override
+	public void onMouseDraggedOnCanvas(PixelatedCanvas canvas, MouseEvent e, double snappedMouseX, double snappedMouseY)
+	{
+		onMousePressedOnCanvas(canvas, e, snappedMouseX, snappedMouseY);
+	}
+	
+	/**
+	 * Erases a square dab of the brush size from the frame, centered on the mouse.
+	 * @param canvas			the canvas to erase from
+	 * @param frame				the selected frame
+	 * @param multiCommands		the commands to record the erased pixels into, used for undo'ing
+	 * @param snappedMouseX		the snapped x-coordinate of the mouse on the canvas
+	 * @param snappedMouseY		the snapped y-coordinate of the mouse on the canvas
+	 */
+	private void eraseDab(PixelatedCanvas canvas, Frame frame, MultiCommand<EraseCommand> multiCommands, double snappedMouseX, double snappedMouseY)
+	{
 		double size = brushToolManager.getBrushSize();
 		for(double i = -size/2; i < size/2; i++)
 		{
@@ -35,18 +59,10 @@ public class EraserTool extends BrushTool
 				
 				if(p != null)
 				{
-					EraseCommand cmd = new EraseCommand(canvas.getFrameDisplay().getSelectedFrame(), p);
+					EraseCommand cmd = new EraseCommand(frame, p);
 					multiCommands.getCommands().add(cmd);
 				}
 			}
 		}
-		
-		canvas.getFrameDisplay().getSelectedFrame().getCommands().add(multiCommands);
-	}
-	
-	@Override
-	public void onMouseDraggedOnCanvas(PixelatedCanvas canvas, MouseEvent e, double snappedMouseX, double snappedMouseY)
-	{
-		onMousePressedOnCanvas(canvas, e, snappedMouseX, snappedMouseY);
 	}
 }
@@ -33,8 +33,7 @@ public class EyeDropperTool extends BrushTool
 		
 		int frameX = canvas.convertCanvasXToFrameX(snappedMouseX);
 		int frameY = canvas.convertCanvasYToFrameY(snappedMouseY);
-		List<Pixel> pixels = canvas.getFrameDisplay().getSelectedFrame().findPixels(p ->
-			(p.getX() == frameX) && (p.getY() == frameY));
+		List<Pixel> pixels = canvas.getFrameDisplay().getSelectedFrame().getPixelsAt(frameX, frameY);
 		
 		Pixel chosenPixel = null;
 		for(Pixel p : pixels)
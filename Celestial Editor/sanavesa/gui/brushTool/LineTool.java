@@ -6,14 +6,17 @@ import javafx.scene.input.MouseEvent;
 import sanavesa.command.DrawCommand;
 import sanavesa.command.MultiCommand;
 import sanavesa.gui.canvas.PixelatedCanvas;
+import sanavesa.source.Frame;
 import sanavesa.source.Pixel;
-import sanavesa.util.MathUtil;
+import sanavesa.util.Rasterizer;
 
 public class LineTool extends BrushTool
 {
 	private double startX = 0, startY = 0;
 	private double endX = 0, endY = 0;
 	
+	/** The cells of the line shown on the temporary canvas while dragging */
+	private final ToolPreview preview = new ToolPreview();
 	
 	public LineTool(Image image, BrushToolManager brushToolManager, BrushType brushType)
 	{
@@ -28,91 +31,54 @@ public class LineTool extends BrushTool
 		startY = snappedMouseY;
 		
 		// Clear the temporary canvas
-		canvas.clearTemporaryCanvas();
+		preview.clear(canvas);
 	}
 	
 	@Override
 	public void onMouseDraggedOnCanvas(PixelatedCanvas canvas, MouseEvent e, double snappedMouseX, double snappedMouseY)
 	{
-		// Clear the temporary canvas
-		canvas.clearTemporaryCanvas();
 		endX = snappedMouseX;
 		endY = snappedMouseY;
 		
-		// draw the final result on temp canvas
-		
-		int distance = (int) Math.round(Math.sqrt(Math.pow(endX - startX, 2) + Math.pow(endY - startY, 2)));
-		double angle = Math.atan2(endY - startY, endX - startX);
-		
-		for(int k = 0; k <= distance; k += 2)
-		{
-			double x = startX + Math.cos(angle) * k;
-			double y = startY + Math.sin(angle) * k;
-			
-			canvas.drawOnTemporaryCanvas(
-					MathUtil.snapValue(x, canvas.getCanvasToFrameScaleX()),
-					MathUtil.snapValue(y, canvas.getCanvasToFrameScaleY()),
-					canvas.getCanvasToFrameScaleX(),
-					canvas.getCanvasToFrameScaleY());
-		}
+		// Preview the line on the temp canvas, only the cells which changed since the last drag are touched
+		Rasterizer.line(canvas.convertCanvasXToFrameX(startX), canvas.convertCanvasYToFrameY(startY),
+				canvas.convertCanvasXToFrameX(endX), canvas.convertCanvasYToFrameY(endY), preview::add);
+		preview.show(canvas);
 	}
 	
 	@Override
 	public void onMouseReleasedOnCanvas(PixelatedCanvas canvas, MouseEvent e, double snappedMouseX, double snappedMouseY)
 	{
 		// Clear the temporary canvas
-		canvas.clearTemporaryCanvas();
+		preview.clear(canvas);
 		
 		endX = snappedMouseX;
 		endY = snappedMouseY;
 		
 		// Used for undo'ing
-		MultiCommand<DrawCommand> multiCommands = new MultiCommand<DrawCommand>(canvas.getFrameDisplay().getSelectedFrame());
-		
-		double x0, y0, x1, y1;
-		if(startX == endX)
-		{
-			// No slope
-			// Draw vertical line
-			for(double m = Math.min(startY, endY); m < Math.max(startY, endY); m++)
-			{
-				Pixel p = canvas.draw(startX, m);
-				DrawCommand cmd = new DrawCommand(canvas.getFrameDisplay().getSelectedFrame(), p);
-				multiCommands.getCommands().add(cmd);
-			}
-			
-			return;
-		}
-		else if(Math.min(startX, endX) == startX)
-		{
-			// positive slope
-			x0 = startX;
-			y0 = startY;
-			x1 = endX;
-			y1 = endY;
-		}
-		else
-		{
-			// Negative slope
-			x0 = endX;
-			y0 = endY;
-			x1 = startX;
-			y1 = startY;
-		}
+		Frame frame = canvas.getFrameDisplay().getSelectedFrame();
+		MultiCommand<DrawCommand> multiCommands = new MultiCommand<DrawCommand>(frame);
 		
-		double dx = x1 - x0;
-		double dy = y1 - y0;
-		double distance = Math.sqrt(dx * dx + dy * dy);
+		// The whole line is reported to the canvas as a single change
+		frame.applyBatch(() -> drawLine(canvas, multiCommands));
 		
-		double y = y0;
-		for(double x = x0; x < x1; x+=dx/distance)
+		frame.getCommands().add(multiCommands);
+	}
+	
+	/**
+	 * Draws the line between the start and end positions onto the selected frame.
+	 * The line covers the same cells as its preview.
+	 * @param canvas			the canvas to draw on
+	 * @param multiCommands		the commands to record the drawn pixels into, used for undo'ing
+	 */
+	private void drawLine(PixelatedCanvas canvas, MultiCommand<DrawCommand> multiCommands)
+	{
+		Rasterizer.line(canvas.convertCanvasXToFrameX(startX), canvas.convertCanvasYToFrameY(startY),
+				canvas.convertCanvasXToFrameX(endX), canvas.convertCanvasYToFrameY(endY), (x, y) ->
 		{
-			Pixel p = canvas.draw(x, y);
+			Pixel p = canvas.draw(x * canvas.getCanvasToFrameScaleX(), y * canvas.getCanvasToFrameScaleY());
 			DrawCommand cmd = new DrawCommand(canvas.getFrameDisplay().getSelectedFrame(), p);
 			multiCommands.getCommands().add(cmd);
-			y += dy / distance;
-		}
-		
-		canvas.getFrameDisplay().getSelectedFrame().getCommands().add(multiCommands);
+		});
 	}
 }
\ No newline at end of file
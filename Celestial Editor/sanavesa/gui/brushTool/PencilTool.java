@@ -6,6 +6,7 @@ import javafx.scene.input.MouseEvent;
 import sanavesa.command.DrawCommand;
 import sanavesa.command.MultiCommand;
 import sanavesa.gui.canvas.PixelatedCanvas;
+import sanavesa.source.Frame;
 import sanavesa.source.Pixel;
 import sanavesa.util.MathUtil;
 
@@ -46,26 +47,40 @@ public class PencilTool extends BrushTool
 		canvas.clearTemporaryCanvas();
 		
 		// Used for undo'ing
-		MultiCommand<DrawCommand> multiCommands = new MultiCommand<DrawCommand>(canvas.getFrameDisplay().getSelectedFrame());
+		Frame frame = canvas.getFrameDisplay().getSelectedFrame();
+		MultiCommand<DrawCommand> multiCommands = new MultiCommand<DrawCommand>(frame);
 		
+		// The whole dab is reported to the canvas as a single change
+		frame.applyBatch(() -> drawDab(canvas, frame, multiCommands, snappedMouseX, snappedMouseY));
+		
+		frame.getCommands().add(multiCommands);
+	}
+	
+	@Override
+	public void onMouseDraggedOnCanvas(PixelatedCanvas canvas, MouseEvent e, double snappedMouseX, double snappedMouseY)
+	{
+		onMousePressedOnCanvas(canvas, e, snappedMouseX, snappedMouseY);
+	}
+	
+	/**
+	 * Draws a square dab of the brush size onto the frame, centered on the mouse.
+	 * @param canvas			the canvas to draw on
+	 * @param frame				the selected frame
+	 * @param multiCommands		the commands to record the drawn pixels into, used for undo'ing
+	 * @param snappedMouseX		the snapped x-coordinate of the mouse on the canvas
+	 * @param snappedMouseY		the snapped y-coordinate of the mouse on the canvas
+	 */
+	private void drawDab(PixelatedCanvas canvas, Frame frame, MultiCommand<DrawCommand> multiCommands, double snappedMouseX, double snappedMouseY)
+	{
 		double size = brushToolManager.getBrushSize();
 		for(double i = -size/2; i < size/2; i++)
 		{
 			for(double j = -size/2; j < size/2; j++)
 			{
 				Pixel p = canvas.draw(snappedMouseX + i * canvas.getCanvasToFrameScaleX(), snappedMouseY + j *canvas.getCanvasToFrameScaleY());
-				DrawCommand cmd = new DrawCommand(canvas.getFrameDisplay().getSelectedFrame(), p);
+				DrawCommand cmd = new DrawCommand(frame, p);
 				multiCommands.getCommands().add(cmd);
 			}
 		}
-		
-		
-		canvas.getFrameDisplay().getSelectedFrame().getCommands().add(multiCommands);
-	}
-	
-	@Override
-	public void onMouseDraggedOnCanvas(PixelatedCanvas canvas, MouseEvent e, double snappedMouseX, double snappedMouseY)
-	{
-		onMousePressedOnCanvas(canvas, e, snappedMouseX, snappedMouseY);
 	}
 }
@@ -0,0 +1,122 @@
+/***************************************************************************************************************************
+ * Class:		ToolPreview.java
+ * Author:		Mohammad Alali
+ *
+ * Description: The cells previewed by a brush tool on the temporary canvas while the mouse is dragged. The cells of the
+ * 				next preview are collected, and only the cells which differ from the shown preview are drawn or erased.
+ *
+ * Attributes:
+ * 				Set<Long> shownCells
+ * 				Set<Long> nextCells
+ * 				int temporaryCanvasVersion
+ *
+ * Methods:
+ * 				void add(int, int)
+ * 				void show(PixelatedCanvas)
+ * 				void clear(PixelatedCanvas)
+ *
+ ***************************************************************************************************************************/
+
+package sanavesa.gui.brushTool;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import sanavesa.gui.canvas.PixelatedCanvas;
+
+/**
+ * The cells previewed by a brush tool on the temporary canvas while the mouse is dragged.
+ * <p>
+ * A drag usually moves the shape by a few cells, so most of the previewed cells stay the same.
+ * Rather than clearing the temporary canvas, only the cells which left the shape are erased,
+ * and only the cells which joined it are drawn.
+ * </p>
+ * @author Mohammad Alali
+ */
+class ToolPreview
+{
+	/** The frame cells shown on the temporary canvas, packed by {@link #pack(int, int)} */
+	private Set<Long> shownCells = new HashSet<Long>();
+
+	/** The frame cells of the next preview, packed by {@link #pack(int, int)} */
+	private Set<Long> nextCells = new HashSet<Long>();
+
+	/** The {@link PixelatedCanvas#getTemporaryCanvasVersion()} of the shown cells, they are gone once it changes */
+	private int temporaryCanvasVersion = -1;
+
+	/**
+	 * Adds a cell to the next preview. Cells can be added more than once.
+	 * @param frameX	the x-coordinate of the cell in the frame
+	 * @param frameY	the y-coordinate of the cell in the frame
+	 */
+	void add(int frameX, int frameY)
+	{
+		nextCells.add(pack(frameX, frameY));
+	}
+
+	/**
+	 * Replaces the shown preview by the cells added since the last call, touching only the cells which differ.
+	 * If the temporary canvas was cleared in the meantime, such as when the camera moved, every cell is drawn.
+	 * @param canvas	the canvas whose temporary canvas shows the preview
+	 */
+	void show(PixelatedCanvas canvas)
+	{
+		double width = canvas.getCanvasToFrameScaleX();
+		double height = canvas.getCanvasToFrameScaleY();
+		boolean isCleared = temporaryCanvasVersion != canvas.getTemporaryCanvasVersion();
+
+		// Erase the cells which are no longer part of the preview
+		if(!isCleared)
+		{
+			for(long cell : shownCells)
+			{
+				if(!nextCells.contains(cell))
+					canvas.eraseOnTemporaryCanvas(unpackX(cell) * width, unpackY(cell) * height, width, height);
+			}
+		}
+
+		// Draw the cells which are not shown yet
+		for(long cell : nextCells)
+		{
+			if(isCleared || !shownCells.contains(cell))
+				canvas.drawOnTemporaryCanvas(unpackX(cell) * width, unpackY(cell) * height, width, height);
+		}
+
+		// The next preview reuses the set of the previous one
+		Set<Long> previousCells = shownCells;
+		shownCells = nextCells;
+		nextCells = previousCells;
+		nextCells.clear();
+		temporaryCanvasVersion = canvas.getTemporaryCanvasVersion();
+	}
+
+	/**
+	 * Removes the preview, and clears the temporary canvas.
+	 * @param canvas	the canvas whose temporary canvas shows the preview
+	 */
+	void clear(PixelatedCanvas canvas)
+	{
+		canvas.clearTemporaryCanvas();
+		shownCells.clear();
+		nextCells.clear();
+		temporaryCanvasVersion = canvas.getTemporaryCanvasVersion();
+	}
+
+	/** @return the cell packed into a single value, the x-coordinate in the high bits */
+	private static long pack(int x, int y)
+	{
+		return ((long) x << 32) | (y & 0xFFFFFFFFL);
+	}
+
+	/** @return the x-coordinate of the packed cell */
+	private static int unpackX(long cell)
+	{
+		return (int) (cell >> 32);
+	}
+
+	/** @return the y-coordinate of the packed cell */
+	private static int unpackY(long cell)
+	{
+		return (int) cell;
+	}
+}
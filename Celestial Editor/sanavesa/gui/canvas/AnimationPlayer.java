@@ -0,0 +1,355 @@
+/***************************************************************************************************************************
+ * Class:		AnimationPlayer.java
+ * Author:		Mohammad Alali
+ *
+ * Description: Plays the frames as an animation in a preview above the canvas, without changing the selected frame. The
+ * 				upcoming frames are composited ahead of time on a background thread into a bounded ring of images, which
+ * 				are then only presented on time. An image is composited again once its frame is edited, so the artist
+ * 				can keep drawing on the selected frame while the animation plays.
+ *
+ * Attributes:
+ * 				FrameDisplay frameDisplay
+ * 				PixelatedCanvas canvas
+ * 				ImageView view
+ * 				Slot[] ring
+ * 				long sequence
+ * 				long frameDelay
+ * 				ExecutorService worker
+ * 				Queue<Slot> finishedSlots
+ *
+ * Methods:
+ * 				ImageView getView()
+ * 				boolean isPlaying()
+ * 				void play()
+ * 				void stop()
+ * 				void setFrameDelay(double)
+ *
+ ***************************************************************************************************************************/
+
+package sanavesa.gui.canvas;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import sanavesa.gui.frameDisplay.FrameDisplay;
+import sanavesa.source.Frame;
+import sanavesa.source.FrameSnapshot;
+import sanavesa.source.Layer;
+import sanavesa.util.ArgbUtil;
+
+/**
+ * Plays the frames as an animation, without touching the selection of the {@link FrameDisplay}.
+ * <p>
+ * The ring holds the images of the frames which are presented next. Each slot remembers the version of the frame,
+ * see {@link Frame#getVersion()}, and the colors of the layers it was composited with, so an edited frame is simply
+ * composited again. Short animations fit entirely in the ring, and loop without compositing anything.
+ * </p>
+ * <p>
+ * The frames are snapshotted on the JavaFX thread, composited on a single background thread, and uploaded
+ * into their image with a single {@link javafx.scene.image.PixelWriter} call on the next pulse.
+ * </p>
+ * @author Mohammad Alali
+ */
+public class AnimationPlayer
+{
+	/** The most memory, in bytes, that the images of the ring may use */
+	private static final long ringMemoryBudget = 128L * 1024 * 1024;
+
+	/** The most images in the ring */
+	private static final int maxRingSize = 64;
+
+	/** The Frame Display which holds the frames to play */
+	private final FrameDisplay frameDisplay;
+
+	/** The canvas whose background color the frames are composited over */
+	private final PixelatedCanvas canvas;
+
+	/** The preview which presents the frames */
+	private final ImageView view = new ImageView();
+
+	/** The images of the upcoming frames, the frame at sequence <code>s</code> is in slot <code>s % ring.length</code> */
+	private Slot[] ring = null;
+
+	/** The amount of frames presented since playing started, the presented frame is this modulo the amount of frames */
+	private long sequence = 0;
+
+	/** The time between two frames, in nanoseconds. 0 pauses the animation. */
+	private long frameDelay = 150_000_000L;
+
+	/** The time at which the presented frame was presented, in nanoseconds */
+	private long lastPresentTime = 0;
+
+	/** The single thread which composites the frames */
+	private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable ->
+	{
+		Thread thread = new Thread(runnable, "Animation Player");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/** The slots whose pixels were composited by the worker, waiting to be uploaded on the JavaFX thread */
+	private final Queue<Slot> finishedSlots = new ConcurrentLinkedQueue<Slot>();
+
+	/** Presents, uploads and prefetches the frames on every pulse while playing */
+	private final AnimationTimer timer = new AnimationTimer()
+	{
+		@Override
+		public void handle(long now)
+		{
+			update(now);
+		}
+	};
+
+	/** Whether the animation is playing */
+	private boolean isPlaying = false;
+
+	/**
+	 * Creates a stopped player of the frames of the frame display.
+	 * @param frameDisplay	the frame display which holds the frames to play
+	 * @param canvas		the canvas whose background color the frames are composited over
+	 */
+	public AnimationPlayer(FrameDisplay frameDisplay, PixelatedCanvas canvas)
+	{
+		this.frameDisplay = frameDisplay;
+		this.canvas = canvas;
+
+		// The preview is drawn above the canvas, and lets the mouse through to it
+		view.setSmooth(false);
+		view.setPreserveRatio(true);
+		view.setFitWidth(192);
+		view.setFitHeight(192);
+		view.setMouseTransparent(true);
+		view.setVisible(false);
+	}
+
+	/**
+	 * @return the preview which presents the frames, to be placed above the canvas
+	 */
+	public ImageView getView()
+	{
+		return view;
+	}
+
+	/**
+	 * @return true if the animation is playing
+	 */
+	public boolean isPlaying()
+	{
+		return isPlaying;
+	}
+
+	/** Starts playing the animation from the selected frame */
+	public void play()
+	{
+		if(isPlaying)
+			return;
+
+		isPlaying = true;
+		sequence = Math.max(frameDisplay.getListViewFrames().getSelectionModel().getSelectedIndex(), 0);
+		lastPresentTime = 0;
+		view.setVisible(true);
+		timer.start();
+	}
+
+	/** Stops the animation, and releases the images of the ring */
+	public void stop()
+	{
+		if(!isPlaying)
+			return;
+
+		isPlaying = false;
+		timer.stop();
+		view.setVisible(false);
+		view.setImage(null);
+		ring = null;
+		finishedSlots.clear();
+	}
+
+	/**
+	 * Sets the time between two frames.
+	 * @param milliseconds	the time between two frames, in milliseconds, 0 to pause the animation
+	 */
+	public void setFrameDelay(double milliseconds)
+	{
+		frameDelay = (long) (milliseconds * 1_000_000L);
+	}
+
+	/**
+	 * Called on every pulse while playing. Uploads the frames the worker finished, presents the next frame
+	 * once it is due and ready, and submits the upcoming frames whose images are missing or stale.
+	 * @param now	the time of the pulse, in nanoseconds
+	 */
+	private void update(long now)
+	{
+		List<Frame> frames = frameDisplay.getFrames();
+		if(frames.isEmpty())
+			return;
+
+		// A different frame size requires different images, and allows a different amount of them.
+		// There is no need for more images than frames, in which case every frame keeps its image while looping.
+		int width = Frame.getFrameWidth();
+		int height = Frame.getFrameHeight();
+		// At least two images are needed to composite the next frame while presenting the current one.
+		long affordable = Math.min(maxRingSize, ringMemoryBudget / Math.max(8L * width * height, 1));
+		int ringSize = (int) Math.min(frames.size(), Math.max(2, affordable));
+		if(ring == null || ring.length != ringSize || ring[0].width != width || ring[0].height != height)
+			createRing(ringSize, width, height);
+
+		int backgroundArgb = ArgbUtil.toArgb(canvas.getCanvasClearColor(), 1.0);
+
+		// Upload the frames the worker finished
+		Slot finished;
+		while((finished = finishedSlots.poll()) != null)
+		{
+			finished.upload();
+		}
+
+		// Present the next frame once it is due, or keep the current one until the next frame is ready
+		if(lastPresentTime == 0 || (frameDelay > 0 && now - lastPresentTime >= frameDelay))
+		{
+			long next = (lastPresentTime == 0) ? sequence : sequence + 1;
+			Slot slot = ring[(int) (next % ring.length)];
+			if(slot.isReady(frames.get((int) (next % frames.size())), backgroundArgb))
+			{
+				view.setImage(slot.image);
+				sequence = next;
+				lastPresentTime = now;
+			}
+		}
+
+		// Composite the upcoming frames, without replacing the presented one
+		for(int i = 1; i < ring.length; i++)
+		{
+			long upcoming = sequence + i;
+			Slot slot = ring[(int) (upcoming % ring.length)];
+			Frame frame = frames.get((int) (upcoming % frames.size()));
+			if(!slot.isPending && !slot.isReady(frame, backgroundArgb))
+				slot.submit(frame, backgroundArgb);
+		}
+
+		// The presented frame may have been edited as well
+		Slot presented = ring[(int) (sequence % ring.length)];
+		Frame presentedFrame = frames.get((int) (sequence % frames.size()));
+		if(!presented.isPending && !presented.isReady(presentedFrame, backgroundArgb))
+			presented.submit(presentedFrame, backgroundArgb);
+	}
+
+	/**
+	 * Replaces the ring by empty slots of the specified size.
+	 * Each slot holds the composited pixels and their image, so it uses 8 bytes per cell.
+	 */
+	private void createRing(int size, int width, int height)
+	{
+		ring = new Slot[size];
+		for(int i = 0; i < size; i++)
+		{
+			ring[i] = new Slot(width, height);
+		}
+		finishedSlots.clear();
+		lastPresentTime = 0;
+	}
+
+	/** The image of a single frame in the ring */
+	private class Slot
+	{
+		/** The width of the image */
+		final int width;
+
+		/** The height of the image */
+		final int height;
+
+		/** The image presented by the preview */
+		final WritableImage image;
+
+		/** The frame composited into the image, null if none */
+		private Frame frame = null;
+
+		/** The version of the frame composited into the image */
+		private int version = 0;
+
+		/** The {@link Layer#getAppearanceVersion()} the image was composited with */
+		private int appearanceVersion = 0;
+
+		/** The visibility of the frame the image was composited with */
+		private boolean visibility = false;
+
+		/** The background color the image was composited over */
+		private int backgroundArgb = 0;
+
+		/** Whether the worker is compositing a frame for this slot */
+		private boolean isPending = false;
+
+		/** The frame snapshot being composited, replaced by its pixels once the worker is done */
+		private FrameSnapshot pendingSnapshot = null;
+
+		/** The frame of {@link #pendingSnapshot} */
+		private Frame pendingFrame = null;
+
+		/** The background color of {@link #pendingSnapshot} */
+		private int pendingBackgroundArgb = 0;
+
+		/** The pixels composited by the worker, published through {@link AnimationPlayer#finishedSlots} */
+		private int[] pendingPixels = null;
+
+		Slot(int width, int height)
+		{
+			this.width = width;
+			this.height = height;
+			image = new WritableImage(width, height);
+		}
+
+		/**
+		 * @return true if the image shows the current state of the frame
+		 */
+		boolean isReady(Frame frame, int backgroundArgb)
+		{
+			return this.frame == frame && version == frame.getVersion() && visibility == frame.getVisibility()
+					&& appearanceVersion == Layer.getAppearanceVersion() && this.backgroundArgb == backgroundArgb;
+		}
+
+		/**
+		 * Snapshots the frame, and composites it on the worker.
+		 */
+		void submit(Frame frame, int backgroundArgb)
+		{
+			FrameSnapshot snapshot = frame.snapshot();
+			isPending = true;
+			pendingSnapshot = snapshot;
+			pendingFrame = frame;
+			pendingBackgroundArgb = backgroundArgb;
+			worker.execute(() ->
+			{
+				pendingPixels = snapshot.toArgb(backgroundArgb);
+				finishedSlots.add(this);
+			});
+		}
+
+		/**
+		 * Uploads the pixels composited by the worker into the image.
+		 */
+		void upload()
+		{
+			FrameSnapshot snapshot = pendingSnapshot;
+			int[] pixels = pendingPixels;
+			if(pixels.length == width * height)
+				image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+
+			frame = pendingFrame;
+			version = snapshot.getVersion();
+			appearanceVersion = snapshot.getAppearanceVersion();
+			visibility = snapshot.getVisibility();
+			backgroundArgb = pendingBackgroundArgb;
+			pendingSnapshot = null;
+			pendingFrame = null;
+			pendingPixels = null;
+			isPending = false;
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/***************************************************************************************************************************
+ * Class:		CellBuffer.java
+ * Author:		Mohammad Alali
+ *
+ * Description: An int ARGB value for every cell of a rectangular area of a frame. The area can be moved, in which case
+ * 				the values of the cells that remain in the area are kept, and the newly exposed cells are reported.
+ *
+ * Attributes:
+ * 				PixelBounds area
+ * 				int[] values
+ *
+ * Methods:
+ * 				PixelBounds getArea()
+ * 				int[] getValues()
+ * 				int indexOf(int, int)
+ * 				List<PixelBounds> setArea(PixelBounds)
+ *
+ ***************************************************************************************************************************/
+
+package sanavesa.gui.canvas;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import sanavesa.source.PixelBounds;
+
+/**
+ * An int ARGB value for every cell of a rectangular area of a frame, row by row.
+ * Moving the area keeps the values of the cells that remain in it, so only the
+ * newly exposed cells have to be computed again.
+ * @author Mohammad Alali
+ */
+class CellBuffer
+{
+	/** The cells of the frame covered by the buffer, null until {@link #setArea(PixelBounds)} is called */
+	private PixelBounds area = null;
+
+	/** The ARGB values of every cell in the area, row by row */
+	private int[] values = new int[0];
+
+	/**
+	 * @return the cells of the frame covered by the buffer, null until {@link #setArea(PixelBounds)} is called
+	 */
+	PixelBounds getArea()
+	{
+		return area;
+	}
+
+	/**
+	 * @return the ARGB values of every cell in the area, row by row
+	 */
+	int[] getValues()
+	{
+		return values;
+	}
+
+	/**
+	 * @param x		the x-coordinate of a cell inside the area
+	 * @param y		the y-coordinate of a cell inside the area
+	 * @return	the index of the cell in {@link #getValues()}
+	 */
+	int indexOf(int x, int y)
+	{
+		return (y - area.getMinY()) * area.getWidth() + (x - area.getMinX());
+	}
+
+	/**
+	 * Moves the buffer to cover the specified cells. The cells shared with the previous area
+	 * keep their values, the newly exposed cells are zero.
+	 * @param newArea	the cells of the frame to cover
+	 * @return	the newly exposed cells, empty if the area did not change
+	 */
+	List<PixelBounds> setArea(PixelBounds newArea)
+	{
+		if(newArea.equals(area))
+			return Collections.emptyList();
+
+		int width = newArea.getWidth();
+		int[] newValues = new int[width * newArea.getHeight()];
+
+		// Keep the values of the cells that are still covered
+		PixelBounds kept = newArea.intersection(area);
+		if(kept != null)
+		{
+			for(int y = kept.getMinY(); y <= kept.getMaxY(); y++)
+			{
+				System.arraycopy(values, indexOf(kept.getMinX(), y),
+						newValues, (y - newArea.getMinY()) * width + (kept.getMinX() - newArea.getMinX()), kept.getWidth());
+			}
+		}
+
+		values = newValues;
+		area = newArea;
+
+		// Nothing is kept, so the whole area is exposed
+		List<PixelBounds> exposed = new ArrayList<PixelBounds>();
+		if(kept == null)
+		{
+			exposed.add(newArea);
+			return exposed;
+		}
+
+		// The exposed cells form up to four strips around the kept cells
+		if(kept.getMinY() > newArea.getMinY())
+			exposed.add(new PixelBounds(newArea.getMinX(), newArea.getMinY(), newArea.getMaxX(), kept.getMinY() - 1));
+		if(kept.getMaxY() < newArea.getMaxY())
+			exposed.add(new PixelBounds(newArea.getMinX(), kept.getMaxY() + 1, newArea.getMaxX(), newArea.getMaxY()));
+		if(kept.getMinX() > newArea.getMinX())
+			exposed.add(new PixelBounds(newArea.getMinX(), kept.getMinY(), kept.getMinX() - 1, kept.getMaxY()));
+		if(kept.getMaxX() < newArea.getMaxX())
+			exposed.add(new PixelBounds(kept.getMaxX() + 1, kept.getMinY(), newArea.getMaxX(), kept.getMaxY()));
+
+		return exposed;
+	}
+}
@@ -0,0 +1,119 @@
+/***************************************************************************************************************************
+ * Class:		FrameBitmap.java
+ * Author:		Mohammad Alali
+ *
+ * Description: A composited bitmap of the visible area of a frame, one int ARGB value per cell. The cells are blended
+ * 				in software from a snapshot of the frame, on the thread of the FrameCompositor, which publishes a copy
+ * 				of the bitmap to be uploaded into an image on the JavaFX thread.
+ * 				The bitmap only covers the visible cells, so its memory does not depend on the size of the frame.
+ *
+ * Attributes:
+ * 				CellBuffer buffer
+ *
+ * Methods:
+ * 				PixelBounds getArea()
+ * 				List<PixelBounds> setArea(PixelBounds)
+ * 				int compose(FrameSnapshot, List<OnionSkin>, int, PixelBounds)
+ * 				void copyTo(int[])
+ *
+ ***************************************************************************************************************************/
+
+package sanavesa.gui.canvas;
+
+import java.util.List;
+
+import sanavesa.source.FrameSnapshot;
+import sanavesa.source.PixelBounds;
+import sanavesa.util.ArgbUtil;
+
+/**
+ * A composited bitmap of the visible area of a frame, one int ARGB value per cell.
+ * <p>
+ * The cells are blended in software from a {@link FrameSnapshot}, so the bitmap can be composited
+ * away from the JavaFX thread. Only the cells that changed, or that scrolled into view, need to be
+ * composited again.
+ * </p>
+ * @author Mohammad Alali
+ */
+class FrameBitmap
+{
+	/** The ARGB values of every visible cell */
+	private final CellBuffer buffer = new CellBuffer();
+
+	/**
+	 * @return the cells of the frame covered by the bitmap, null until {@link #setArea(PixelBounds)} is called
+	 */
+	PixelBounds getArea()
+	{
+		return buffer.getArea();
+	}
+
+	/**
+	 * Moves the bitmap to cover the specified cells. The cells shared with the previous area
+	 * keep their composited values, so only the newly exposed cells must be composited.
+	 * @param newArea	the cells of the frame to cover
+	 * @return	the cells which must be composited, empty if the area did not change
+	 */
+	List<PixelBounds> setArea(PixelBounds newArea)
+	{
+		return buffer.setArea(newArea);
+	}
+
+	/**
+	 * Composites the cells of the region into the bitmap. Each cell starts as the background color,
+	 * then the onion skins, from the farthest to the nearest, and the pixels of the frame are blended
+	 * on top in depth order. Cells of the region outside of the area of the bitmap are ignored.
+	 * @param frame				the snapshot of the frame to composite
+	 * @param onionSkins		the ghosts drawn behind the frame, updated to the area of the bitmap, farthest first
+	 * @param backgroundArgb	the opaque ARGB background color
+	 * @param region			the cells to composite
+	 * @return the amount of cells composited
+	 */
+	int compose(FrameSnapshot frame, List<OnionSkin> onionSkins, int backgroundArgb, PixelBounds region)
+	{
+		// Bound the region by the area of the bitmap
+		PixelBounds area = buffer.getArea();
+		region = (area == null) ? null : region.intersection(area);
+		if(region == null)
+			return 0;
+
+		// Start from the background
+		int[] values = buffer.getValues();
+		for(int y = region.getMinY(); y <= region.getMaxY(); y++)
+		{
+			int rowStart = buffer.indexOf(region.getMinX(), y);
+			for(int i = rowStart; i < rowStart + region.getWidth(); i++)
+			{
+				values[i] = backgroundArgb;
+			}
+		}
+
+		// Blend the onion skins first, and then the frame on top of them
+		for(OnionSkin onionSkin : onionSkins)
+		{
+			onionSkin.blendOnto(buffer, region);
+		}
+
+		if(frame.getVisibility())
+		{
+			// The snapshot visits the pixels of each cell in depth order, so they are blended as they come
+			frame.forEachArgb(region, (x, y, argb) ->
+			{
+				int index = buffer.indexOf(x, y);
+				values[index] = ArgbUtil.blend(argb, values[index]);
+			});
+		}
+		
+		return region.getWidth() * region.getHeight();
+	}
+
+	/**
+	 * Copies the composited values of the whole area, row by row.
+	 * @param target	the array to copy into, at least as long as the number of cells in the area
+	 */
+	void copyTo(int[] target)
+	{
+		int[] values = buffer.getValues();
+		System.arraycopy(values, 0, target, 0, values.length);
+	}
+}
@@ -0,0 +1,262 @@
+/***************************************************************************************************************************
+ * Class:		FrameCompositor.java
+ * Author:		Mohammad Alali
+ *
+ * Description: Composites the visible cells of the selected frame and its onion skins on a background thread. The
+ * 				JavaFX thread submits a request made of immutable frame snapshots, and the compositor publishes the
+ * 				finished bitmap through a lock-free double buffer, which the JavaFX thread uploads into an image in a
+ * 				single PixelWriter call. At most one request is composited at a time.
+ *
+ * Attributes:
+ * 				ExecutorService worker
+ * 				AtomicBoolean busy
+ * 				AtomicReference<Composite> ready
+ * 				AtomicReference<int[]> spare
+ * 				FrameBitmap bitmap
+ * 				Map<Frame, OnionSkin> onionSkins
+ * 				List<OnionSkin> composedOnionSkins
+ *
+ * Methods:
+ * 				boolean isBusy()
+ * 				void submit(Request)
+ * 				Composite poll()
+ * 				void recycle(int[])
+ *
+ ***************************************************************************************************************************/
+
+package sanavesa.gui.canvas;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import sanavesa.source.Frame;
+import sanavesa.source.FrameSnapshot;
+import sanavesa.source.PixelBounds;
+
+/**
+ * Composites the selected frame and its onion skins away from the JavaFX thread.
+ * <p>
+ * Requests only hold {@link FrameSnapshot}s, so the compositor never reads a frame, a layer or any JavaFX property.
+ * The finished bitmaps are handed over through two atomic slots: the latest finished bitmap, and a spare array
+ * which the JavaFX thread returns once it has uploaded a bitmap. Neither thread ever waits for the other.
+ * </p>
+ * @author Mohammad Alali
+ */
+class FrameCompositor
+{
+	/** The single thread which composites the requests */
+	private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable ->
+	{
+		Thread thread = new Thread(runnable, "Frame Compositor");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/** Whether a request is being composited */
+	private final AtomicBoolean busy = new AtomicBoolean(false);
+
+	/** The latest finished bitmap which the JavaFX thread has not taken yet */
+	private final AtomicReference<Composite> ready = new AtomicReference<Composite>();
+
+	/** An array returned by the JavaFX thread, which the next bitmap is copied into */
+	private final AtomicReference<int[]> spare = new AtomicReference<int[]>();
+
+	/** The composited visible cells, only used by the worker */
+	private final FrameBitmap bitmap = new FrameBitmap();
+
+	/** The cached ghosts, by the frame they show, only used by the worker */
+	private final Map<Frame, OnionSkin> onionSkins = new HashMap<Frame, OnionSkin>();
+
+	/** The ghosts composited into the bitmap, farthest first, only used by the worker */
+	private List<OnionSkin> composedOnionSkins = Collections.emptyList();
+
+	/**
+	 * @return true if a request is being composited, in which case no other request should be submitted
+	 */
+	boolean isBusy()
+	{
+		return busy.get();
+	}
+
+	/**
+	 * Composites the request on the background thread. Must not be called while {@link #isBusy()}.
+	 * @param request	the snapshots to composite
+	 */
+	void submit(Request request)
+	{
+		busy.set(true);
+		worker.execute(() ->
+		{
+			try
+			{
+				compose(request);
+			}
+			finally
+			{
+				busy.set(false);
+			}
+		});
+	}
+
+	/**
+	 * Takes the latest finished bitmap. Once uploaded, its pixels should be returned through {@link #recycle(int[])}.
+	 * @return	the latest finished bitmap, null if none was finished since the last call
+	 */
+	Composite poll()
+	{
+		return ready.getAndSet(null);
+	}
+
+	/**
+	 * Returns the pixels of an uploaded bitmap, so the next bitmap can be copied into them.
+	 * @param pixels	the pixels which are no longer used
+	 */
+	void recycle(int[] pixels)
+	{
+		spare.set(pixels);
+	}
+
+	/**
+	 * Composites the request into the bitmap, and publishes a copy of it.
+	 */
+	private void compose(Request request)
+	{
+		long start = System.nanoTime();
+		PixelBounds area = request.visibleCells;
+
+		// Update the ghosts that are still shown, and forget the rest
+		int cellCount = 0;
+		boolean hasOnionSkinsChanged = false;
+		List<OnionSkin> skins = new ArrayList<OnionSkin>();
+		for(OnionSkinRequest onionSkinRequest : request.onionSkins)
+		{
+			OnionSkin onionSkin = onionSkins.computeIfAbsent(onionSkinRequest.frame, OnionSkin::new);
+
+			// The changed cells are also part of the dirty cells of the request
+			if(onionSkinRequest.changedCells != null)
+				onionSkin.invalidate(onionSkinRequest.changedCells);
+			hasOnionSkinsChanged |= onionSkin.setAppearance(onionSkinRequest.tint, onionSkinRequest.opacityFactor);
+			cellCount += onionSkin.update(area, onionSkinRequest.snapshot);
+			skins.add(onionSkin);
+		}
+		onionSkins.values().retainAll(skins);
+
+		// A different set of ghosts, or a ghost that looks different, affects every cell
+		boolean composeAll = request.composeAll || hasOnionSkinsChanged || !skins.equals(composedOnionSkins);
+		composedOnionSkins = skins;
+
+		// Composite the cells that scrolled into view, then the ones that changed
+		for(PixelBounds exposed : bitmap.setArea(area))
+		{
+			cellCount += bitmap.compose(request.frame, skins, request.backgroundArgb, exposed);
+		}
+
+		if(composeAll)
+			cellCount += bitmap.compose(request.frame, skins, request.backgroundArgb, area);
+		else if(request.dirtyCells != null)
+			cellCount += bitmap.compose(request.frame, skins, request.backgroundArgb, request.dirtyCells);
+
+		// Copy the bitmap into the back buffer, and swap it with the front buffer
+		int size = area.getWidth() * area.getHeight();
+		int[] pixels = spare.getAndSet(null);
+		if(pixels == null || pixels.length != size)
+			pixels = new int[size];
+		bitmap.copyTo(pixels);
+
+		Composite unused = ready.getAndSet(new Composite(area, pixels, cellCount, System.nanoTime() - start));
+		if(unused != null)
+			spare.set(unused.pixels);
+	}
+
+	/** The immutable description of what to composite, built on the JavaFX thread */
+	static class Request
+	{
+		/** The snapshot of the selected frame */
+		final FrameSnapshot frame;
+
+		/** The ghosts drawn behind the frame, farthest first */
+		final List<OnionSkinRequest> onionSkins;
+
+		/** The opaque ARGB background color */
+		final int backgroundArgb;
+
+		/** The cells of the frame to composite */
+		final PixelBounds visibleCells;
+
+		/** The cells which changed since the last request, null if none did */
+		final PixelBounds dirtyCells;
+
+		/** Whether every visible cell must be composited again */
+		final boolean composeAll;
+
+		Request(FrameSnapshot frame, List<OnionSkinRequest> onionSkins, int backgroundArgb,
+				PixelBounds visibleCells, PixelBounds dirtyCells, boolean composeAll)
+		{
+			this.frame = frame;
+			this.onionSkins = onionSkins;
+			this.backgroundArgb = backgroundArgb;
+			this.visibleCells = visibleCells;
+			this.dirtyCells = dirtyCells;
+			this.composeAll = composeAll;
+		}
+	}
+
+	/** The immutable description of a ghost drawn behind the frame */
+	static class OnionSkinRequest
+	{
+		/** The frame shown by the ghost, which identifies the cached ghost */
+		final Frame frame;
+
+		/** The snapshot of the frame shown by the ghost */
+		final FrameSnapshot snapshot;
+
+		/** The cells of the frame which changed since the last request, null if none did */
+		final PixelBounds changedCells;
+
+		/** The ARGB color towards which the ghost is tinted, where the alpha is the amount of tinting */
+		final int tint;
+
+		/** The amount by which the opacity of the ghost is multiplied */
+		final double opacityFactor;
+
+		OnionSkinRequest(Frame frame, FrameSnapshot snapshot, PixelBounds changedCells, int tint, double opacityFactor)
+		{
+			this.frame = frame;
+			this.snapshot = snapshot;
+			this.changedCells = changedCells;
+			this.tint = tint;
+			this.opacityFactor = opacityFactor;
+		}
+	}
+
+	/** A finished bitmap, published to the JavaFX thread */
+	static class Composite
+	{
+		/** The cells of the frame covered by the bitmap */
+		final PixelBounds area;
+
+		/** The ARGB values of every cell in the area, row by row */
+		final int[] pixels;
+
+		/** The amount of cells composited, including the onion skins */
+		final int composedCells;
+
+		/** The time spent compositing the bitmap, in nanoseconds */
+		final long composeDuration;
+
+		Composite(PixelBounds area, int[] pixels, int composedCells, long composeDuration)
+		{
+			this.area = area;
+			this.pixels = pixels;
+			this.composedCells = composedCells;
+			this.composeDuration = composeDuration;
+		}
+	}
+}
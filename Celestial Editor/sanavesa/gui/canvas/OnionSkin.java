@@ -0,0 +1,199 @@
+/***************************************************************************************************************************
+ * Class:		OnionSkin.java
+ * Author:		Mohammad Alali
+ *
+ * Description: A cached ghost of a neighbouring frame, drawn faded and tinted behind the selected frame. The frame is
+ * 				composited once over transparency into a buffer of the visible cells. Only the cells of the frame that
+ * 				change, that scroll into view, or every cell once the layers change, are composited again.
+ * 				It is composited from snapshots of the frame, and is only used by the thread of the FrameCompositor.
+ *
+ * Attributes:
+ * 				Frame frame
+ * 				FrameSnapshot snapshot
+ * 				CellBuffer cells
+ * 				List<PixelBounds> invalidCells
+ * 				int appearanceVersion
+ * 				int tint
+ * 				double opacityFactor
+ *
+ * Methods:
+ * 				Frame getFrame()
+ * 				boolean setAppearance(int, double)
+ * 				void invalidate(PixelBounds)
+ * 				int update(PixelBounds, FrameSnapshot)
+ * 				void blendOnto(CellBuffer, PixelBounds)
+ *
+ ***************************************************************************************************************************/
+
+package sanavesa.gui.canvas;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import sanavesa.source.Frame;
+import sanavesa.source.FrameSnapshot;
+import sanavesa.source.Layer;
+import sanavesa.source.PixelBounds;
+import sanavesa.util.ArgbUtil;
+
+/**
+ * A cached ghost of a neighbouring frame, drawn faded and tinted behind the selected frame.
+ * <p>
+ * The frame is composited once over transparency, and the result is kept until the frame changes.
+ * The tint and opacity are applied while blending the ghost, so moving the selection, which changes
+ * the distance of the ghost from the selected frame, does not composite the frame again.
+ * </p>
+ * @author Mohammad Alali
+ */
+class OnionSkin
+{
+	/** The frame shown by the ghost, which identifies the ghost. It is never read, its snapshots are. */
+	private final Frame frame;
+
+	/** The latest snapshot of the frame */
+	private FrameSnapshot snapshot = null;
+
+	/** The composited frame over transparency, for the visible cells */
+	private final CellBuffer cells = new CellBuffer();
+
+	/** The cells of the buffer which no longer match the frame */
+	private final List<PixelBounds> invalidCells = new ArrayList<PixelBounds>();
+
+	/** The {@link Layer#getAppearanceVersion()} with which the buffer was composited */
+	private int appearanceVersion = Layer.getAppearanceVersion();
+
+	/** The ARGB color towards which the ghost is tinted, where the alpha is the amount of tinting */
+	private int tint = 0;
+
+	/** The amount by which the opacity of the ghost is multiplied */
+	private double opacityFactor = 0.0;
+
+	/**
+	 * Creates the ghost of the specified frame. Nothing is composited until {@link #update(PixelBounds, FrameSnapshot)} is called.
+	 * @param frame		the frame shown by the ghost
+	 */
+	OnionSkin(Frame frame)
+	{
+		this.frame = frame;
+	}
+
+	/**
+	 * @return the frame shown by the ghost
+	 */
+	Frame getFrame()
+	{
+		return frame;
+	}
+
+	/**
+	 * Sets how the ghost is blended, which depends on its distance from the selected frame.
+	 * @param tint				the ARGB color towards which the ghost is tinted, where the alpha is the amount of tinting
+	 * @param opacityFactor		the amount by which the opacity of the ghost is multiplied
+	 * @return	true if the ghost looks different than before
+	 */
+	boolean setAppearance(int tint, double opacityFactor)
+	{
+		if(this.tint == tint && this.opacityFactor == opacityFactor)
+			return false;
+
+		this.tint = tint;
+		this.opacityFactor = opacityFactor;
+		return true;
+	}
+
+	/**
+	 * Marks the cells of the frame as changed, so they are composited with the next update.
+	 * @param changedCells	the cells of the frame which changed
+	 */
+	void invalidate(PixelBounds changedCells)
+	{
+		PixelBounds region = changedCells.intersection(cells.getArea());
+		if(region != null)
+			invalidCells.add(region);
+	}
+
+	/**
+	 * Moves the ghost over the specified cells, and composites the cells which are new or no longer match the frame.
+	 * @param area			the visible cells
+	 * @param snapshot		the latest snapshot of the frame, which includes every change passed to {@link #invalidate(PixelBounds)}
+	 * @return the amount of cells composited
+	 */
+	int update(PixelBounds area, FrameSnapshot snapshot)
+	{
+		this.snapshot = snapshot;
+		invalidCells.addAll(cells.setArea(area));
+
+		// Every cell depends on the color, visibility and depth of the layers
+		if(appearanceVersion != snapshot.getAppearanceVersion())
+		{
+			appearanceVersion = snapshot.getAppearanceVersion();
+			invalidCells.clear();
+			invalidCells.add(area);
+		}
+
+		// The cells were invalidated against the old area, so only their part inside the new area is composited
+		int cellCount = 0;
+		for(PixelBounds changedCells : invalidCells)
+		{
+			PixelBounds region = changedCells.intersection(area);
+			if(region == null)
+				continue;
+
+			compose(region);
+			cellCount += region.getWidth() * region.getHeight();
+		}
+		invalidCells.clear();
+		return cellCount;
+	}
+
+	/**
+	 * Composites the pixels of the frame inside the region over transparency.
+	 * @param region	the cells to composite, inside the area of the buffer
+	 */
+	private void compose(PixelBounds region)
+	{
+		int[] values = cells.getValues();
+		for(int y = region.getMinY(); y <= region.getMaxY(); y++)
+		{
+			int rowStart = cells.indexOf(region.getMinX(), y);
+			for(int i = rowStart; i < rowStart + region.getWidth(); i++)
+			{
+				values[i] = 0;
+			}
+		}
+
+		// Only the pixels of visible layers are visited
+		snapshot.forEachArgb(region, (x, y, argb) ->
+		{
+			int index = cells.indexOf(x, y);
+			values[index] = ArgbUtil.blend(argb, values[index]);
+		});
+	}
+
+	/**
+	 * Blends the ghost, tinted and faded, onto the cells of the region in the destination.
+	 * The ghost must have been updated to the area of the destination.
+	 * @param destination	the ARGB values to blend onto
+	 * @param region		the cells to blend, inside the area of the destination
+	 */
+	void blendOnto(CellBuffer destination, PixelBounds region)
+	{
+		if(!snapshot.getVisibility() || opacityFactor <= 0.0)
+			return;
+
+		int[] source = cells.getValues();
+		int[] target = destination.getValues();
+		for(int y = region.getMinY(); y <= region.getMaxY(); y++)
+		{
+			int sourceIndex = cells.indexOf(region.getMinX(), y);
+			int targetIndex = destination.indexOf(region.getMinX(), y);
+			for(int x = 0; x < region.getWidth(); x++, sourceIndex++, targetIndex++)
+			{
+				// Skip the empty cells of the ghost
+				int argb = source[sourceIndex];
+				if(argb != 0)
+					target[targetIndex] = ArgbUtil.blend(ArgbUtil.fade(ArgbUtil.tint(argb, tint), opacityFactor), target[targetIndex]);
+			}
+		}
+	}
+}
@@ -3,16 +3,30 @@
  * Author:		Mohammad Alali
  * 
  * Description: This class extends the capabilities of the JavaFX Canvas class in a way that makes it easier to use for 
- * 				pixelated images.
+ * 				pixelated images. The canvas is a fixed, viewport-sized window onto the frame. A camera maps the canvas
+ * 				coordinates of the frame onto the viewport, and only the visible cells are rendered. Rendering happens
+ * 				on the next pulse after a request, and drops the onion skins and grid lines while it is too slow.
+ * 				The cells are composited from frame snapshots on a background thread, and uploaded on the next pulse.
  * 	
  * Attributes: 	
  				double xScale
  				double yScale
+ 				double cameraX
+ 				double cameraY
+ 				int renderQuality
+ 				long renderBudget
  * 		
  * Methods:		
  * 				double getLuminosityFactor()
  * 				Color getColorWithFactor()
+ * 				double convertViewXToCanvasX(double)
+ * 				double convertViewYToCanvasY(double)
  * 				void resetView()
+ * 				void requestRedraw()
+ * 				void setRenderBudget(long)
+ * 				RenderMetrics getRenderMetrics()
+ * 				void setMetricsOverlayVisible(boolean)
+ * 				void setMajorGridLineSpacing(int)
  * 				void redrawGridLines()
  * 				void shiftFrame(int, int)
  * 
@@ -20,36 +34,50 @@
 
 package sanavesa.gui.canvas;
 
-import java.util.Arrays;
-import java.util.Comparator;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
+import javafx.animation.AnimationTimer;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.scene.Cursor;
 import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.Label;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.input.ScrollEvent;
 import javafx.scene.paint.Color;
-import javafx.util.Duration;
 import sanavesa.gui.IKeyMapping;
+import sanavesa.gui.canvas.FrameCompositor.Composite;
+import sanavesa.gui.canvas.FrameCompositor.OnionSkinRequest;
 import sanavesa.gui.colorSelector.ColorSelector;
 import sanavesa.gui.frameDisplay.FrameDisplay;
 import sanavesa.gui.palette.Palette;
 import sanavesa.source.Frame;
+import sanavesa.source.FrameChange;
 import sanavesa.source.Pixel;
+import sanavesa.source.PixelBounds;
+import sanavesa.util.ArgbUtil;
 import sanavesa.util.MathUtil;
 
 /**
  * This class extends the capabilities of the JavaFX Canvas class in a way that
  * makes it easier to use for pixelated images.
+ * <p>
+ * The canvas keeps the size of the viewport no matter the size of the frame. Each cell
+ * of the frame spans {@link #xScale} by {@link #yScale} canvas coordinates, and a camera
+ * maps the canvas coordinates onto the viewport: a point is drawn at
+ * <code>(canvasX - cameraX) * zoomScale</code>. Only the cells inside the viewport are
+ * composited and drawn, so the memory used does not depend on the size of the frame.
+ * </p>
  * @author Mohammad Alali
  */
 public class PixelatedCanvas extends Canvas implements IKeyMapping
@@ -57,19 +85,34 @@ public class PixelatedCanvas extends Canvas implements IKeyMapping
 	
 	/**
 	 * The x-scale between the canvas:frame.
-	 * The x-scale is how many horizontal pixels in the canvas equate to a single x-pixel in the frame.
+	 * The x-scale is how many horizontal canvas coordinates equate to a single x-pixel in the frame.
 	 */
 	double xScale = 0.0;
 	
 	/** 
 	 * The y-scale between the canvas:frame. 
-	 * The yscale is how many vertical pixels in the canvas equate to a single y-pixel in the frame.
+	 * The yscale is how many vertical canvas coordinates equate to a single y-pixel in the frame.
 	 */
 	private double yScale = 0.0;
 	
+	/** The canvas x-coordinate shown at the left edge of the viewport */
+	private double cameraX = 0.0;
+	
+	/** The canvas y-coordinate shown at the top edge of the viewport */
+	private double cameraY = 0.0;
+	
 	/** The graphics component used to draw onto the canvas */
 	private GraphicsContext graphics = getGraphicsContext2D();
 	
+	/** Composites the visible cells of the selected frame and its onion skins on a background thread */
+	private final FrameCompositor compositor = new FrameCompositor();
+	
+	/** The latest composited cells at their native resolution, one pixel per cell, drawn scaled onto the canvas */
+	private WritableImage frameImage = null;
+	
+	/** The cells of the frame covered by {@link #frameImage}, null if nothing is drawn */
+	private PixelBounds frameImageArea = null;
+	
 	/** The Frame Display which is used to retrieve the selected frame */
 	private FrameDisplay frameDisplay;
 	
@@ -79,14 +122,17 @@ public class PixelatedCanvas extends Canvas implements IKeyMapping
 	/** The Palette which is used to retrieve the selected layer */
 	private Palette palette;
 	
-	/** The previous mouse location in canvas coordinates */
+	/** The previous mouse location in viewport coordinates */
 	private double mousePrevX = 0, mousePrevY = 0;
 	
 	/** The scale of the contents of the canvas */
 	private DoubleProperty zoomScale = new SimpleDoubleProperty(this, "zoomScale", 1.0);
 	
-	/** The minimum amount of zoom scale possible, the farthest you can zoom out */
-	private static final double minZoomScale = 0.1;
+	/**
+	 * The smallest size of a cell in the viewport, in pixels, which bounds the farthest you can zoom out.
+	 * It also bounds the amount of visible cells, and so the size of {@link #frameImage}, by the size of the viewport.
+	 */
+	private static final double minCellViewSize = 1.0;
 	
 	/** The maximum amount of zoom scale possible, the farthest you can zoom in */
 	private static final double maxZoomScale = 20.0;
@@ -94,58 +140,173 @@ public class PixelatedCanvas extends Canvas implements IKeyMapping
 	/** The speed of the zooming in or out */
 	private double zoomingSpeed = 2.5;
 	
-	/** The speed of paning to mouse position when zooming in or out */ 
-	private double zoomingPanSpeed = 50.0;
-	
 	/** Whether to display grid lines or not */
 	private boolean displayGridLines = true;
 	
 	/**
-	 * The <code>renderTimeline</code> will tick regularly and check the flag, {@link #hasRequestRedraw}, 
-	 * and redraw the canvas if it's true. It will then set the flag to false.
+	 * The smallest size of a cell in the viewport, in pixels, at which grid lines are drawn.
+	 * Below it the lines would cover the cells, so only the major grid lines are drawn, if they are far enough apart.
+	 */
+	private static final double minGridCellViewSize = 4.0;
+	
+	/** The amount of cells between two major grid lines, 0 to draw no major grid lines */
+	private int majorGridLineSpacing = 8;
+	
+	/** The width of the major grid lines, in pixels of the viewport */
+	private static final double majorGridLineWidth = 2.0;
+	
+	/**
+	 * The <code>renderTimer</code> is started by any request to redraw, and renders the canvas on the next pulse
+	 * of the JavaFX scene graph. It stops itself once nothing is left to render, so an idle canvas costs nothing.
 	 * <p>
 	 * The benefits of this method over immediately redrawing the canvas at every request is that
 	 * we only group up multiple calls into a single redraw call, which reduces CPU usage drastically. 
 	 */
-	private Timeline renderTimeline = new Timeline();
+	private final AnimationTimer renderTimer = new AnimationTimer()
+	{
+		@Override
+		public void handle(long now)
+		{
+			render(now);
+		}
+	};
+	
+	/** Whether {@link #renderTimer} is running */
+	private boolean isRenderScheduled = false;
 	
 	/**
 	 * A flag that indicates if the canvas requires a redraw.
-	 * The <code>renderTimeline</code> will tick regularly and check this flag, and redraw accordingly.
+	 * The <code>renderTimer</code> will render on the next pulse, and clear this flag.
 	 */
 	private boolean hasRequestRedraw = false;
 	
+	/** A flag that indicates if the visible grid lines must be drawn again on the next pulse */
+	private boolean hasGridChanged = false;
+	
+	/** The render quality, where everything is drawn */
+	private static final int qualityFull = 0;
+	
+	/** The render quality, where the onion skins are not drawn */
+	private static final int qualityNoOnionSkins = 1;
+	
+	/** The render quality, where neither the onion skins nor the grid lines are drawn */
+	private static final int qualityNoGridLines = 2;
+	
+	/**
+	 * The current render quality. Whenever a render takes longer than {@link #renderBudget},
+	 * the quality is lowered by one step, first dropping the onion skins and then the grid lines.
+	 * Once no render was requested for {@link #restoreQualityDelay}, full quality is restored.
+	 */
+	private int renderQuality = qualityFull;
+	
+	/** The longest a render may take, in nanoseconds, before the render quality is lowered. A 60 Hz pulse by default. */
+	private long renderBudget = 1_000_000_000L / 60;
+	
+	/** How long, in nanoseconds, the canvas must be idle before full quality is restored */
+	private static final long restoreQualityDelay = 250_000_000L;
+	
+	/** The time of the last pulse at which something was rendered, in nanoseconds */
+	private long lastRenderTime = 0;
+	
+	/** The time the last render took on the JavaFX thread, in nanoseconds */
+	private long lastRenderDuration = 0;
+	
+	/** The time the compositor took for the last uploaded image, in nanoseconds */
+	private long lastComposeDuration = 0;
+	
+	/** Whether the image being composited was requested by the render which restored the full quality */
+	private boolean isRestoringComposite = false;
+	
+	/** The measurements of the rendering, shown by {@link #metricsOverlay} */
+	private final RenderMetrics renderMetrics = new RenderMetrics();
+	
+	/** The text drawn above the canvas showing {@link #renderMetrics}, hidden by default */
+	private final Label metricsOverlay = new Label();
+	
+	/** How long, in nanoseconds, between two updates of {@link #metricsOverlay} */
+	private static final long metricsOverlayInterval = 250_000_000L;
+	
+	/** The time of the pulse at which {@link #metricsOverlay} was last updated, in nanoseconds */
+	private long lastMetricsOverlayTime = 0;
+	
+	/**
+	 * The cells of the frame that changed since the last render, null if none did.
+	 * Unless a full redraw was requested, only these cells are repainted.
+	 */
+	private PixelBounds dirtyCells = null;
+	
+	/**
+	 * A flag that indicates if the camera moved since the last render.
+	 * Only the cells which scrolled into view are composited, until then {@link #frameImage} is drawn at the new position.
+	 */
+	private boolean hasViewChanged = false;
+	
 	/** The background color of the canvas. Note that the opacity field is ignored. */
 	private Color canvasClearColor = Color.WHITE;
 	
-	/** The canvas for the grid lines. It will have the grid lines drawn only when necessary and cache it. */
+	/** The viewport-sized canvas for the grid lines. It will have the grid lines drawn only when necessary and cache it. */
 	private Canvas gridLinesCanvas = null;
 	
 	/** The cached graphic context for {@link #gridLinesCanvas}. */
 	private GraphicsContext gridGraphics = null;
 	
+	/** The cached graphic context of the viewport-sized canvas used for temporary drawings and effects */
 	private GraphicsContext tempCanvasGraphics = null;
 	
-	/** The amount by which the previous frame has its opacity multiplied by */
+	/** Incremented whenever the temporary canvas is cleared, so that previews know they must be drawn again */
+	private int temporaryCanvasVersion = 0;
+	
+	/** The amount by which the nearest onion skins have their opacity multiplied by */
 	private double onionSkinningFactor = 0.5f;
 	
 	/** Whether onion skinning is toggled on or off */
 	private boolean isOnionSkinning = true;
 	
+	/** The most onion skins shown on either side of the selected frame */
+	public static final int maxOnionSkins = 8;
+	
+	/** The amount of previous frames shown as onion skins */
+	private int onionSkinsBefore = 1;
+	
+	/** The amount of next frames shown as onion skins */
+	private int onionSkinsAfter = 0;
+	
+	/** The amount by which the opacity of an onion skin is multiplied for each frame farther than the nearest */
+	private double onionSkinFalloff = 0.5;
+	
+	/** The tint of the previous frames, where the opacity is the amount of tinting */
+	private Color onionSkinBeforeTint = new Color(1.0, 0.0, 0.0, 0.5);
+	
+	/** The tint of the next frames, where the opacity is the amount of tinting */
+	private Color onionSkinAfterTint = new Color(0.0, 0.0, 1.0, 0.5);
+	
+	/** The frames shown as onion skins by the last request to the compositor */
+	private List<Frame> onionSkinFrames = Collections.emptyList();
+	
+	/** The cells of each frame in {@link #onionSkinFrames} that changed since the last request to the compositor */
+	private final Map<Frame, PixelBounds> onionSkinChanges = new HashMap<Frame, PixelBounds>();
+	
 	/**
-	 * Create a pixelated canvas with the specified size.
-	 * @param width		the width in pixels of the canvas
-	 * @param height	the height in pixels of the canvas
+	 * Create a pixelated canvas with the specified viewport size. The size of the canvas
+	 * does not depend on the size of the frame.
+	 * @param width					the width in pixels of the viewport
+	 * @param height				the height in pixels of the viewport
+	 * @param cellSize				the size of a single cell of the frame in canvas coordinates
+	 * @param gridLinesCanvas		the canvas drawn above this canvas, used to display the grid lines
+	 * @param temporaryDrawCanvas	the canvas drawn above this canvas, used for temporary drawings
 	 */
-	public PixelatedCanvas(int width, int height, Canvas gridLinesCanvas, Canvas temporaryDrawCanvas)
+	public PixelatedCanvas(int width, int height, double cellSize, Canvas gridLinesCanvas, Canvas temporaryDrawCanvas)
 	{
-		// Automatically calculate the scale whenever canvas size changes
-		widthProperty().addListener((args, oldW, newW) -> calculateScale());
-		heightProperty().addListener((args, oldH, newH) -> calculateScale());
-		Frame.frameWidthProperty().addListener((args, oldW, newW) -> calculateScale());
-		Frame.frameHeightProperty().addListener((args, oldH, newH) -> calculateScale());
+		xScale = cellSize;
+		yScale = cellSize;
+		
+		// The view must be updated whenever the viewport or the frame is resized
+		widthProperty().addListener((args, oldW, newW) -> onViewChanged());
+		heightProperty().addListener((args, oldH, newH) -> onViewChanged());
+		Frame.frameWidthProperty().addListener((args, oldW, newW) -> onViewChanged());
+		Frame.frameHeightProperty().addListener((args, oldH, newH) -> onViewChanged());
 				
-		// Set the width and height of the canvas
+		// Set the width and height of the viewport
 		setWidth(width);
 		setHeight(height);
 		
@@ -157,35 +318,24 @@ public class PixelatedCanvas extends Canvas implements IKeyMapping
 		addEventFilter(MouseEvent.MOUSE_DRAGGED, e -> onMouseDragged(e));
 		addEventFilter(ScrollEvent.SCROLL, e -> onMouseScroll(e));
 		
-		renderTimeline.setCycleCount(Timeline.INDEFINITE);
-		renderTimeline.getKeyFrames().add(new KeyFrame(Duration.millis(20), e -> render()));
-		renderTimeline.play();
-		
-		// Bind the canvas scale to the calculated zoom scale
-		scaleXProperty().bind(zoomScale);
-		scaleYProperty().bind(zoomScale);
-		
 		// Setup the grid lines canvas, which shadows this canvas
 		this.gridLinesCanvas = gridLinesCanvas;
 		gridGraphics = gridLinesCanvas.getGraphicsContext2D();
-		gridLinesCanvas.translateXProperty().bind(translateXProperty());
-		gridLinesCanvas.translateYProperty().bind(translateYProperty());
-		gridLinesCanvas.scaleXProperty().bind(scaleXProperty());
-		gridLinesCanvas.scaleYProperty().bind(scaleYProperty());
 		gridLinesCanvas.setMouseTransparent(true);
 		gridLinesCanvas.widthProperty().bind(widthProperty());
 		gridLinesCanvas.heightProperty().bind(heightProperty());
-		redrawGridLines();
+		drawGridLines();
 		
 		// Setup the draw canvas which is used for temporary drawings and effects
 		tempCanvasGraphics = temporaryDrawCanvas.getGraphicsContext2D();
-		temporaryDrawCanvas.translateXProperty().bind(translateXProperty());
-		temporaryDrawCanvas.translateYProperty().bind(translateYProperty());
-		temporaryDrawCanvas.scaleXProperty().bind(scaleXProperty());
-		temporaryDrawCanvas.scaleYProperty().bind(scaleYProperty());
 		temporaryDrawCanvas.setMouseTransparent(true);
 		temporaryDrawCanvas.widthProperty().bind(widthProperty());
 		temporaryDrawCanvas.heightProperty().bind(heightProperty());
+		
+		// Setup the overlay of the measurements, which is hidden until toggled
+		metricsOverlay.setMouseTransparent(true);
+		metricsOverlay.setVisible(false);
+		metricsOverlay.setStyle("-fx-font-family: monospace; -fx-text-fill: white; -fx-background-color: rgba(0, 0, 0, 0.6); -fx-padding: 4;");
 	}
 	
 	public boolean isOnionSkinning()
@@ -209,20 +359,275 @@ public class PixelatedCanvas extends Canvas implements IKeyMapping
 		this.onionSkinningFactor = onionSkinningFactor;
 		this.requestRedraw();
 	}
+	
+	/**
+	 * @return the amount of previous frames shown as onion skins
+	 */
+	public int getOnionSkinsBefore()
+	{
+		return onionSkinsBefore;
+	}
+	
+	/**
+	 * Sets the amount of previous frames shown as onion skins.
+	 * @param count		the amount of frames, clamped between 0 and {@link #maxOnionSkins}
+	 */
+	public void setOnionSkinsBefore(int count)
+	{
+		onionSkinsBefore = MathUtil.clamp(count, 0, maxOnionSkins);
+		requestRedraw();
+	}
+	
+	/**
+	 * @return the amount of next frames shown as onion skins
+	 */
+	public int getOnionSkinsAfter()
+	{
+		return onionSkinsAfter;
+	}
+	
+	/**
+	 * Sets the amount of next frames shown as onion skins.
+	 * @param count		the amount of frames, clamped between 0 and {@link #maxOnionSkins}
+	 */
+	public void setOnionSkinsAfter(int count)
+	{
+		onionSkinsAfter = MathUtil.clamp(count, 0, maxOnionSkins);
+		requestRedraw();
+	}
+	
+	/**
+	 * @return the amount by which the opacity of an onion skin is multiplied for each frame farther than the nearest
+	 */
+	public double getOnionSkinFalloff()
+	{
+		return onionSkinFalloff;
+	}
+	
+	/**
+	 * Sets how quickly the onion skins fade with their distance from the selected frame.
+	 * @param falloff	the amount by which the opacity of an onion skin is multiplied for each frame farther
+	 * 					than the nearest, clamped between 0 and 1
+	 */
+	public void setOnionSkinFalloff(double falloff)
+	{
+		onionSkinFalloff = MathUtil.clamp(falloff, 0.0, 1.0);
+		requestRedraw();
+	}
+	
+	/**
+	 * @return the tint of the previous frames, where the opacity is the amount of tinting
+	 */
+	public Color getOnionSkinBeforeTint()
+	{
+		return onionSkinBeforeTint;
+	}
+	
+	/**
+	 * Sets the tint of the onion skins of the previous frames.
+	 * @param tint	the tint, where the opacity is the amount of tinting. A transparent tint leaves the frames as they are.
+	 */
+	public void setOnionSkinBeforeTint(Color tint)
+	{
+		onionSkinBeforeTint = tint;
+		requestRedraw();
+	}
+	
+	/**
+	 * @return the tint of the next frames, where the opacity is the amount of tinting
+	 */
+	public Color getOnionSkinAfterTint()
+	{
+		return onionSkinAfterTint;
+	}
+	
+	/**
+	 * Sets the tint of the onion skins of the next frames.
+	 * @param tint	the tint, where the opacity is the amount of tinting. A transparent tint leaves the frames as they are.
+	 */
+	public void setOnionSkinAfterTint(Color tint)
+	{
+		onionSkinAfterTint = tint;
+		requestRedraw();
+	}
 
+	/**
+	 * @return the longest a render may take, in nanoseconds, before the render quality is lowered
+	 */
+	public long getRenderBudget()
+	{
+		return renderBudget;
+	}
+	
+	/**
+	 * Sets the longest a render may take before the onion skins, and then the grid lines, are dropped.
+	 * @param nanoseconds	the budget of a single render, in nanoseconds
+	 */
+	public void setRenderBudget(long nanoseconds)
+	{
+		renderBudget = nanoseconds;
+	}
+	
+	/**
+	 * @return the time the last render took on the JavaFX thread, in nanoseconds
+	 */
+	public long getLastRenderDuration()
+	{
+		return lastRenderDuration;
+	}
+	
+	/**
+	 * @return the time the background thread took to composite the last image shown, in nanoseconds
+	 */
+	public long getLastComposeDuration()
+	{
+		return lastComposeDuration;
+	}
+	
+	/**
+	 * @return the measurements of the rendering, which can be read or exported at any time on the JavaFX thread
+	 */
+	public RenderMetrics getRenderMetrics()
+	{
+		return renderMetrics;
+	}
+	
+	/**
+	 * @return the text showing the measurements of the rendering, to be placed above the canvas
+	 */
+	public Label getMetricsOverlay()
+	{
+		return metricsOverlay;
+	}
+	
+	/**
+	 * Shows or hides the measurements of the rendering above the canvas. Toggled with F3.
+	 * @param visible	true to show the measurements
+	 */
+	public void setMetricsOverlayVisible(boolean visible)
+	{
+		metricsOverlay.setVisible(visible);
+		metricsOverlay.setText(renderMetrics.toString());
+	}
+	
+	/** Starts {@link #renderTimer}, so that the canvas renders on the next pulse */
+	private void scheduleRender()
+	{
+		if(!isRenderScheduled)
+		{
+			isRenderScheduled = true;
+			renderTimer.start();
+		}
+	}
+	
 	/**
 	 * Render the canvas if someone requested a redraw.
-	 * This method is called at a set inteval by {@link #renderTimeline}.
-	 * If no one requested a redraw, nothing will happen.
+	 * This method is called on every pulse by {@link #renderTimer} while it runs.
+	 * The image finished by the compositor since the last pulse is uploaded and drawn, and the changes
+	 * requested since then are submitted to the compositor, unless it is still busy with the previous ones.
+	 * If no one requested a redraw, the timer is stopped, after full quality is restored.
+	 * Each render and composite is measured, and the quality is lowered if either exceeds {@link #renderBudget}.
+	 * @param now	the time of the pulse, in nanoseconds
 	 */
-	private void render()
+	private void render(long now)
 	{
-		// Redraw the canvas only if requested
-		if(hasRequestRedraw)
+		long startTime = System.nanoTime();
+		
+		// Upload the image finished by the compositor
+		Composite composite = compositor.poll();
+		if(composite != null)
+		{
+			uploadComposite(composite);
+			renderMetrics.markPresented(composite.composeDuration, composite.composedCells);
+		}
+		
+		boolean hasFrameChanged = hasRequestRedraw || dirtyCells != null || hasViewChanged;
+		
+		// The grid lines are not drawn at the lowest quality, so they only count once the quality is restored
+		boolean isGridPending = hasGridChanged && renderQuality < qualityNoGridLines;
+		
+		// Nothing to render, restore the full quality once idle for a while, or stop until the next request
+		if(composite == null && !hasFrameChanged && !isGridPending)
 		{
-			redraw(frameDisplay.getSelectedFrame(), isOnionSkinning);
+			// The timer keeps running until the compositor publishes its image
+			if(compositor.isBusy())
+				return;
+			
+			if(renderQuality == qualityFull)
+			{
+				isRenderScheduled = false;
+				renderTimer.stop();
+			}
+			else if(now - lastRenderTime >= restoreQualityDelay)
+			{
+				setRenderQuality(qualityFull);
+			}
+			return;
+		}
+		
+		boolean isRestoring = renderQuality == qualityFull && hasRequestRedraw && now - lastRenderTime >= restoreQualityDelay;
+		
+		// Submit the changes, or keep them for a later pulse while the previous ones are composited
+		if(hasFrameChanged && !compositor.isBusy())
+		{
+			submitComposite(renderQuality < qualityNoOnionSkins && isOnionSkinning, hasRequestRedraw);
+			renderMetrics.markSubmitted();
+			isRestoringComposite = isRestoring;
 			hasRequestRedraw = false;
+			dirtyCells = null;
+			hasViewChanged = false;
+		}
+		
+		// Show the latest image where its cells are now
+		if(composite != null || hasFrameChanged)
+			drawFrameImage();
+		
+		// The grid lines are not drawn at the lowest quality, they are drawn once the quality is restored
+		if(isGridPending)
+		{
+			drawGridLines();
+			hasGridChanged = false;
+		}
+		
+		lastRenderTime = now;
+		lastRenderDuration = System.nanoTime() - startTime;
+		renderMetrics.markRendered(lastRenderDuration);
+		
+		// Refresh the overlay a few times per second, it is only read while visible
+		if(metricsOverlay.isVisible() && now - lastMetricsOverlayTime >= metricsOverlayInterval)
+		{
+			metricsOverlay.setText(renderMetrics.toString());
+			lastMetricsOverlayTime = now;
+		}
+		
+		// Measure the composite, unless it is the one which restored the quality
+		boolean isSlow = lastRenderDuration > renderBudget;
+		if(composite != null)
+		{
+			lastComposeDuration = composite.composeDuration;
+			isSlow |= lastComposeDuration > renderBudget && !isRestoringComposite;
+			isRestoringComposite = false;
 		}
+		
+		// Drop what is the least important if the render was too slow, unless it is the render which restores the quality
+		if(isSlow && renderQuality < qualityNoGridLines && !isRestoring)
+			setRenderQuality(renderQuality + 1);
+	}
+	
+	/**
+	 * Changes the render quality, and requests the redraws needed to show the difference.
+	 * @param quality	the new render quality
+	 */
+	private void setRenderQuality(int quality)
+	{
+		// Onion skins appear or disappear, so the visible cells are composited entirely
+		if((quality < qualityNoOnionSkins) != (renderQuality < qualityNoOnionSkins) && isOnionSkinning)
+			requestRedraw();
+		
+		renderQuality = quality;
+		gridLinesCanvas.setVisible(displayGridLines && quality < qualityNoGridLines);
+		hasGridChanged = true;
+		scheduleRender();
 	}
 	
 	/** Sets the frame display */
@@ -245,7 +650,7 @@ public class PixelatedCanvas extends Canvas implements IKeyMapping
 	
 	/**
 	 * This method will zoom in or zoom out, depending on the mouse wheel input.
-	 * It will handle all the zooming and scaling math required.
+	 * The point of the frame under the mouse stays under the mouse.
 	 * Called whenever the user scrolls his mouse wheel.
 	 */
 	private void onMouseScroll(ScrollEvent e)
@@ -254,32 +659,20 @@ public class PixelatedCanvas extends Canvas implements IKeyMapping
 		if(e.isControlDown())
 			return;
 		
+		// The canvas coordinates under the mouse before zooming
+		double canvasX = convertViewXToCanvasX(e.getX());
+		double canvasY = convertViewYToCanvasY(e.getY());
+		
 		// Calculates the new zooming scale by adding the amount we scrolled
 		// (if deltaY is negative from mouse wheel down, we zoom out)
-		double newScale = getZoomScale() + zoomingSpeed * (e.getDeltaY() / getHeight());
 		double oldScale = getZoomScale();
-		setZoomScale(newScale);
+		setZoomScale(oldScale + zoomingSpeed * (e.getDeltaY() / getHeight()));
 		
 		// Only pan if we changed our zoom scale
 		if(getZoomScale() != oldScale)
 		{
-			// Calculates the half width and height of the canvas which is used to normalize the mouse coordinates
-			double halfWidth = getWidth() / 2;
-			double halfHeight = getHeight() / 2;
-			
-			// Normalizes the mouse position to [-1,-1] to [1,1], with [0,0] being center of canvas
-			double zoomX = (e.getX()  - halfWidth) / halfWidth;
-			double zoomY = (e.getY() - halfHeight) / halfHeight;
-			
-			// Calculates the position we shall pan to, which is our position - the amount we want to pan
-			// The negative sign is there because we want to invert the panning, pan to left moves us to the right, etc
-			// The signum() is there so that zooming in moves towards the position and zooming out moves away from the position
-			double newX = getTranslateX() - zoomingPanSpeed * zoomX * Math.signum(e.getDeltaY());
-			double newY = getTranslateY() - zoomingPanSpeed * zoomY * Math.signum(e.getDeltaY());
-			
-			// Pans to the calculated position
-			setTranslateX(newX);
-			setTranslateY(newY);
+			// Move the camera so that the same canvas coordinates are under the mouse
+			setCamera(canvasX - e.getX() / getZoomScale(), canvasY - e.getY() / getZoomScale());
 		}
 	}
 	
@@ -292,13 +685,75 @@ public class PixelatedCanvas extends Canvas implements IKeyMapping
 	}
 
 	/**
-	 * Sets the zooming scale of the contents of the canvas.
-	 * @param newScale	the scale of the canvas. Note it will be clamped between {@link #minZoomScale} and {@link #maxZoomScale}
+	 * Sets the zooming scale of the contents of the canvas. The camera keeps its top left corner.
+	 * @param newScale	the scale of the canvas. Note it will be clamped between the scale where a cell
+	 * 					spans {@link #minCellViewSize} pixels, and {@link #maxZoomScale}
 	 */
 	public void setZoomScale(double newScale)
 	{
+		double minZoomScale = minCellViewSize / Math.min(xScale, yScale);
 		newScale = MathUtil.clamp(newScale, minZoomScale, maxZoomScale);
-		zoomScale.set(newScale);
+		if(newScale != zoomScale.get())
+		{
+			zoomScale.set(newScale);
+			onViewChanged();
+		}
+	}
+	
+	/**
+	 * Moves the camera of the canvas.
+	 * @param canvasX	the canvas x-coordinate to show at the left edge of the viewport
+	 * @param canvasY	the canvas y-coordinate to show at the top edge of the viewport
+	 */
+	public void setCamera(double canvasX, double canvasY)
+	{
+		if(canvasX != cameraX || canvasY != cameraY)
+		{
+			cameraX = canvasX;
+			cameraY = canvasY;
+			onViewChanged();
+		}
+	}
+	
+	/**
+	 * Called whenever the camera, the zoom, the viewport or the frame size changes.
+	 * The next render draws the newly visible cells and grid lines.
+	 * The temporary drawings are cleared, as they are no longer where they were drawn.
+	 */
+	private void onViewChanged()
+	{
+		hasViewChanged = true;
+		hasGridChanged = true;
+		renderMetrics.markRedrawRequested();
+		
+		// To prevent errors during construction
+		if(gridLinesCanvas == null || tempCanvasGraphics == null)
+			return;
+		
+		clearTemporaryCanvas();
+		scheduleRender();
+	}
+	
+	/**
+	 * @return the cells of the frame inside the viewport, null if none are
+	 */
+	private PixelBounds getVisibleCells()
+	{
+		// The canvas coordinates at the edges of the viewport
+		double left = convertViewXToCanvasX(0);
+		double top = convertViewYToCanvasY(0);
+		double right = convertViewXToCanvasX(getWidth());
+		double bottom = convertViewYToCanvasY(getHeight());
+		
+		// Bound the cells by the frame
+		int minX = Math.max((int) Math.floor(left / xScale), 0);
+		int minY = Math.max((int) Math.floor(top / yScale), 0);
+		int maxX = Math.min((int) Math.ceil(right / xScale) - 1, Frame.getFrameWidth() - 1);
+		int maxY = Math.min((int) Math.ceil(bottom / yScale) - 1, Frame.getFrameHeight() - 1);
+		if(maxX < minX || maxY < minY)
+			return null;
+		
+		return new PixelBounds(minX, minY, maxX, maxY);
 	}
 	
 	/**
@@ -309,10 +764,48 @@ public class PixelatedCanvas extends Canvas implements IKeyMapping
 		return zoomScale.get();
 	}
 	
-	/** Requests that the canvas redraws its contents in the next tick */
+	/** Requests that the canvas redraws its contents entirely on the next pulse */
 	public void requestRedraw()
 	{
 		hasRequestRedraw = true;
+		renderMetrics.markRedrawRequested();
+		scheduleRender();
+	}
+	
+	/**
+	 * Requests that the canvas repaints the specified cells on the next pulse.
+	 * Requests made before the next pulse are merged together.
+	 * @param cells		the cells of the frame to repaint
+	 */
+	public void requestRedraw(PixelBounds cells)
+	{
+		dirtyCells = cells.union(dirtyCells);
+		renderMetrics.markRedrawRequested();
+		scheduleRender();
+	}
+	
+	/**
+	 * Called once per operation, or batch of operations, that changed the pixels of a frame.
+	 * A redraw of the changed cells is only requested if the frame is displayed, either as
+	 * the selected frame or as one of its onion skins, whose cached cells are invalidated.
+	 * @param change	the aggregated record of the changes
+	 */
+	public void onFrameChanged(FrameChange change)
+	{
+		// To prevent errors
+		if(frameDisplay == null)
+			return;
+		
+		// The changes of the onion skins are passed along with the next request to the compositor
+		boolean isOnionSkin = onionSkinFrames.contains(change.getFrame());
+		if(isOnionSkin)
+			onionSkinChanges.merge(change.getFrame(), change.getDirtyBounds(), PixelBounds::union);
+		
+		if(change.getFrame() == frameDisplay.getSelectedFrame())
+			renderMetrics.markFrameChanged();
+		
+		if(change.getFrame() == frameDisplay.getSelectedFrame() || isOnionSkin)
+			requestRedraw(change.getDirtyBounds());
 	}
 	
 	/**
@@ -330,13 +823,8 @@ public class PixelatedCanvas extends Canvas implements IKeyMapping
 			double deltaX = e.getX() - mousePrevX;
 			double deltaY = e.getY() - mousePrevY;
 			
-			// Make it so that our pan speed scales up with our scale
-			deltaX *= 0.5 * getScaleX(); 
-			deltaY *= 0.5 * getScaleY();
-			
-			// Move to new position
-			setTranslateX(getTranslateX() + deltaX);
-			setTranslateY(getTranslateY() + deltaY);
+			// Move the camera against the mouse, so the frame follows the mouse
+			setCamera(cameraX - deltaX / getZoomScale(), cameraY - deltaY / getZoomScale());
 		}
 		
 		// Store our current position as the next frame's previous position
@@ -373,18 +861,14 @@ public class PixelatedCanvas extends Canvas implements IKeyMapping
 		if(!frameDisplay.getSelectedFrame().getVisibility())
 			return null;
 		
-		// Attempt to find a pixel on the same layer at our mouse coordinates
-		Pixel pixel = frameDisplay.getSelectedFrame().findPixel(p ->
-			p.getX() == frameX && p.getY() == frameY && p.getLayer() == palette.getSelectedLayer());
+		// Look up the pixel on the same layer at our mouse coordinates
+		Pixel pixel = frameDisplay.getSelectedFrame().getPixelAt(frameX, frameY, palette.getSelectedLayer());
 		
 		// If there was a pixel under our mouse, remove it 
 		if(pixel != null)
 		{
-			// Remove pixel at frameX, frameY
+			// Remove pixel at frameX, frameY, the frame notifies the canvas of the change
 			frameDisplay.getSelectedFrame().removePixel(pixel);
-			
-			// Redraw canvas because the pixel was erased
-			requestRedraw();
 		}
 		
 		return pixel;
@@ -409,11 +893,8 @@ public class PixelatedCanvas extends Canvas implements IKeyMapping
 			!frameDisplay.getSelectedFrame().getVisibility())
 			return null;
 		
-		// Attempt to find a pixel on the same layer at our mouse coordinates
-		Pixel pixel = frameDisplay.getSelectedFrame().findPixel(p ->
-			(p.getX() == frameX) && 
-			(p.getY() == frameY) && 
-			(p.getLayer() == palette.getSelectedLayer()));
+		// Look up the pixel on the same layer at our mouse coordinates
+		Pixel pixel = frameDisplay.getSelectedFrame().getPixelAt(frameX, frameY, palette.getSelectedLayer());
 		
 		// If there isn't a pixel there before, create one
 		if(pixel == null)
@@ -431,154 +912,183 @@ public class PixelatedCanvas extends Canvas implements IKeyMapping
 			pixel.setBrightnessFactor(colorSelector.getLuminosityFactor() / 100);
 		}
 		
-		// Redraw the canvas because a pixel was drawn
-		requestRedraw();
+		// The frame notifies the canvas of the change, see onFrameChanged()
 		return pixel;
 	}
 	
-	/** Clears the entire canvas display to {@link #canvasClearColor}.*/
-	private void clearCanvas()
-	{
-		// Clears the entire canvas with white
-		graphics.setFill(canvasClearColor);
-		graphics.fillRect(0, 0, getWidth(), getHeight());
-	}
-	
 	/** Clears the temporary canvas which is used for effects and temporary drawings */
 	public void clearTemporaryCanvas()
 	{
-		// Clears the entire canvas with white
+		// Clears the entire viewport
 		tempCanvasGraphics.clearRect(0, 0, getWidth(), getHeight());
+		temporaryCanvasVersion++;
+	}
+	
+	/**
+	 * @return a number which changes whenever the temporary canvas is cleared
+	 */
+	public int getTemporaryCanvasVersion()
+	{
+		return temporaryCanvasVersion;
 	}
 	
 	/**
 	 * Draws the specified rectangle on the temporary canvas using the selected color in the palette.
-	 * @param canvasX	the left coordinate of the rectangle
-	 * @param canvasY	the top coordinate of the rectangle
-	 * @param width		the width of the rectangle
-	 * @param height	the height of the rectangle
+	 * The rectangle is mapped onto the viewport by the camera.
+	 * @param canvasX	the left coordinate of the rectangle in canvas coordinates
+	 * @param canvasY	the top coordinate of the rectangle in canvas coordinates
+	 * @param width		the width of the rectangle in canvas coordinates
+	 * @param height	the height of the rectangle in canvas coordinates
 	 */
 	public void drawOnTemporaryCanvas(double canvasX, double canvasY, double width, double height)
 	{
 		tempCanvasGraphics.setFill(colorSelector.getColorWithFactor());
-		tempCanvasGraphics.fillRect(canvasX, canvasY, width, height);
+		tempCanvasGraphics.fillRect(convertCanvasXToViewX(canvasX), convertCanvasYToViewY(canvasY),
+				width * getZoomScale(), height * getZoomScale());
 	}
 		
 	/**
 	 * Erases the specified rectangle from the temporary canvas.
-	 * @param canvasX	the left coordinate of the rectangle
-	 * @param canvasY	the top coordinate of the rectangle
-	 * @param width		the width of the rectangle
-	 * @param height	the height of the rectangle
+	 * The rectangle is mapped onto the viewport by the camera.
+	 * @param canvasX	the left coordinate of the rectangle in canvas coordinates
+	 * @param canvasY	the top coordinate of the rectangle in canvas coordinates
+	 * @param width		the width of the rectangle in canvas coordinates
+	 * @param height	the height of the rectangle in canvas coordinates
 	 */
 	public void eraseOnTemporaryCanvas(double canvasX, double canvasY, double width, double height)
 	{
-		tempCanvasGraphics.clearRect(canvasX, canvasY, width, height);
+		tempCanvasGraphics.clearRect(convertCanvasXToViewX(canvasX), convertCanvasYToViewY(canvasY),
+				width * getZoomScale(), height * getZoomScale());
 	}
 	
 	/** 
-	 * Redraws the frame entirely in this order:
+	 * Submits the visible cells of the selected frame to the compositor, which composites them in this order:
 	 * <ol>
-	 * <li>Clear the canvas to the selected background color</li>
-	 * <li>Render the contents of the selected frame onto the canvas</li>
-	 * <li>Render the grid lines, if toggled on</li>
+	 * <li>Update the cached onion skins of the neighbouring frames</li>
+	 * <li>Move its bitmap over the visible cells, and composite the cells that scrolled into view</li>
+	 * <li>Composite the changed cells of the selected frame, on top of the onion skins, into the bitmap</li>
+	 * <li>Publish a copy of the bitmap, which is uploaded and drawn on a later pulse</li>
 	 * </ol> 
+	 * The frames are snapshotted here, so the compositor never reads them while they change.
+	 * @param onionSkinning		whether the onion skins are shown
+	 * @param composeAll		whether the visible cells must be composited entirely, rather than the dirty cells
 	 */
-	private void redraw(Frame frame, boolean onionSkinning)
+	private void submitComposite(boolean onionSkinning, boolean composeAll)
 	{
-		// To prevent errors
-		if(frameDisplay == null || frame == null)
-			return;
-		
-		// Clear the canvas before anything
-		clearCanvas();
-		
-		// Draw the previous frame for onion skinning
-		if(onionSkinning)
+		Frame frame = (frameDisplay == null) ? null : frameDisplay.getSelectedFrame();
+		PixelBounds visibleCells = getVisibleCells();
+		if(frame == null || visibleCells == null)
 		{
-			Frame previousFrame = frameDisplay.getPreviousFrameOf(frame);
-			if(previousFrame != null)
-			{
-				// Draw the frame pixels only if it is visible
-				if(previousFrame.getVisibility())
-				{
-					// Retrieve the pixels in the frame
-					Pixel[] pixels = previousFrame.getPixels().toArray(new Pixel[0]);
-					
-					// Create a list from the array pixels
-					List<Pixel> pixelsList = Arrays.asList(pixels);
-					
-					// Sort the list in respect to the layer's depth
-					// Rendering background first, and then the layers in the foreground ontop
-					pixelsList.sort(new Comparator<Pixel>()
-					{
-						@Override
-						public int compare(Pixel a, Pixel b)
-						{
-							return Integer.compare(a.getLayer().getDepth(), b.getLayer().getDepth());
-						}
-					});
-					
-					// Draw each pixel correctly with respect to scaling and zooming
-					for(Pixel pixel : pixelsList)
-					{
-						// Draw the pixel only if its layer is visible
-						if(pixel.getLayer().getVisibility())
-						{
-							// Draw at half the opacity.
-							Color actualPixelColor = pixel.getColor();
-							Color modifiedPixelColor = Color.rgb(
-									(int)(actualPixelColor.getRed()*255),
-									(int)(actualPixelColor.getGreen()*255),
-									(int)(actualPixelColor.getBlue()*255),
-									actualPixelColor.getOpacity() * onionSkinningFactor);
-							graphics.setFill(modifiedPixelColor);
-							graphics.fillRect(
-									convertFrameXToCanvas(pixel.getX()),
-									convertFrameYToCanvas(pixel.getY()),
-									xScale,
-									yScale);
-						}
-					}
-				}
-			}
+			frameImageArea = null;
+			return;
 		}
 		
-		// Draw the frame pixels only if it is visible
-		if(frame.getVisibility())
+		List<OnionSkinRequest> skins = new ArrayList<OnionSkinRequest>();
+		List<Frame> frames = new ArrayList<Frame>();
+		if(onionSkinning)
 		{
-			// Retrieve the pixels in the frame
-			Pixel[] pixels = frame.getPixels().toArray(new Pixel[0]);
+			int beforeTint = ArgbUtil.toArgb(onionSkinBeforeTint, 1.0);
+			int afterTint = ArgbUtil.toArgb(onionSkinAfterTint, 1.0);
 			
-			// Create a list from the array pixels
-			List<Pixel> pixelsList = Arrays.asList(pixels);
-			
-			// Sort the list in respect to the layer's depth
-			// Rendering background first, and then the layers in the foreground ontop
-			pixelsList.sort(new Comparator<Pixel>()
+			// The farthest frames are blended first, so that the nearest ones are drawn on top
+			for(int distance = Math.max(onionSkinsBefore, onionSkinsAfter); distance >= 1; distance--)
 			{
-				@Override
-				public int compare(Pixel a, Pixel b)
-				{
-					return Integer.compare(a.getLayer().getDepth(), b.getLayer().getDepth());
-				}
-			});
-			
-			// Draw each pixel correctly with respect to scaling and zooming
-			for(Pixel pixel : pixelsList)
-			{
-				// Draw the pixel only if its layer is visible
-				if(pixel.getLayer().getVisibility())
-				{
-					graphics.setFill(pixel.getColor());
-					graphics.fillRect(
-							convertFrameXToCanvas(pixel.getX()),
-							convertFrameYToCanvas(pixel.getY()),
-							xScale,
-							yScale);
-				}
+				double opacityFactor = onionSkinningFactor * Math.pow(onionSkinFalloff, distance - 1);
+				
+				if(distance <= onionSkinsBefore)
+					addOnionSkin(skins, frames, frameDisplay.getFrameRelativeToSelected(-distance), beforeTint, opacityFactor);
+				
+				if(distance <= onionSkinsAfter)
+					addOnionSkin(skins, frames, frameDisplay.getFrameRelativeToSelected(distance), afterTint, opacityFactor);
 			}
 		}
+		
+		// The changes of the onion skins are part of the request, so start tracking them anew
+		onionSkinFrames = frames;
+		onionSkinChanges.clear();
+		
+		compositor.submit(new FrameCompositor.Request(frame.snapshot(), skins, ArgbUtil.toArgb(canvasClearColor, 1.0),
+				visibleCells, dirtyCells, composeAll));
+	}
+	
+	/**
+	 * Adds a snapshot of the frame, along with its changes since the last request, as an onion skin.
+	 */
+	private void addOnionSkin(List<OnionSkinRequest> skins, List<Frame> frames, Frame frame, int tint, double opacityFactor)
+	{
+		if(frame == null)
+			return;
+		
+		skins.add(new OnionSkinRequest(frame, frame.snapshot(), onionSkinChanges.get(frame), tint, opacityFactor));
+		frames.add(frame);
+	}
+	
+	/**
+	 * Uploads the pixels of the composite into {@link #frameImage} in a single call,
+	 * and returns them to the compositor.
+	 */
+	private void uploadComposite(Composite composite)
+	{
+		int width = composite.area.getWidth();
+		int height = composite.area.getHeight();
+		if(frameImage == null || (int) frameImage.getWidth() != width || (int) frameImage.getHeight() != height)
+			frameImage = new WritableImage(width, height);
+		
+		frameImage.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), composite.pixels, 0, width);
+		frameImageArea = composite.area;
+		compositor.recycle(composite.pixels);
+	}
+	
+	/** Draws {@link #frameImage} through the camera onto the canvas, with a single nearest-neighbour draw call */
+	private void drawFrameImage()
+	{
+		// The area outside of the frame shows the background of the viewport
+		graphics.clearRect(0, 0, getWidth(), getHeight());
+		if(frameImageArea == null)
+			return;
+		
+		graphics.setImageSmoothing(false);
+		graphics.drawImage(frameImage,
+				convertCanvasXToViewX(frameImageArea.getMinX() * xScale),
+				convertCanvasYToViewY(frameImageArea.getMinY() * yScale),
+				frameImageArea.getWidth() * xScale * getZoomScale(),
+				frameImageArea.getHeight() * yScale * getZoomScale());
+	}
+	
+	/**
+	 * @param viewX		the x position in the viewport, such as the x position of the mouse
+	 * @return	the x position in canvas coordinates
+	 */
+	public double convertViewXToCanvasX(double viewX)
+	{
+		return cameraX + viewX / getZoomScale();
+	}
+	
+	/**
+	 * @param viewY		the y position in the viewport, such as the y position of the mouse
+	 * @return	the y position in canvas coordinates
+	 */
+	public double convertViewYToCanvasY(double viewY)
+	{
+		return cameraY + viewY / getZoomScale();
+	}
+	
+	/**
+	 * @param canvasX	the x position in canvas coordinates
+	 * @return	the x position in the viewport
+	 */
+	public double convertCanvasXToViewX(double canvasX)
+	{
+		return (canvasX - cameraX) * getZoomScale();
+	}
+	
+	/**
+	 * @param canvasY	the y position in canvas coordinates
+	 * @return	the y position in the viewport
+	 */
+	public double convertCanvasYToViewY(double canvasY)
+	{
+		return (canvasY - cameraY) * getZoomScale();
 	}
 	
 	/**
@@ -621,30 +1131,17 @@ public class PixelatedCanvas extends Canvas implements IKeyMapping
 		return frameY * yScale;
 	}
 	
-	/**
-	 * Calculates the x and y scale with respect to the canvas's size and the frame's size.
-	 * For example, a frame size of 64x64 and a canvas size of 640x640 should return 
-	 * an x,y scale of 10,10.
-	 * @see {@link #xScale} and {@link #yScale}
-	 */
-	private void calculateScale()
-	{
-		xScale = (double) getWidth() / Frame.getFrameWidth();
-		yScale = (double) getHeight() / Frame.getFrameHeight();
-	}
-	
-	/** Resets the zooming and panning. Will recalculate the view */
+	/** Resets the zooming and panning, so that the whole frame fits centered in the viewport */
 	public void resetView()
 	{
-		// Reset padding
-		setTranslateX(0.0);
-		setTranslateY(0.0);
+		// Reset zooming, the frame spans most of the viewport
+		double frameWidth = Frame.getFrameWidth() * xScale;
+		double frameHeight = Frame.getFrameHeight() * yScale;
+		setZoomScale(0.9 * Math.min(getWidth() / frameWidth, getHeight() / frameHeight));
 		
-		// Reset zooming
-		setZoomScale((32 * 1.5) / Math.max(Frame.getFrameWidth(), Frame.getFrameHeight()));
-		
-		// Recalculates the canvas:frame scale
-		calculateScale();
+		// Reset panning, the center of the frame is at the center of the viewport
+		setCamera(frameWidth / 2 - getWidth() / 2 / getZoomScale(), frameHeight / 2 - getHeight() / 2 / getZoomScale());
+		requestRedraw();
 	}
 	
 	/**
@@ -657,8 +1154,7 @@ public class PixelatedCanvas extends Canvas implements IKeyMapping
 	
 	/**
 	 * Sets the flag to display or hide the black grid lines.
-	 * If the parameter <code>draw</code> is equal to the internal flag,
-	 * nothing will occur. Otherwise, the grid line canvas will be redrawn immediately.
+	 * The grid line canvas will be redrawn on the next pulse.
 	 * @param draw	true to display, false to hide the grid lines
 	 */
 	public void setDisplayGridLines(boolean draw)
@@ -670,10 +1166,38 @@ public class PixelatedCanvas extends Canvas implements IKeyMapping
 //		{
 			// Request a redraw to update the selection
 			displayGridLines = draw;
-			gridLinesCanvas.setVisible(draw);
+			gridLinesCanvas.setVisible(draw && renderQuality < qualityNoGridLines);
+			redrawGridLines();
 //		}
 	}
 	
+	/**
+	 * @return the amount of cells between two major grid lines, 0 if no major grid lines are drawn
+	 */
+	public int getMajorGridLineSpacing()
+	{
+		return majorGridLineSpacing;
+	}
+	
+	/**
+	 * Sets the amount of cells between two major grid lines, which are drawn thicker
+	 * and stay visible when zoomed too far out for the other grid lines.
+	 * @param spacing	the amount of cells between two major grid lines, 0 to draw no major grid lines
+	 */
+	public void setMajorGridLineSpacing(int spacing)
+	{
+		majorGridLineSpacing = Math.max(spacing, 0);
+		redrawGridLines();
+	}
+	
+	/**
+	 * @return the opaque background color of the canvas
+	 */
+	public Color getCanvasClearColor()
+	{
+		return canvasClearColor;
+	}
+	
 	/**
 	 * Sets the background color of the canvas.
 	 * Note that the opacity field of the color is ignored.
@@ -689,43 +1213,82 @@ public class PixelatedCanvas extends Canvas implements IKeyMapping
 		requestRedraw();
 	}
 
-	/** Renders the black grid lines onto the grid lines canvas */
+	/** Requests that the grid lines are drawn again on the next pulse */
 	public void redrawGridLines()
 	{
-		double x = 0;
-		double y = 0;
-		double width = gridLinesCanvas.getWidth();
-		double height = gridLinesCanvas.getHeight();
-		
+		hasGridChanged = true;
+		scheduleRender();
+	}
+	
+	/**
+	 * Renders the black grid lines of the visible cells onto the grid lines canvas.
+	 * Only the lines inside the viewport are drawn, so the cost depends on the zoom rather than the size of the frame.
+	 * The lines between cells are only drawn while the cells are at least {@link #minGridCellViewSize} pixels wide,
+	 * and the major lines only while they are at least as far apart.
+	 */
+	private void drawGridLines()
+	{
 		// Clear previous grid lines content
-		gridGraphics.clearRect(0, 0, width, height);
+		gridGraphics.clearRect(0, 0, gridLinesCanvas.getWidth(), gridLinesCanvas.getHeight());
+		renderMetrics.markGridDrawn(0);
+		
+		// Only display grid lines when the flag is true and any cell is visible
+		PixelBounds visibleCells = getVisibleCells();
+		if(!getDisplayGridLines() || visibleCells == null)
+			return;
 		
-		// Only display grid lines when the flag is true
-		if(getDisplayGridLines())
+		// Every line when the cells are large enough, otherwise only the major lines if they are far enough apart
+		double cellViewSize = xScale * getZoomScale();
+		int spacing = 1;
+		if(cellViewSize < minGridCellViewSize)
 		{
-			gridGraphics.clearRect(0, 0, width, height);
-			gridGraphics.setFill(Color.BLACK);
-			
-			// Display the vertical grid lines, starting from the left, going to the right
-			while(x <= width)
-			{
-				gridGraphics.fillRect(x, 0, 1, height);
-				x += xScale;
-			}
+			if(majorGridLineSpacing == 0 || cellViewSize * majorGridLineSpacing < minGridCellViewSize)
+				return;
 			
-			// Create the horizontal grid lines, starting from the top going downwards
-			while(y <= height)
-			{
-				gridGraphics.fillRect(0, y, width, 1);
-				y += yScale;
-			}
-			
-			// Draw the right most grid line, its not guaranteed to be included in the while loop due to rounding error
-			gridGraphics.fillRect(width - 1, 0, 1, height);
-			
-			// Draw the bottom most grid line, its not guaranteed to be included in the while loop due to rounding error
-			gridGraphics.fillRect(0, height - 1, width, 1);
+			spacing = majorGridLineSpacing;
 		}
+		
+		gridGraphics.setFill(Color.BLACK);
+		
+		// The visible part of the frame in the viewport
+		double top = Math.floor(convertCanvasYToViewY(visibleCells.getMinY() * yScale));
+		double bottom = Math.floor(convertCanvasYToViewY((visibleCells.getMaxY() + 1) * yScale));
+		double left = Math.floor(convertCanvasXToViewX(visibleCells.getMinX() * xScale));
+		double right = Math.floor(convertCanvasXToViewX((visibleCells.getMaxX() + 1) * xScale));
+		
+		// Display the vertical grid lines of the visible columns, starting from the left, going to the right
+		int lines = 0;
+		for(int x = firstGridLine(visibleCells.getMinX(), spacing); x <= visibleCells.getMaxX() + 1; x += spacing, lines++)
+		{
+			double width = getGridLineWidth(x);
+			gridGraphics.fillRect(Math.floor(convertCanvasXToViewX(x * xScale) - (width - 1) / 2), top, width, bottom - top);
+		}
+		
+		// Create the horizontal grid lines of the visible rows, starting from the top going downwards
+		for(int y = firstGridLine(visibleCells.getMinY(), spacing); y <= visibleCells.getMaxY() + 1; y += spacing, lines++)
+		{
+			double width = getGridLineWidth(y);
+			gridGraphics.fillRect(left, Math.floor(convertCanvasYToViewY(y * yScale) - (width - 1) / 2), right - left, width);
+		}
+		
+		renderMetrics.markGridDrawn(lines);
+	}
+	
+	/**
+	 * @return the first grid line at or after the specified cell, where grid lines are every <code>spacing</code> cells
+	 */
+	private static int firstGridLine(int cell, int spacing)
+	{
+		return (cell + spacing - 1) / spacing * spacing;
+	}
+	
+	/**
+	 * @param line	the index of the grid line, which is the index of the cell to its right or below it
+	 * @return	the width of the grid line in pixels of the viewport
+	 */
+	private double getGridLineWidth(int line)
+	{
+		return (majorGridLineSpacing > 0 && line % majorGridLineSpacing == 0) ? majorGridLineWidth : 1.0;
 	}
 
 	@Override
@@ -737,6 +1300,10 @@ public class PixelatedCanvas extends Canvas implements IKeyMapping
 			{
 				resetView();
 			}
+			else if(e.getCode() == KeyCode.F3)
+			{
+				setMetricsOverlayVisible(!metricsOverlay.isVisible());
+			}
 		});
 	}
 
@@ -779,30 +1346,8 @@ public class PixelatedCanvas extends Canvas implements IKeyMapping
 	 */
 	public void shiftFrame(int shiftX, int shiftY)
 	{
-		// Go through the pixels in the selected frame
-		for(Iterator<Pixel> iterator = frameDisplay.getSelectedFrame().getPixels().iterator(); iterator.hasNext();)
-		{
-			Pixel p = iterator.next();
-			
-			// Calculate the position after the shift
-			int newX = p.getX() + shiftX;
-			int newY = p.getY() + shiftY;
-			
-			// Check if it is out of bounds, and if it is, remove it
-			if(newX > Frame.getFrameWidth() || newY > Frame.getFrameHeight() || newX < 0 || newY < 0)
-			{
-				// Out of bounds, remove it
-				iterator.remove();
-			}
-			else
-			{
-				// In bounds , shift the pixel it
-				p.setX(newX);
-				p.setY(newY);
-			}
-		}
-		
-		// Request a canvas redraw after the shifting has occured
-		requestRedraw();
+		// The frame moves its stored pixels and drops any that fall outside of the frame view,
+		// then notifies the canvas of the change
+		frameDisplay.getSelectedFrame().shiftPixels(shiftX, shiftY);
 	}
 }
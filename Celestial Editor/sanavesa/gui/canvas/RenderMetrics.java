@@ -0,0 +1,269 @@
+/***************************************************************************************************************************
+ * Class:		RenderMetrics.java
+ * Author:		Mohammad Alali
+ *
+ * Description: Measures the rendering of the canvas: how long renders and composites take, how many cells are composited
+ * 				and grid lines drawn, how many redraws are requested versus actually rendered, and how long it takes from
+ * 				an input event until the change it made is presented. The measurements can be read as a map of named
+ * 				values, written out as CSV, or shown as text in the overlay of the canvas.
+ * 				It is only used on the JavaFX thread.
+ *
+ * Attributes:
+ * 				Samples renderDurations
+ * 				Samples composeDurations
+ * 				Samples composedCells
+ * 				Samples inputLatencies
+ * 				long redrawRequests
+ * 				long compositesSubmitted
+ * 				long compositesPresented
+ * 				int gridLinesDrawn
+ * 				long inputTime
+ * 				long changedInputTime
+ * 				long submittedInputTime
+ *
+ * Methods:
+ * 				void reset()
+ * 				Map<String, Double> toMap()
+ * 				void writeCsv(Writer)
+ * 				String toString()
+ *
+ ***************************************************************************************************************************/
+
+package sanavesa.gui.canvas;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Measures the rendering of a {@link PixelatedCanvas}, so regressions can be caught on real projects.
+ * <p>
+ * Durations, composited cells and latencies are kept for the most recent {@link #sampleCount} renders,
+ * from which the percentiles are computed. The counters add up from the last {@link #reset()}.
+ * </p>
+ * <p>
+ * The input to present latency starts when the brush tools receive a mouse event, and ends when the
+ * composite which includes the change made by that event is uploaded and drawn. Events which do not
+ * change the selected frame before the next pulse, such as previews, are not measured.
+ * </p>
+ * @author Mohammad Alali
+ */
+public class RenderMetrics
+{
+	/** The amount of most recent samples kept for the percentiles */
+	public static final int sampleCount = 240;
+
+	/** The time each render took on the JavaFX thread, in nanoseconds */
+	private final Samples renderDurations = new Samples();
+
+	/** The time each composite took on the background thread, in nanoseconds */
+	private final Samples composeDurations = new Samples();
+
+	/** The amount of cells composited for each composite, including the onion skins */
+	private final Samples composedCells = new Samples();
+
+	/** The time from each input event until its change was presented, in nanoseconds */
+	private final Samples inputLatencies = new Samples();
+
+	/** The amount of times a redraw, of any kind, was requested */
+	private long redrawRequests = 0;
+
+	/** The amount of composites submitted to the background thread */
+	private long compositesSubmitted = 0;
+
+	/** The amount of composites uploaded and drawn */
+	private long compositesPresented = 0;
+
+	/** The amount of grid lines drawn the last time the grid was drawn */
+	private int gridLinesDrawn = 0;
+
+	/** The time of the earliest input event of the current pulse, 0 if none */
+	private long inputTime = 0;
+
+	/** The time of the earliest input event which changed the selected frame and is not submitted yet, 0 if none */
+	private long changedInputTime = 0;
+
+	/** The time of the earliest input event included in the composite being composited, 0 if none */
+	private long submittedInputTime = 0;
+
+	/** Clears every sample and counter */
+	public void reset()
+	{
+		renderDurations.clear();
+		composeDurations.clear();
+		composedCells.clear();
+		inputLatencies.clear();
+		redrawRequests = 0;
+		compositesSubmitted = 0;
+		compositesPresented = 0;
+		gridLinesDrawn = 0;
+		inputTime = 0;
+		changedInputTime = 0;
+		submittedInputTime = 0;
+	}
+
+	/** Called by the brush tools whenever they receive a mouse event on the canvas */
+	public void markInput()
+	{
+		if(inputTime == 0)
+			inputTime = System.nanoTime();
+	}
+
+	/** Called whenever the selected frame changes, which claims the input events of the current pulse */
+	void markFrameChanged()
+	{
+		if(inputTime != 0 && changedInputTime == 0)
+			changedInputTime = inputTime;
+	}
+
+	/** Called whenever a redraw is requested */
+	void markRedrawRequested()
+	{
+		redrawRequests++;
+	}
+
+	/** Called whenever a composite is submitted to the background thread */
+	void markSubmitted()
+	{
+		compositesSubmitted++;
+		submittedInputTime = changedInputTime;
+		changedInputTime = 0;
+	}
+
+	/**
+	 * Called whenever a composite is uploaded and drawn.
+	 * @param composeDuration	the time the composite took, in nanoseconds
+	 * @param cells				the amount of cells composited
+	 */
+	void markPresented(long composeDuration, int cells)
+	{
+		compositesPresented++;
+		composeDurations.add(composeDuration);
+		composedCells.add(cells);
+
+		if(submittedInputTime != 0)
+		{
+			inputLatencies.add(System.nanoTime() - submittedInputTime);
+			submittedInputTime = 0;
+		}
+	}
+
+	/**
+	 * Called whenever the grid lines are drawn.
+	 * @param lines		the amount of grid lines drawn
+	 */
+	void markGridDrawn(int lines)
+	{
+		gridLinesDrawn = lines;
+	}
+
+	/**
+	 * Called at the end of every render. Input events which did not change the selected frame are no longer tracked.
+	 * @param duration	the time the render took, in nanoseconds
+	 */
+	void markRendered(long duration)
+	{
+		renderDurations.add(duration);
+		inputTime = 0;
+	}
+
+	/**
+	 * @return every measurement by name, in a stable order. Durations are in milliseconds.
+	 */
+	public Map<String, Double> toMap()
+	{
+		Map<String, Double> map = new LinkedHashMap<String, Double>();
+		putPercentiles(map, "renderMs", renderDurations, 1e-6);
+		putPercentiles(map, "composeMs", composeDurations, 1e-6);
+		putPercentiles(map, "composedCells", composedCells, 1.0);
+		putPercentiles(map, "inputLatencyMs", inputLatencies, 1e-6);
+		map.put("redrawRequests", (double) redrawRequests);
+		map.put("compositesSubmitted", (double) compositesSubmitted);
+		map.put("compositesPresented", (double) compositesPresented);
+		map.put("gridLinesDrawn", (double) gridLinesDrawn);
+		return map;
+	}
+
+	/**
+	 * Writes every measurement as a line of CSV, with a header line.
+	 * @param writer	the writer to write to, which is not closed
+	 * @throws IOException	if the writer fails
+	 */
+	public void writeCsv(Writer writer) throws IOException
+	{
+		writer.write("metric,value\n");
+		for(Map.Entry<String, Double> entry : toMap().entrySet())
+		{
+			writer.write(entry.getKey() + "," + entry.getValue() + "\n");
+		}
+	}
+
+	/**
+	 * @return the measurements as a few lines of text, as shown in the overlay
+	 */
+	@Override
+	public String toString()
+	{
+		return String.format("Render    p50 %.2f ms  p95 %.2f ms  p99 %.2f ms%n"
+				+ "Composite p50 %.2f ms  p95 %.2f ms  p99 %.2f ms%n"
+				+ "Cells     p50 %d  p95 %d  max %d%n"
+				+ "Latency   p50 %.1f ms  p95 %.1f ms%n"
+				+ "Redraws   %d requested  %d composited  %d presented%n"
+				+ "Grid      %d lines",
+				renderDurations.percentile(50) * 1e-6, renderDurations.percentile(95) * 1e-6, renderDurations.percentile(99) * 1e-6,
+				composeDurations.percentile(50) * 1e-6, composeDurations.percentile(95) * 1e-6, composeDurations.percentile(99) * 1e-6,
+				composedCells.percentile(50), composedCells.percentile(95), composedCells.percentile(100),
+				inputLatencies.percentile(50) * 1e-6, inputLatencies.percentile(95) * 1e-6,
+				redrawRequests, compositesSubmitted, compositesPresented, gridLinesDrawn);
+	}
+
+	/** Adds the 50th, 95th and 99th percentiles, and the maximum, of the samples to the map */
+	private static void putPercentiles(Map<String, Double> map, String name, Samples samples, double scale)
+	{
+		map.put(name + ".p50", samples.percentile(50) * scale);
+		map.put(name + ".p95", samples.percentile(95) * scale);
+		map.put(name + ".p99", samples.percentile(99) * scale);
+		map.put(name + ".max", samples.percentile(100) * scale);
+	}
+
+	/** The most recent {@link RenderMetrics#sampleCount} values of a measurement, in a ring */
+	private static class Samples
+	{
+		/** The values, oldest overwritten first */
+		private final long[] values = new long[sampleCount];
+
+		/** The amount of values added, of which the last {@link RenderMetrics#sampleCount} are kept */
+		private long count = 0;
+
+		/** Adds a value, replacing the oldest one once full */
+		void add(long value)
+		{
+			values[(int) (count % sampleCount)] = value;
+			count++;
+		}
+
+		/** Removes every value */
+		void clear()
+		{
+			count = 0;
+		}
+
+		/**
+		 * @param percent	the percentile, between 0 and 100
+		 * @return the nearest-rank percentile of the kept values, 0 if there are none
+		 */
+		long percentile(int percent)
+		{
+			int size = (int) Math.min(count, sampleCount);
+			if(size == 0)
+				return 0;
+
+			long[] sorted = Arrays.copyOf(values, size);
+			Arrays.sort(sorted);
+			int rank = (int) Math.ceil(percent / 100.0 * size);
+			return sorted[Math.max(rank, 1) - 1];
+		}
+	}
+}
@@ -10,6 +10,7 @@
  * Methods:		
  * 				Frame getSelectedFrame()
  * 				List<Frame> getFrames()
+ * 				void refreshThumbnails()
  * 				void save(ObjectOutputStream)
  * 				void reset()
  * 				void load(ObjectInputStream)
@@ -21,12 +22,14 @@ package sanavesa.gui.frameDisplay;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
-import javafx.collections.ObservableSet;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
@@ -38,14 +41,18 @@ import javafx.scene.input.ScrollEvent;
 import javafx.scene.layout.Pane;
 import javafx.scene.text.Font;
 import javafx.util.Callback;
+import sanavesa.command.Commands;
+import sanavesa.command.ResizeCommand;
 import sanavesa.gui.IGraphicalInterface;
 import sanavesa.gui.IKeyMapping;
 import sanavesa.gui.canvas.PixelatedCanvas;
+import sanavesa.gui.popup.MessagePopup;
 import sanavesa.gui.popup.PermissionPopup;
 import sanavesa.gui.popup.TextInputPopup;
 import sanavesa.source.Frame;
+import sanavesa.source.FrameChangeListener;
 import sanavesa.source.ISerializable;
-import sanavesa.source.Pixel;
+import sanavesa.source.Layer;
 
 /**
  * The FrameDisplay class represents a glorified ListView that displays all
@@ -98,10 +105,27 @@ public class FrameDisplay implements IGraphicalInterface, IKeyMapping, ISerializ
     /** The main canvas used in the program */
     private PixelatedCanvas canvas = null;
     
+    /** Notifies the canvas and the thumbnails whenever the pixels of a frame in the list change */
+    private FrameChangeListener canvasListener = null;
+    
+    /** The thumbnails of the frames, rendered in the background */
+    private FrameThumbnailCache thumbnails = new FrameThumbnailCache(512);
+    
+    /** The cells created by the list view, held weakly so the cells it discards are not kept alive */
+    private Set<FrameListViewCell> cells = Collections.newSetFromMap(new WeakHashMap<FrameListViewCell, Boolean>());
+    
+    /** The {@link Layer#getAppearanceVersion()} the thumbnails were last refreshed with */
+    private int thumbnailAppearanceVersion = Layer.getAppearanceVersion();
+    
     /** Create a frame display with the specified reference parameter. */
     public FrameDisplay(PixelatedCanvas canvas)
 	{
     	this.canvas = canvas;
+    	canvasListener = change ->
+    	{
+    		canvas.onFrameChanged(change);
+    		refreshThumbnail(change.getFrame());
+    	};
 	}
     
     /** Initialize the Frame Display's GUI Layout. */
@@ -132,7 +156,9 @@ public class FrameDisplay implements IGraphicalInterface, IKeyMapping, ISerializ
 			@Override
 			public ListCell<Frame> call(ListView<Frame> param)
 			{
-				return new FrameListViewCell(canvas);
+				FrameListViewCell cell = new FrameListViewCell(canvas, thumbnails);
+				cells.add(cell);
+				return cell;
 			}
 		});
     	
@@ -174,6 +200,9 @@ public class FrameDisplay implements IGraphicalInterface, IKeyMapping, ISerializ
     	moveDownButton.setOnAction(e -> onMoveDownButtonClicked());
     	moveDownButton.setTooltip(new Tooltip("[CTRL + 1, Right Arrow]: Moves the selected frame down"));
     	
+    	// Called when frames are added or removed, the canvas only listens to the frames in the list
+    	listView.getItems().addListener((ListChangeListener<Frame>) change -> onFramesChanged(change));
+    	
     	// Add the default frame
     	listView.getItems().add(new Frame("Default Frame"));
     	
@@ -244,10 +273,9 @@ public class FrameDisplay implements IGraphicalInterface, IKeyMapping, ISerializ
     	// User pressed ok
     	if(response)
     	{
-    		// Clear the selected frame
+    		// Clear the selected frame, the frame notifies the canvas of the change
     		Frame selectedFrame = listView.getSelectionModel().getSelectedItem();
     		selectedFrame.clearPixels();
-    		canvas.requestRedraw();
     	}	
 	}
 
@@ -274,14 +302,8 @@ public class FrameDisplay implements IGraphicalInterface, IKeyMapping, ISerializ
     	String response = popup.getResponse().trim(); 
     	if(response.length() > 0)
     	{
-    		// Add the frame
-    		ObservableSet<Pixel> pixels = FXCollections.observableSet(new HashSet<Pixel>());
-    		for(Pixel p : listView.getSelectionModel().getSelectedItem().getPixels())
-    		{
-    			pixels.add(new Pixel(p));
-    		}
-    		
-    		Frame duplicateFrame = new Frame(response, pixels, listView.getSelectionModel().getSelectedItem().getVisibility());
+    		// Add the frame, which shares the pixels of the selected frame until either is changed
+    		Frame duplicateFrame = new Frame(response, listView.getSelectionModel().getSelectedItem());
     		frames.add(duplicateFrame);
     		listView.getSelectionModel().select(duplicateFrame);
     	}
@@ -458,15 +480,21 @@ public class FrameDisplay implements IGraphicalInterface, IKeyMapping, ISerializ
 	}
 	
 	/**
-	 * @return the previous frame in the GUI, null if there is no previous
+	 * Looks up a frame by its distance from the selected frame, without searching the list.
+	 * @param offset	the distance from the selected frame, negative for the previous frames and positive for the next frames
+	 * @return the frame at the distance from the selected frame in the GUI, null if there is none
 	 */
-	public Frame getPreviousFrameOf(Frame frame)
+	public Frame getFrameRelativeToSelected(int offset)
 	{
-		int selectedIndex = listView.getItems().indexOf(frame);
-		if(selectedIndex <= 0) // 0 = first, -1 = not found, both dont have previous
+		int selectedIndex = listView.getSelectionModel().getSelectedIndex();
+		if(selectedIndex < 0) // -1 = no selection
+			return null;
+		
+		int index = selectedIndex + offset;
+		if(index < 0 || index >= listView.getItems().size())
 			return null;
 		
-		return listView.getItems().get(selectedIndex - 1);
+		return listView.getItems().get(index);
 	}
 
 	/**
@@ -571,7 +599,9 @@ public class FrameDisplay implements IGraphicalInterface, IKeyMapping, ISerializ
 			case Z:
 				if(event.isControlDown())
 				{
-					getSelectedFrame().undo();
+					Frame selectedFrame = getSelectedFrame();
+					if(!selectedFrame.undo() && !selectedFrame.getCommands().isEmpty())
+						onUndoRefused(selectedFrame.getCommands().peek());
 					requestCanvasRedraw();
 				}
 				break;
@@ -582,10 +612,78 @@ public class FrameDisplay implements IGraphicalInterface, IKeyMapping, ISerializ
 		});
 	}
 	
-	/** Request to redraw the selected frame */
+	/**
+	 * Called when frames are added or removed from the list. The canvas listens to the
+	 * changes of the frames in the list only, so removed frames are no longer referenced by it.
+	 */
+	private void onFramesChanged(ListChangeListener.Change<? extends Frame> change)
+	{
+		while(change.next())
+		{
+			for(Frame frame : change.getRemoved())
+			{
+				frame.removeFrameChangeListener(canvasListener);
+				thumbnails.remove(frame);
+			}
+			
+			for(Frame frame : change.getAddedSubList())
+			{
+				frame.addFrameChangeListener(canvasListener);
+			}
+		}
+	}
+	
+	/** Tells the user why the last action of the selected frame cannot be undone yet */
+	private void onUndoRefused(Commands command)
+	{
+		MessagePopup message = new MessagePopup("Cannot Undo!");
+		message.setupOkButton("Ok");
+		if(command instanceof ResizeCommand)
+		{
+			// The later resize is on the stack of the frame which was selected when it was made
+			ResizeCommand resize = (ResizeCommand) command;
+			ResizeCommand latest = ResizeCommand.getLatest();
+			String hint = (latest != null) ? "\nUndo the resize to " + latest.getNewWidth() + "x" + latest.getNewHeight()
+					+ " on frame \"" + latest.getAffectedFrame().getName() + "\" first." : "";
+			message.setupDisplayLabel("Cannot undo the resize to " + resize.getNewWidth() + "x" + resize.getNewHeight()
+					+ ", the frames were resized again since." + hint);
+		}
+		else
+		{
+			message.setupDisplayLabel("Cannot undo the last action yet.");
+		}
+		message.show();
+	}
+	
+	/** Request to redraw the selected frame, and the thumbnails if the colors of the layers changed */
 	public void requestCanvasRedraw()
 	{
 		canvas.requestRedraw();
+		
+		if(thumbnailAppearanceVersion != Layer.getAppearanceVersion())
+		{
+			thumbnailAppearanceVersion = Layer.getAppearanceVersion();
+			refreshThumbnails();
+		}
+	}
+	
+	/** Refreshes the thumbnails of the frames shown, such as after the background color of the canvas changed */
+	public void refreshThumbnails()
+	{
+		for(FrameListViewCell cell : cells)
+		{
+			cell.refreshThumbnail();
+		}
+	}
+	
+	/** Refreshes the thumbnail of the frame, if a shown cell holds it */
+	private void refreshThumbnail(Frame frame)
+	{
+		for(FrameListViewCell cell : cells)
+		{
+			if(cell.getItem() == frame)
+				cell.refreshThumbnail();
+		}
 	}
 	
 	/** Returns the list of frames used in the program */
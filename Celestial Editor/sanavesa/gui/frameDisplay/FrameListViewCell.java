@@ -16,6 +16,7 @@ import javafx.scene.layout.Region;
 import javafx.scene.paint.Color;
 import sanavesa.gui.canvas.PixelatedCanvas;
 import sanavesa.source.Frame;
+import sanavesa.util.ArgbUtil;
 
 /**
  * This class is a representation of a single cell item in the listView
@@ -34,13 +35,34 @@ public class FrameListViewCell extends ListCell<Frame>
 	/** The Canvas used, to redraw the canvas when the visibility is toggled */
 	private PixelatedCanvas canvas = null;
 	
+	/** The cache which renders the thumbnails of the frames */
+	private FrameThumbnailCache thumbnails = null;
+	
+	/** Shows the thumbnail of the frame, kept across the frames shown by this cell */
+	private ImageView thumbnailView = new ImageView();
+	
 	/**
 	 * Creates a new list cell for the frame list view.
-	 * @param canvas	the main canvas used
+	 * @param canvas		the main canvas used
+	 * @param thumbnails	the cache which renders the thumbnails of the frames
 	 */
-	public FrameListViewCell(PixelatedCanvas canvas)
+	FrameListViewCell(PixelatedCanvas canvas, FrameThumbnailCache thumbnails)
 	{
 		this.canvas = canvas;
+		this.thumbnails = thumbnails;
+		
+		// Keep the hard edges of the pixel art
+		thumbnailView.setSmooth(false);
+		thumbnailView.setPreserveRatio(true);
+		thumbnailView.setFitWidth(FrameThumbnailCache.thumbnailSize);
+		thumbnailView.setFitHeight(FrameThumbnailCache.thumbnailSize);
+		
+		// The list view hides the cells it is not using, which catch up once shown again
+		visibleProperty().addListener((args, wasVisible, isVisible) ->
+		{
+			if(isVisible)
+				refreshThumbnail();
+		});
 	}
 	
 	/** Called automatically by JavaFX everytime the cell item needs to be refreshed. */
@@ -52,6 +74,7 @@ public class FrameListViewCell extends ListCell<Frame>
 		{
 			setText(null);
 			setGraphic(null);
+			thumbnailView.setImage(null);
 		}
 		else
 		{
@@ -85,13 +108,36 @@ public class FrameListViewCell extends ListCell<Frame>
 			// Setup Mouse Click
 			imageView.setOnMouseClicked(e -> onMouseClickedImageView(e, imageView, frame));
 			
+			// Show the thumbnail of the frame, only cells which are shown request one
+			refreshThumbnail();
+			
 			// Layout of the item
-			hBox.getChildren().setAll(cellLabel, region, imageView);
+			hBox.getChildren().setAll(thumbnailView, cellLabel, region, imageView);
 			
 			setGraphic(hBox);
 		}
 	}
 	
+	/**
+	 * Shows the thumbnail of the frame of this cell. The thumbnail is only rendered again if the frame or the
+	 * colors of its layers changed, in which case the outdated thumbnail is shown until the new one is ready.
+	 * Hidden cells, which the list view keeps for later use, do not request a thumbnail.
+	 */
+	void refreshThumbnail()
+	{
+		Frame frame = getItem();
+		if(frame == null || isEmpty() || !isVisible())
+			return;
+		
+		int backgroundArgb = ArgbUtil.toArgb(canvas.getCanvasClearColor(), 1.0);
+		thumbnailView.setImage(thumbnails.request(frame, backgroundArgb, image ->
+		{
+			// The cell may show another frame by the time the thumbnail is rendered
+			if(getItem() == frame)
+				thumbnailView.setImage(image);
+		}));
+	}
+	
 	/** Set up the label of the frame cell item to always show the name of the frame */
 	private void setupLabel(Label cellLabel, Frame frame)
 	{
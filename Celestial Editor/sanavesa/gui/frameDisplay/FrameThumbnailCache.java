@@ -0,0 +1,237 @@
+/***************************************************************************************************************************
+ * Class:		FrameThumbnailCache.java
+ * Author:		Mohammad Alali
+ *
+ * Description: A size-bounded cache of the thumbnails shown next to the frames in the FrameDisplay. The thumbnails are
+ * 				rendered from a snapshot of the frame on a background thread, and delivered back on the JavaFX thread.
+ * 				A thumbnail is only rendered again once the pixels of its frame, the colors of the layers or the
+ * 				background color change, and the least recently used thumbnails are dropped once the cache is full.
+ *
+ * Attributes:
+ * 				int capacity
+ * 				Map<Frame, Thumbnail> thumbnails
+ * 				ExecutorService worker
+ *
+ * Methods:
+ * 				Image request(Frame, int, Consumer<Image>)
+ * 				void remove(Frame)
+ *
+ ***************************************************************************************************************************/
+
+package sanavesa.gui.frameDisplay;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import sanavesa.source.Frame;
+import sanavesa.source.FrameSnapshot;
+import sanavesa.source.Layer;
+import sanavesa.source.PixelBounds;
+import sanavesa.util.ArgbUtil;
+
+/**
+ * A size-bounded cache of the thumbnails of the frames, rendered on a background thread.
+ * <p>
+ * Each thumbnail remembers the version of its frame, see {@link Frame#getVersion()}, and the
+ * {@link Layer#getAppearanceVersion()} it was rendered with, so requesting an unchanged thumbnail
+ * costs nothing. While a thumbnail is being rendered, further requests are coalesced into a
+ * single render of the latest state of the frame.
+ * </p>
+ * <p>
+ * The cache is only used on the JavaFX thread, the worker only sees the snapshots of the frames.
+ * </p>
+ * @author Mohammad Alali
+ */
+class FrameThumbnailCache
+{
+	/** The largest width and height of a thumbnail, in pixels */
+	static final int thumbnailSize = 24;
+
+	/** The most thumbnails kept in the cache */
+	private final int capacity;
+
+	/** The thumbnails of the frames, from the least to the most recently used */
+	private final Map<Frame, Thumbnail> thumbnails;
+
+	/** The single thread which renders the thumbnails */
+	private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable ->
+	{
+		Thread thread = new Thread(runnable, "Frame Thumbnails");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Creates an empty cache.
+	 * @param capacity	the most thumbnails to keep, the least recently used are dropped first
+	 */
+	FrameThumbnailCache(int capacity)
+	{
+		this.capacity = capacity;
+		thumbnails = new LinkedHashMap<Frame, Thumbnail>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Frame, Thumbnail> eldest)
+			{
+				return size() > FrameThumbnailCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the thumbnail of the frame. If it does not show the current state of the frame, it is rendered
+	 * on the worker, and handed to the callback on the JavaFX thread once done.
+	 * @param frame				the frame whose thumbnail to return
+	 * @param backgroundArgb	the ARGB color the frame is rendered over
+	 * @param onRendered		called with the new thumbnail once rendered, replacing the callback of earlier requests
+	 * @return the latest thumbnail of the frame, which may be outdated, or null if none was rendered yet
+	 */
+	Image request(Frame frame, int backgroundArgb, Consumer<Image> onRendered)
+	{
+		Thumbnail thumbnail = thumbnails.get(frame);
+		if(thumbnail == null)
+		{
+			thumbnail = new Thumbnail();
+			thumbnails.put(frame, thumbnail);
+		}
+
+		if(thumbnail.isCurrent(frame, backgroundArgb))
+			return thumbnail.image;
+
+		thumbnail.onRendered = onRendered;
+		if(thumbnail.isPending)
+			thumbnail.isRequestedAgain = true;
+		else
+			render(frame, thumbnail, backgroundArgb);
+
+		return thumbnail.image;
+	}
+
+	/**
+	 * Drops the thumbnail of the frame, such as once the frame is deleted.
+	 * @param frame	the frame whose thumbnail to drop
+	 */
+	void remove(Frame frame)
+	{
+		thumbnails.remove(frame);
+	}
+
+	/**
+	 * Snapshots the frame, and renders its thumbnail on the worker.
+	 */
+	private void render(Frame frame, Thumbnail thumbnail, int backgroundArgb)
+	{
+		FrameSnapshot snapshot = frame.snapshot();
+		thumbnail.isPending = true;
+		thumbnail.isRequestedAgain = false;
+
+		worker.execute(() ->
+		{
+			// Fit the frame inside the thumbnail, without ever enlarging it
+			int width = snapshot.getWidth();
+			int height = snapshot.getHeight();
+			double scale = Math.min(1.0, (double) thumbnailSize / Math.max(Math.max(width, height), 1));
+			int thumbnailWidth = Math.max((int) Math.round(width * scale), 1);
+			int thumbnailHeight = Math.max((int) Math.round(height * scale), 1);
+			int[] pixels = downsample(snapshot, thumbnailWidth, thumbnailHeight, backgroundArgb);
+
+			Platform.runLater(() ->
+			{
+				WritableImage image = new WritableImage(thumbnailWidth, thumbnailHeight);
+				image.getPixelWriter().setPixels(0, 0, thumbnailWidth, thumbnailHeight,
+						PixelFormat.getIntArgbInstance(), pixels, 0, thumbnailWidth);
+				thumbnail.image = image;
+				thumbnail.version = snapshot.getVersion();
+				thumbnail.appearanceVersion = snapshot.getAppearanceVersion();
+				thumbnail.backgroundArgb = backgroundArgb;
+				thumbnail.isPending = false;
+				thumbnail.onRendered.accept(image);
+
+				// The frame changed while it was rendered, and it is still shown
+				if(thumbnail.isRequestedAgain && !thumbnail.isCurrent(frame, backgroundArgb) && thumbnails.containsKey(frame))
+					render(frame, thumbnail, backgroundArgb);
+			});
+		});
+	}
+
+	/**
+	 * Renders the snapshot into a smaller image, each pixel of which shows the nearest cell of the frame,
+	 * so the hard edges of the pixel art are kept. Only the rows of the frame which are sampled are visited.
+	 * @return the ARGB values of the thumbnail, row by row
+	 */
+	private static int[] downsample(FrameSnapshot snapshot, int thumbnailWidth, int thumbnailHeight, int backgroundArgb)
+	{
+		int width = snapshot.getWidth();
+		int height = snapshot.getHeight();
+		int[] pixels = new int[thumbnailWidth * thumbnailHeight];
+		Arrays.fill(pixels, backgroundArgb);
+		if(width <= 0 || height <= 0)
+			return pixels;
+
+		// The column of the thumbnail which samples each column of the frame, -1 if none
+		int[] sampledColumns = new int[width];
+		Arrays.fill(sampledColumns, -1);
+		for(int x = 0; x < thumbnailWidth; x++)
+		{
+			sampledColumns[x * width / thumbnailWidth] = x;
+		}
+
+		for(int y = 0; y < thumbnailHeight; y++)
+		{
+			int rowStart = y * thumbnailWidth;
+			int frameY = y * height / thumbnailHeight;
+			snapshot.forEachArgb(new PixelBounds(0, frameY, width - 1, frameY), (cellX, cellY, argb) ->
+			{
+				int column = sampledColumns[cellX];
+				if(column >= 0)
+					pixels[rowStart + column] = ArgbUtil.blend(argb, pixels[rowStart + column]);
+			});
+		}
+
+		return pixels;
+	}
+
+	/** The thumbnail of a single frame */
+	private static class Thumbnail
+	{
+		/** The rendered thumbnail, null until the first render is done */
+		private Image image = null;
+
+		/** The version of the frame the image shows */
+		private int version = -1;
+
+		/** The {@link Layer#getAppearanceVersion()} the image was rendered with */
+		private int appearanceVersion = -1;
+
+		/** The background color the image was rendered over */
+		private int backgroundArgb = 0;
+
+		/** Whether the worker is rendering the thumbnail */
+		private boolean isPending = false;
+
+		/** Whether the thumbnail was requested again while the worker was rendering it */
+		private boolean isRequestedAgain = false;
+
+		/** Called with the image once rendered */
+		private Consumer<Image> onRendered = null;
+
+		/**
+		 * @return true if the image shows the current state of the frame
+		 */
+		boolean isCurrent(Frame frame, int backgroundArgb)
+		{
+			return image != null && version == frame.getVersion()
+					&& appearanceVersion == Layer.getAppearanceVersion() && this.backgroundArgb == backgroundArgb;
+		}
+	}
+}
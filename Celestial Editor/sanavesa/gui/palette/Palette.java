@@ -22,7 +22,6 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 import javafx.application.Platform;
@@ -49,7 +48,6 @@ import sanavesa.gui.popup.TextInputPopup;
 import sanavesa.source.Frame;
 import sanavesa.source.ISerializable;
 import sanavesa.source.Layer;
-import sanavesa.source.Pixel;
 
 /**
  * The Palette class represents a glorified ListView that displays all
@@ -325,15 +323,32 @@ public class Palette implements IGraphicalInterface, IKeyMapping, ISerializable
 		// Swap the depths of the layers
 		firstLayer.setDepth(secondIndex);
 		secondLayer.setDepth(firstIndex);
+		sortFramesByDepth();
 	}
 
+    /**
+     * Each frame keeps a count of the pixels of every layer, so this does not visit any pixels.
+     * @param layer		the layer to count
+     * @return the amount of pixels in all frames using the layer
+     */
+    public int getLayerUsage(Layer layer)
+    {
+    	int usage = 0;
+    	for(Frame frame : frameDisplay.getFrames())
+    	{
+    		usage += frame.getPixelCount(layer);
+    	}
+    	
+    	return usage;
+    }
+    
     /** Clicked when the delete button is clicked */
     private void onDeleteButtonClicked()
     {
     	PermissionPopup popup = new PermissionPopup("Delete Layer");
     	popup.setupCancelButton("Cancel");
     	popup.setupOkButton("Remove");
-    	popup.setupDisplayLabel("Are you sure?");
+    	popup.setupDisplayLabel("Are you sure? " + getLayerUsage(listView.getSelectionModel().getSelectedItem()) + " pixels use this layer.");
     	popup.show();
     	boolean response = popup.getResponse();
     	
@@ -354,7 +369,7 @@ public class Palette implements IGraphicalInterface, IKeyMapping, ISerializable
     	PermissionPopup popup = new PermissionPopup("Clear All Pixels Using Layer");
     	popup.setupCancelButton("Cancel");
     	popup.setupOkButton("Clear");
-    	popup.setupDisplayLabel("Are you sure?");
+    	popup.setupDisplayLabel("Are you sure? " + getLayerUsage(listView.getSelectionModel().getSelectedItem()) + " pixels use this layer.");
     	popup.show();
     	boolean response = popup.getResponse();
     	
@@ -365,15 +380,7 @@ public class Palette implements IGraphicalInterface, IKeyMapping, ISerializable
     		
     		for(Frame frame : frameDisplay.getFrames())
     		{
-    			for(Iterator<Pixel> iterator = frame.getPixels().iterator(); iterator.hasNext();)
-    			{
-    				Pixel p = iterator.next();
-    				if(p.getLayer() == selectedLayer)
-    				{
-    					iterator.remove();
-    					frame.removePixel(p);
-    				}
-    			}
+    			frame.removePixels(selectedLayer);
     		}
     		
     		frameDisplay.requestCanvasRedraw();
@@ -481,17 +488,10 @@ public class Palette implements IGraphicalInterface, IKeyMapping, ISerializable
      */ 
     private void onLayerDeleted(Layer layer)
     {
-    	// Remove all pixels in that used this layer
+    	// Remove all pixels in that used this layer, each frame only visits its tiles containing the layer
 		for(Frame frame : frameDisplay.getFrames())
 		{
-			for(Iterator<Pixel> iterator = frame.getPixels().iterator(); iterator.hasNext();)
-			{
-				Pixel pixel = iterator.next();
-				if(pixel.getLayer() == layer)
-				{
-					iterator.remove();
-				}
-			}
+			frame.removePixels(layer);
 		}
     }
     
@@ -510,6 +510,16 @@ public class Palette implements IGraphicalInterface, IKeyMapping, ISerializable
     	{
     		layers.get(i).setDepth(i);
     	}
+    	sortFramesByDepth();
+    }
+    
+    /** Reorders the pixels of every frame by the new layer depths, so redrawing never has to sort */
+    private void sortFramesByDepth()
+    {
+    	for(Frame frame : frameDisplay.getFrames())
+    	{
+    		frame.sortPixelsByDepth();
+    	}
     }
 
     /** Returns the root pane of the Palette's GUI */
@@ -0,0 +1,180 @@
+/***************************************************************************************************************************
+ * Class:		ProgressPopup.java
+ * Author:		Mohammad Alali
+ *
+ * Description:	A subclass of Popup. This class represents a progress popup of a long operation running in the background,
+ * 				with a [Cancel] button. Unlike the other popups, it is modeless and showing it does not wait for it to be closed.
+ * 				This class implements the IKeyMapping interface, which allows specific keys to be mapped to certain actions.
+ *
+ * Attributes:
+ * 				ProgressBar progressBar
+ * 				Label displayLabel
+ * 				Button cancelButton
+ * 				Runnable onCancel
+ *
+ * Methods:
+ * 				void setupCancelButton(String)
+ * 				void setupDisplayLabel(String)
+ * 				void setProgress(int, int)
+ * 				void setOnCancel(Runnable)
+ * 				void close()
+ *
+ ***************************************************************************************************************************/
+
+package sanavesa.gui.popup;
+
+import javafx.scene.Cursor;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.effect.DropShadow;
+import javafx.scene.input.KeyCode;
+import javafx.scene.paint.Color;
+import javafx.stage.Modality;
+import sanavesa.gui.IKeyMapping;
+
+/**
+ * A subclass of {@link Popup}. This class represents the progress
+ * of a long operation running in the background, which can be cancelled.
+ * The rest of the program can still be used while it is shown.
+ * <p>
+ * This class implements the {@link IKeyMapping} interface, which
+ * allows specific keys to be mapped to certain actions.
+ * </p>
+ * @author Mohammad Alali
+ */
+public class ProgressPopup extends Popup implements IKeyMapping
+{
+	/** The progress bar of the operation */
+	private final ProgressBar progressBar;
+
+	/** The label displaying the progress */
+	private final Label displayLabel;
+
+	/** The button which cancels the operation */
+	private final Button cancelButton;
+
+	/** Called when the [Cancel] button is clicked, or the popup is closed by the user */
+	private Runnable onCancel = null;
+
+	/**
+	 * Creates a new progress popup with the specified parameters.
+	 * @param windowTitle	the popup's window's title
+	 */
+	public ProgressPopup(String windowTitle)
+	{
+		super();
+
+		DropShadow shadow = new DropShadow(5, 3, 3, Color.GRAY);
+
+		// Setup display label
+		displayLabel = new Label();
+		displayLabel.setEffect(shadow);
+		displayLabel.setStyle("-fx-font-size: 16");
+		displayLabel.relocate(25, 15);
+
+		// Setup progress bar
+		progressBar = new ProgressBar(0);
+		progressBar.relocate(25, 50);
+		progressBar.setPrefWidth(250);
+
+		// Setup cancel button
+		cancelButton = new Button();
+		cancelButton.relocate(110, 85);
+		cancelButton.setMinWidth(80);
+		cancelButton.setMinHeight(25);
+		cancelButton.setCursor(Cursor.HAND);
+		cancelButton.setOnAction(e -> onCancelButtonClicked());
+
+		// Closing the window cancels the operation as well
+		stage.setOnCloseRequest(e -> onCancelButtonClicked());
+
+		// Setup keyboard shortcuts
+		initializeKeyMap(scene);
+
+		// Setup stage, which does not block the other windows while the operation runs
+		stage.setTitle(windowTitle);
+		stage.initModality(Modality.NONE);
+
+		// Setup root pane
+		root.setMinWidth(300);
+		root.setMinHeight(130);
+		root.getChildren().addAll(displayLabel, progressBar, cancelButton);
+	}
+
+	/** Displays the popup window, without waiting for it to be closed */
+	@Override
+	public void show()
+	{
+		stage.show();
+	}
+
+	/** Closes the popup window, without cancelling the operation */
+	public void close()
+	{
+		stage.close();
+	}
+
+	/**
+	 * Customizes the [Cancel] Button in the popup.
+	 * @param buttonText	the text to display for the [Cancel] button.
+	 */
+	public void setupCancelButton(String buttonText)
+	{
+		cancelButton.setText(buttonText);
+	}
+
+	/**
+	 * Customizes the display label in the popup.
+	 * @param labelText		the text to display for the progress
+	 */
+	public void setupDisplayLabel(String labelText)
+	{
+		displayLabel.setText(labelText);
+	}
+
+	/**
+	 * Updates the progress bar. Must be called on the JavaFX thread.
+	 * @param doneCount		the amount of work done
+	 * @param totalCount	the total amount of work
+	 */
+	public void setProgress(int doneCount, int totalCount)
+	{
+		progressBar.setProgress(totalCount <= 0 ? 1.0 : (double) doneCount / totalCount);
+	}
+
+	/**
+	 * Sets the action which cancels the operation.
+	 * @param onCancel	called when the [Cancel] button is clicked, or the popup is closed by the user
+	 */
+	public void setOnCancel(Runnable onCancel)
+	{
+		this.onCancel = onCancel;
+	}
+
+	/** Called when the [Cancel] button is clicked */
+	private void onCancelButtonClicked()
+	{
+		if(onCancel != null)
+			onCancel.run();
+		stage.close();
+	}
+
+	/**
+	 * Sets up the key bindings.
+	 * The [ESC] key should fire the [Cancel] button's action, which cancels the operation.
+	 */
+	@Override
+	public void initializeKeyMap(Scene scene)
+	{
+		scene.setOnKeyPressed(e ->
+		{
+			if(e.getCode() == KeyCode.ESCAPE)
+			{
+				cancelButton.fire();
+			}
+		});
+	}
+
+}
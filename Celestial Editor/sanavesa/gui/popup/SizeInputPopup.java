@@ -14,17 +14,21 @@
  * 				void setupOkButton(String)
  * 				void setupCancelButton(String)
  * 				void setupInstructionLabel(String)
+ * 				void setupAnchorChoice(Anchor)
  * 				int getResponse1()
  * 				int getResponse2()
+ * 				Anchor getAnchorResponse()
  * 
  ***************************************************************************************************************************/
 
 package sanavesa.gui.popup;
 
+import javafx.collections.FXCollections;
 import javafx.scene.Cursor;
 import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.scene.effect.DropShadow;
@@ -32,6 +36,7 @@ import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.paint.Color;
 import sanavesa.gui.IKeyMapping;
+import sanavesa.source.Anchor;
 import sanavesa.source.Frame;
 
 /**
@@ -54,9 +59,18 @@ public class SizeInputPopup extends Popup implements IKeyMapping
 	/** The helper labels */
 	private final Label instructionLabel1, instructionLabel2;
 	
+	/** The optional anchor selection, only displayed after {@link #setupAnchorChoice(Anchor)} */
+	private final ChoiceBox<Anchor> anchorChoiceBox;
+	
+	/** The helper label of the anchor selection */
+	private final Label anchorLabel;
+	
 	/** The string input of the user */
 	private String response1 = "", response2 = "";
 	
+	/** The anchor selected by the user, null if cancelled */
+	private Anchor anchorResponse = null;
+	
 	/**
 	 * Creates a new text input popup with the specified parameters.
 	 * @param windowTitle	the popup's window's title
@@ -119,6 +133,20 @@ public class SizeInputPopup extends Popup implements IKeyMapping
 		instructionLabel2.setStyle("-fx-font-size: 16");
 		instructionLabel2.relocate(43, 60);
 		
+		// Setup the anchor selection, hidden until requested
+		anchorChoiceBox = new ChoiceBox<Anchor>(FXCollections.observableArrayList(Anchor.values()));
+		anchorChoiceBox.setEffect(shadow);
+		anchorChoiceBox.setMinWidth(237);
+		anchorChoiceBox.setMinHeight(25);
+		anchorChoiceBox.relocate(194, 90);
+		anchorChoiceBox.setVisible(false);
+		
+		anchorLabel = new Label("Anchor");
+		anchorLabel.setEffect(shadow);
+		anchorLabel.setStyle("-fx-font-size: 16");
+		anchorLabel.relocate(43, 90);
+		anchorLabel.setVisible(false);
+		
 		// Setup key binds
 		initializeKeyMap(scene);
 
@@ -128,7 +156,25 @@ public class SizeInputPopup extends Popup implements IKeyMapping
 		// Setup root pane
 		root.setMinWidth(473);
 		root.setMinHeight(144);
-		root.getChildren().addAll(textField1, textField2, okButton, cancelButton, instructionLabel1, instructionLabel2);
+		root.getChildren().addAll(textField1, textField2, okButton, cancelButton, instructionLabel1, instructionLabel2,
+				anchorChoiceBox, anchorLabel);
+	}
+	
+	/**
+	 * Displays the anchor selection below the text fields, which annotates
+	 * the position that is kept in place when resizing.
+	 * @param defaultAnchor		the anchor selected by default
+	 */
+	public void setupAnchorChoice(Anchor defaultAnchor)
+	{
+		anchorChoiceBox.getSelectionModel().select(defaultAnchor);
+		anchorChoiceBox.setVisible(true);
+		anchorLabel.setVisible(true);
+		
+		// Make room for the anchor selection
+		okButton.relocate(100, 145);
+		cancelButton.relocate(237, 145);
+		root.setMinHeight(174);
 	}
 	
 	/**
@@ -252,6 +298,7 @@ public class SizeInputPopup extends Popup implements IKeyMapping
 	{
 		response1 = "";
 		response2 = "";
+		anchorResponse = null;
 		stage.close();
 	}
 
@@ -260,6 +307,7 @@ public class SizeInputPopup extends Popup implements IKeyMapping
 	{
 		response1 = textField1.getText();
 		response2 = textField2.getText();
+		anchorResponse = anchorChoiceBox.getValue();
 		stage.close();
 	}
 
@@ -280,6 +328,14 @@ public class SizeInputPopup extends Popup implements IKeyMapping
 		return response2;
 	}
 
+	/**
+	 * @return the anchor selected by the user, null if cancelled or not displayed
+	 */
+	public Anchor getAnchorResponse()
+	{
+		return anchorResponse;
+	}
+
 	/**
 	 * Sets up the key bindings.
 	 * Pressing [ENTER] shall fire the button's action, 
@@ -1,7 +1,9 @@
 package sanavesa.model;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 import javafx.beans.property.ReadOnlyBooleanProperty;
 import javafx.beans.property.ReadOnlyBooleanWrapper;
@@ -9,6 +11,7 @@ import javafx.beans.property.ReadOnlySetProperty;
 import javafx.beans.property.ReadOnlySetWrapper;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableSet;
+import javafx.collections.SetChangeListener;
 import sanavesa.model.versionControl.ICommand;
 import sanavesa.model.versionControl.VersionControl;
 
@@ -17,12 +20,24 @@ public final class Frame
 	private final ReadOnlySetWrapper<Pixel> pixels;
 	private final ObservableSet<Pixel> unmodifiablePixels;
 	private final ReadOnlyBooleanWrapper visibility;
+	private final List<PixelChangeListener> pixelChangeListeners;
 
 	public Frame(final boolean visibility)
 	{
 		pixels = new ReadOnlySetWrapper<>(FXCollections.observableSet());
 		unmodifiablePixels = FXCollections.unmodifiableObservableSet(pixels.get());
 		this.visibility = new ReadOnlyBooleanWrapper(visibility);
+		pixelChangeListeners = new ArrayList<>();
+
+		// Pixels report their changes to the frame which contains them
+		pixels.addListener((SetChangeListener<Pixel>) change ->
+		{
+			if (change.wasRemoved() && change.getElementRemoved().frame == this)
+				change.getElementRemoved().frame = null;
+
+			if (change.wasAdded())
+				change.getElementAdded().frame = this;
+		});
 	}
 
 	public final ObservableSet<Pixel> getPixels()
@@ -84,6 +99,25 @@ public final class Frame
 		return visibility.getReadOnlyProperty();
 	}
 
+	public final void addPixelChangeListener(final PixelChangeListener listener)
+	{
+		if (listener == null)
+			throw new IllegalArgumentException("listener cannot be null");
+
+		pixelChangeListeners.add(listener);
+	}
+
+	public final void removePixelChangeListener(final PixelChangeListener listener)
+	{
+		pixelChangeListeners.remove(listener);
+	}
+
+	final void firePixelChanged(final Pixel pixel)
+	{
+		for (final PixelChangeListener listener : pixelChangeListeners)
+			listener.pixelChanged(this, pixel);
+	}
+
 	public final void addPixel(final Pixel pixel)
 	{
 		addPixel(pixel, true);
@@ -13,6 +13,7 @@ import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.scene.paint.Color;
 import sanavesa.model.versionControl.ICommand;
 import sanavesa.model.versionControl.VersionControl;
+import sanavesa.util.ArgbUtil;
 
 public final class Layer
 {
@@ -22,6 +23,10 @@ public final class Layer
 	private final ReadOnlyBooleanWrapper visibility;
 	private final ReadOnlyIntegerWrapper depth;
 
+	// ARGB of the color for each brightness step in [-1, 1], rebuilt on demand after a color change
+	private static final int brightnessSteps = 1024;
+	private volatile int[] argbTable = null;
+
 	public Layer(final String name, final Color color, final boolean visibility, final int depth)
 	{
 		this(name, color, visibility, depth, UUID.randomUUID().toString());
@@ -44,6 +49,8 @@ public final class Layer
 		this.visibility = new ReadOnlyBooleanWrapper(visibility);
 		this.depth = new ReadOnlyIntegerWrapper(depth);
 		this.uniqueLayerIdentifier = uniqueLayerIdentifier;
+
+		this.color.addListener(e -> argbTable = null);
 	}
 
 	public final String getUniqueLayerIdentifier()
@@ -113,6 +120,46 @@ public final class Layer
 		return color.getReadOnlyProperty();
 	}
 
+	public final Color computeColor(final double brightness)
+	{
+		final Color layerColor = getColor();
+
+		// The lightnessFactor [-1, 1].
+		// Make lighter
+		if (brightness >= 0)
+		{
+			// New_Saturation = Saturation * (1 - lightnessGUIValue)
+			// New_Brightness = Brightness + lightnessGUIValue * (1 -
+			// Brightness)
+			return Color.hsb(layerColor.getHue(), layerColor.getSaturation() * (1 - brightness),
+					layerColor.getBrightness() + brightness * (1 - layerColor.getBrightness()),
+					layerColor.getOpacity());
+		}
+		// Make darker
+		else
+		{
+			// New_Brightness = Brightness * (1 + lightnessGUIValue)
+			return Color.hsb(layerColor.getHue(), layerColor.getSaturation(),
+					layerColor.getBrightness() * (1 + brightness), layerColor.getOpacity());
+		}
+	}
+
+	public final int computeArgb(final double brightness)
+	{
+		int[] table = argbTable;
+		if (table == null)
+		{
+			table = new int[2 * brightnessSteps + 1];
+			for (int step = 0; step < table.length; step++)
+				table[step] = ArgbUtil.toArgb(computeColor((double) step / brightnessSteps - 1), 1.0);
+
+			argbTable = table;
+		}
+
+		final double bounded = Math.max(-1.0, Math.min(1.0, brightness));
+		return table[(int) Math.round((bounded + 1) * brightnessSteps)];
+	}
+
 	public final boolean getVisibility()
 	{
 		return visibility.get();
@@ -20,28 +20,10 @@ public class ModelDemo
 		{
 			System.out.println("New Frame Pixels: " + Arrays.toString(newV.toArray()));
 		});
-	}
-
-	private static void setupPixelListeners(Pixel pixel)
-	{
-		pixel.xProperty().addListener((e, oldV, newV) ->
-		{
-			System.out.println("New Pixel X: " + newV);
-		});
-
-		pixel.yProperty().addListener((e, oldV, newV) ->
-		{
-			System.out.println("New Pixel Y: " + newV);
-		});
-
-		pixel.layerProperty().addListener((e, oldV, newV) ->
-		{
-			System.out.println("New Pixel Layer: " + newV);
-		});
 
-		pixel.brightnessFactorProperty().addListener((e, oldV, newV) ->
+		frame.addPixelChangeListener((changedFrame, pixel) ->
 		{
-			System.out.println("New Pixel Brightness: " + newV);
+			System.out.println("New Pixel: " + pixel + " " + pixel.getLayer() + " " + pixel.getBrightnessFactor());
 		});
 	}
 
@@ -132,7 +114,6 @@ public class ModelDemo
 		project.getLayerManager().addLayer(layer);
 
 		Pixel pixel = new Pixel(0, 0, layer, 0);
-		setupPixelListeners(pixel);
 
 		project.setName("Project Awesome");
 		frame.addPixel(pixel);
@@ -1,11 +1,5 @@
 package sanavesa.model;
 
-import javafx.beans.property.ReadOnlyDoubleProperty;
-import javafx.beans.property.ReadOnlyDoubleWrapper;
-import javafx.beans.property.ReadOnlyIntegerProperty;
-import javafx.beans.property.ReadOnlyIntegerWrapper;
-import javafx.beans.property.ReadOnlyObjectProperty;
-import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.scene.paint.Color;
 import sanavesa.model.versionControl.ICommand;
 import sanavesa.model.versionControl.VersionControl;
@@ -18,25 +12,29 @@ public final class Pixel
 		return "(" + getX() + "," + getY() + ")";
 	}
 
-	private final ReadOnlyIntegerWrapper x;
-	private final ReadOnlyIntegerWrapper y;
-	private final ReadOnlyObjectWrapper<Layer> layer;
-	private final ReadOnlyDoubleWrapper brightnessFactor;
+	// Plain fields instead of property wrappers; changes are observed per frame through PixelChangeListener
+	private int x;
+	private int y;
+	private Layer layer;
+	private double brightnessFactor;
+
+	// The frame which contains this pixel and is notified of its changes, null if it is in no frame
+	Frame frame;
 
 	public Pixel(final int x, final int y, final Layer layer, final double brightnessFactor)
 	{
 		if (layer == null)
 			throw new IllegalArgumentException("layer cannot be null");
 
-		this.x = new ReadOnlyIntegerWrapper(x);
-		this.y = new ReadOnlyIntegerWrapper(y);
-		this.layer = new ReadOnlyObjectWrapper<>(layer);
-		this.brightnessFactor = new ReadOnlyDoubleWrapper(brightnessFactor);
+		this.x = x;
+		this.y = y;
+		this.layer = layer;
+		this.brightnessFactor = brightnessFactor;
 	}
 
 	public final int getX()
 	{
-		return x.get();
+		return x;
 	}
 
 	public final void setX(final int newX)
@@ -51,20 +49,16 @@ public final class Pixel
 			PixelXCommand command = new PixelXCommand(this, newX);
 			VersionControl.getInstance().executeCommand(command);
 		}
-		else
+		else if (x != newX)
 		{
-			x.set(newX);
+			x = newX;
+			notifyFrame();
 		}
 	}
 
-	public final ReadOnlyIntegerProperty xProperty()
-	{
-		return x.getReadOnlyProperty();
-	}
-
 	public final int getY()
 	{
-		return y.get();
+		return y;
 	}
 
 	public final void setY(final int newY)
@@ -79,20 +73,16 @@ public final class Pixel
 			PixelYCommand command = new PixelYCommand(this, newY);
 			VersionControl.getInstance().executeCommand(command);
 		}
-		else
+		else if (y != newY)
 		{
-			y.set(newY);
+			y = newY;
+			notifyFrame();
 		}
 	}
 
-	public final ReadOnlyIntegerProperty yProperty()
-	{
-		return y.getReadOnlyProperty();
-	}
-
 	public final Layer getLayer()
 	{
-		return layer.get();
+		return layer;
 	}
 
 	public final void setLayer(final Layer newLayer)
@@ -110,20 +100,16 @@ public final class Pixel
 			PixelLayerCommand command = new PixelLayerCommand(this, newLayer);
 			VersionControl.getInstance().executeCommand(command);
 		}
-		else
+		else if (layer != newLayer)
 		{
-			layer.set(newLayer);
+			layer = newLayer;
+			notifyFrame();
 		}
 	}
 
-	public final ReadOnlyObjectProperty<Layer> layerProperty()
-	{
-		return layer.getReadOnlyProperty();
-	}
-
 	public final double getBrightnessFactor()
 	{
-		return brightnessFactor.get();
+		return brightnessFactor;
 	}
 
 	public final void setBrightnessFactor(final double newBrightnessFactor)
@@ -138,43 +124,33 @@ public final class Pixel
 			PixelBrightnessFactorCommand command = new PixelBrightnessFactorCommand(this, newBrightnessFactor);
 			VersionControl.getInstance().executeCommand(command);
 		}
-		else
+		else if (brightnessFactor != newBrightnessFactor)
 		{
-			brightnessFactor.set(newBrightnessFactor);
+			brightnessFactor = newBrightnessFactor;
+			notifyFrame();
 		}
 	}
 
-	public final ReadOnlyDoubleProperty brightnessFactorProperty()
+	public final Frame getFrame()
 	{
-		return brightnessFactor.getReadOnlyProperty();
+		return frame;
 	}
 
-	public final Color computeColor()
+	private final void notifyFrame()
 	{
-		Color computedColor;
-		Color layerColor = getLayer().getColor();
-		double brightness = getBrightnessFactor();
+		if (frame != null)
+			frame.firePixelChanged(this);
+	}
 
-		// The lightnessFactor [-1, 1].
-		// Make lighter
-		if (brightness >= 0)
-		{
-			// New_Saturation = Saturation * (1 - lightnessGUIValue)
-			// New_Brightness = Brightness + lightnessGUIValue * (1 -
-			// Brightness)
-			computedColor = Color.hsb(layerColor.getHue(), layerColor.getSaturation() * (1 - brightness),
-					layerColor.getBrightness() + brightness * (1 - layerColor.getBrightness()),
-					layerColor.getOpacity());
-		}
-		// Make darker
-		else
-		{
-			// New_Brightness = Brightness * (1 + lightnessGUIValue)
-			computedColor = Color.hsb(layerColor.getHue(), layerColor.getSaturation(),
-					layerColor.getBrightness() * (1 + brightness), layerColor.getOpacity());
-		}
+	public final Color computeColor()
+	{
+		return getLayer().computeColor(getBrightnessFactor());
+	}
 
-		return computedColor;
+	public final int computeArgb()
+	{
+		// Looked up from the layer's table, without any HSB math or allocation
+		return getLayer().computeArgb(getBrightnessFactor());
 	}
 
 	private final class PixelXCommand implements ICommand
@@ -0,0 +1,7 @@
+package sanavesa.model;
+
+@FunctionalInterface
+public interface PixelChangeListener
+{
+	void pixelChanged(Frame frame, Pixel pixel);
+}
@@ -0,0 +1,88 @@
+/***************************************************************************************************************************
+ * Enum:		Anchor.java
+ * Author:		Mohammad Alali
+ *
+ * Description: The position of the frame's contents which is kept in place when the frames are resized. Cropping removes
+ * 				the cells away from the anchor, and extending adds the new cells away from the anchor. It is not coupled
+ * 				with any GUI library.
+ *
+ * Attributes:
+ * 				int horizontal
+ * 				int vertical
+ *
+ * Methods:
+ * 				int getOffsetX(int, int)
+ * 				int getOffsetY(int, int)
+ *
+ ***************************************************************************************************************************/
+
+package sanavesa.source;
+
+/**
+ * The position of the frame's contents which is kept in place when the frames are resized,
+ * see {@link Frame#resizeFrame(int, int, Anchor)}.
+ * <p>
+ * Cropping removes the cells away from the anchor, and extending adds the new cells away
+ * from the anchor. For example, {@link #CENTER} crops or extends all sides evenly.
+ * </p>
+ * @author Mohammad Alali
+ */
+public enum Anchor
+{
+	TOP_LEFT("Top Left", 0, 0),
+	TOP("Top", 1, 0),
+	TOP_RIGHT("Top Right", 2, 0),
+	LEFT("Left", 0, 1),
+	CENTER("Center", 1, 1),
+	RIGHT("Right", 2, 1),
+	BOTTOM_LEFT("Bottom Left", 0, 2),
+	BOTTOM("Bottom", 1, 2),
+	BOTTOM_RIGHT("Bottom Right", 2, 2);
+
+	/** The name displayed to the user */
+	private final String displayName;
+
+	/** The horizontal position of the anchor in halves of the width. (0 = left, 1 = center, 2 = right) */
+	private final int horizontal;
+
+	/** The vertical position of the anchor in halves of the height. (0 = top, 1 = center, 2 = bottom) */
+	private final int vertical;
+
+	/**
+	 * @param displayName	the name displayed to the user
+	 * @param horizontal	the horizontal position of the anchor in halves of the width
+	 * @param vertical		the vertical position of the anchor in halves of the height
+	 */
+	private Anchor(String displayName, int horizontal, int vertical)
+	{
+		this.displayName = displayName;
+		this.horizontal = horizontal;
+		this.vertical = vertical;
+	}
+
+	/**
+	 * @param oldWidth	the width before resizing
+	 * @param newWidth	the width after resizing
+	 * @return	the amount the pixels are shifted horizontally, so that the anchor stays in place
+	 */
+	public int getOffsetX(int oldWidth, int newWidth)
+	{
+		return (newWidth - oldWidth) * horizontal / 2;
+	}
+
+	/**
+	 * @param oldHeight		the height before resizing
+	 * @param newHeight		the height after resizing
+	 * @return	the amount the pixels are shifted vertically, so that the anchor stays in place
+	 */
+	public int getOffsetY(int oldHeight, int newHeight)
+	{
+		return (newHeight - oldHeight) * vertical / 2;
+	}
+
+	@Override
+	public String toString()
+	{
+		return displayName;
+	}
+}
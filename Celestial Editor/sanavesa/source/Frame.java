@@ -4,18 +4,35 @@
  * 
  * Description: A frame represents an editable image. The pixels in the frame's image are represented by the Pixel class. 
 			 	It is not coupled with any GUI library. It implements the ISerializable interface which enables
-			 	the class to be saved and loaded from an external file.
+			 	the class to be saved and loaded from an external file. The pixels are stored in a PixelRaster.
  * 	
  * Attributes: 	
  * 				static int frameWidth
  * 				static int frameHeight
  * 				boolean visibility
  * 				string name
- * 				Set<Pixel> pixels
+ * 				PixelRaster raster
+ * 				List<FrameChangeListener> changeListeners
+ * 				int version
  * 		
  * Methods:		
  * 				Pixel findPixel(Predicate<Pixel>)
  * 				List<Pixel> findPixels(Predicate<Pixel>)
+ * 				PixelBounds getPaintedBounds()
+ * 				PixelRaster copyPixelsOutside(PixelBounds)
+ * 				void restorePixels(PixelRaster)
+ * 				FrameSnapshot snapshot()
+ * 				int getVersion()
+ * 				static void resizeFrame(int, int, Anchor)
+ * 				static void resizeFrame(int, int, int, int)
+ * 				void beginBatch()
+ * 				void commitBatch()
+ * 				void applyBatch(Runnable)
+ * 				Pixel getPixelAt(int, int, Layer)
+ * 				List<Pixel> getPixelsAt(int, int)
+ * 				List<Pixel> getPixelsOf(Layer)
+ * 				int removePixels(Layer)
+ * 				int replaceLayer(Layer, Layer)
  * 				void save(ObjectOutputStream)
  * 				void reset()
  * 				void load(ObjectInputStream)
@@ -27,30 +44,42 @@ package sanavesa.source;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.util.HashSet;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.Stack;
+import java.util.WeakHashMap;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.SetProperty;
+import javafx.beans.property.ReadOnlyIntegerProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleIntegerProperty;
-import javafx.beans.property.SimpleSetProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableSet;
 import sanavesa.command.Commands;
+import sanavesa.source.PixelRaster.PixelVisitor;
 
 /**
  * A frame represents an editable image. The pixels
  * in the frame's image are represented by {@link Pixel}. 
  * <p>
+ * The pixels are not stored as objects, they are packed into a {@link PixelRaster}.
+ * The pixels handed out by the frame are thin views over the raster.
+ * </p>
+ * <p>
+ * Every operation that changes the pixels notifies the {@link FrameChangeListener}s once
+ * with the bounds of the changed cells. Operations made inside a batch are aggregated
+ * into a single notification, see {@link #beginBatch()}.
+ * </p>
+ * <p>
  * It is not coupled with any GUI library.
  * It implements the {@link ISerializable} interface which enables
  * the class to be saved and loaded from an external file.
@@ -75,6 +104,12 @@ public class Frame implements ISerializable
 	 */
 	private static IntegerProperty frameHeight = new SimpleIntegerProperty(64);
 	
+	/**
+	 * All frames which have not been garbage collected. The frames are held weakly,
+	 * so that deleted frames are neither leaked nor resized.
+	 */
+	private static final Set<Frame> liveFrames = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<Frame, Boolean>()));
+	
 	/** The name of the frame */
 	private StringProperty name = new SimpleStringProperty(this, "name", "");
 	
@@ -82,40 +117,78 @@ public class Frame implements ISerializable
 	private BooleanProperty visibility = new SimpleBooleanProperty(this, "visibility", true);
 	
 	/**
-	 * The set of pixels in the frame. It has distinct elements
-	 * and no duplicates of any pixels. Also, it only contains
-	 * pixels that are within in the the location space [0, 0] and
+	 * The storage of the pixels in the frame. It holds at most one pixel per layer
+	 * in each cell, and only cells that are within in the the location space [0, 0] and
 	 * [{@link #frameWidth} - 1, {@link #frameHeight} - 1].
 	 */
-	private SetProperty<Pixel> pixels = new SimpleSetProperty<Pixel>(this, "pixels", null);
+	private PixelRaster raster = null;
+	
+	/** A set view of the pixels stored in {@link #raster} */
+	private final Set<Pixel> pixels = new PixelSet();
 	
 	/** Consists of the commands the user has done. Used for undo. */
 	private Stack<Commands> commands = new Stack<>();
 	
+	/** The listeners notified after the pixels of the frame change */
+	private final List<FrameChangeListener> changeListeners = new ArrayList<FrameChangeListener>();
+	
+	/** The amount of batches currently open, changes are only reported once it reaches 0 */
+	private int batchDepth = 0;
+	
+	/** The bounds of the cells changed since the last notification, null if none changed */
+	private PixelBounds pendingBounds = null;
+	
+	/** The amount of pixel changes since the last notification */
+	private int pendingChanges = 0;
+	
+	/** Incremented whenever the pixels of the frame change, even inside a batch */
+	private int version = 0;
+	
 	/**
 	 * Creates a new visible frame with the specified name and an empty set of pixels.
 	 * @param newName the name of the frame
 	 */
 	public Frame(String newName)
 	{
-		this(newName, FXCollections.observableSet(new HashSet<Pixel>()), true);
+		this(newName, Collections.<Pixel>emptySet(), true);
 	}
 	
 	/**
-	 * Creates a new frame with the specified name and set of pixels.
+	 * Creates a new frame with the specified name and pixels.
 	 * @param newName		the name of the frame
-	 * @param newPixels		the set of pixels of the frame
+	 * @param newPixels		the pixels of the frame, which are copied into the frame
 	 * @param isVisible		whether the frame is visible or not
 	 */
-	public Frame(String newName, ObservableSet<Pixel> newPixels, boolean isVisible)
+	public Frame(String newName, Collection<Pixel> newPixels, boolean isVisible)
 	{
+		raster = new PixelRaster(getFrameWidth(), getFrameHeight());
 		setName(newName);
 		setPixels(newPixels);
 		setVisibility(isVisible);
 		
-		// Listen to the changes of the frame's width and height
-		frameWidthProperty().addListener(e -> onFrameWidthChanged());
-		frameHeightProperty().addListener(e -> onFrameHeightChanged());
+		// Resized along with all other frames, see resizeFrame()
+		liveFrames.add(this);
+	}
+	
+	/**
+	 * Copy constructor - creates a frame with the same pixels and visibility as <code>other</code>.
+	 * <p>
+	 * The pixels are not copied; both frames share the storage of <code>other</code>,
+	 * and a tile of it is only copied once either frame changes a pixel in it. Therefore,
+	 * duplicating a frame takes constant time, and memory only grows with the differences.
+	 * The undo history is not copied.
+	 * </p>
+	 * @param newName	the name of the new frame
+	 * @param other		the frame to copy the pixels and visibility from
+	 */
+	public Frame(String newName, Frame other)
+	{
+		raster = other.raster.copy();
+		setName(newName);
+		setVisibility(other.getVisibility());
+		
+		// Resized along with all other frames, see resizeFrame()
+		liveFrames.add(this);
 	}
 	
 	/**
@@ -172,33 +245,106 @@ public class Frame implements ISerializable
 	}
 	
 	/**
-	 * Sets the frame's pixel's set to <code>newPixels</code>.
-	 * @param newPixels 	the frame's new set of pixels
+	 * Replaces the frame's pixels with <code>newPixels</code>.
+	 * @param newPixels 	the frame's new pixels, which are copied into the frame
 	 */
-	public void setPixels(ObservableSet<Pixel> newPixels)
+	public void setPixels(Collection<Pixel> newPixels)
 	{
-		pixels.set(newPixels);
+		beginBatch();
+		try
+		{
+			clearPixels();
+			for(Pixel p : newPixels)
+			{
+				addPixel(p);
+			}
+		}
+		finally
+		{
+			commitBatch();
+		}
 	}
 	
 	/**
+	 * The returned set is a view of the frame's pixels. Removing from the set or its
+	 * iterator removes the pixel from the frame, and the pixels in it write their changes
+	 * back to the frame.
 	 * @return a set that contains all pixels in the frame
-	 * @see #pixels
+	 * @see #raster
 	 * @see Pixel
 	 */
-	public ObservableSet<Pixel> getPixels()
+	public Set<Pixel> getPixels()
 	{
-		return pixels.get();
+		return pixels;
 	}
 	
 	/**
-	 * @return a set property that contains all pixels in the frame
-	 * @see #pixels
-	 * @see SetProperty
-	 * @see Pixel
+	 * @return the amount of pixels in the frame
 	 */
-	public SetProperty<Pixel> pixelsProperty()
+	public int getPixelCount()
 	{
-		return pixels;
+		return raster.size();
+	}
+	
+	/**
+	 * @param layer		the layer to count
+	 * @return the amount of pixels in the frame using the layer
+	 */
+	public int getPixelCount(Layer layer)
+	{
+		return raster.count(layer);
+	}
+	
+	/**
+	 * @return the raster that stores the frame's pixels
+	 */
+	PixelRaster getRaster()
+	{
+		return raster;
+	}
+	
+	/**
+	 * Visits every pixel of the frame without creating any pixel objects.
+	 * Only the painted tiles of the frame are visited. The pixels of each cell
+	 * are visited from the lowest to the highest layer depth.
+	 * @param visitor	called for each pixel in the frame
+	 */
+	public void forEachPixel(PixelVisitor visitor)
+	{
+		raster.sortByDepth();
+		raster.forEach(visitor);
+	}
+	
+	/**
+	 * Visits every pixel of the frame inside the region without creating any pixel objects.
+	 * Only the painted tiles overlapping the region are visited. The pixels of each cell
+	 * are visited from the lowest to the highest layer depth.
+	 * @param region	the cells to visit
+	 * @param visitor	called for each pixel in the region
+	 */
+	public void forEachPixel(PixelBounds region, PixelVisitor visitor)
+	{
+		raster.sortByDepth();
+		raster.forEach(region, visitor);
+	}
+	
+	/**
+	 * Reorders the pixels of each cell by the current depth of their layers.
+	 * Called once the depths of the layers change, so that the next redraw does not have to.
+	 */
+	public void sortPixelsByDepth()
+	{
+		raster.sortByDepth();
+	}
+	
+	/**
+	 * The bounds are computed from the painted tiles only,
+	 * so the cost scales with the painted area and not the frame size.
+	 * @return the smallest bounds containing all of the frame's pixels, null if the frame is empty
+	 */
+	public PixelBounds getPaintedBounds()
+	{
+		return raster.getBounds();
 	}
 	
 	/**
@@ -217,7 +363,31 @@ public class Frame implements ISerializable
 		if(p.getX() < 0 || p.getY() < 0 || p.getX() > getFrameWidth() - 1 || p.getY() > getFrameHeight() - 1)
 			return;
 		
-		pixels.add(p);
+		raster.set(p.getX(), p.getY(), p.getLayer(), p.getBrightnessFactor());
+		markDirty(PixelBounds.of(p.getX(), p.getY()), 1);
+		
+		// The pixel now writes its changes through to this frame
+		p.frame = this;
+	}
+	
+	/**
+	 * Stores a pixel in the frame without creating a pixel object. If the cell already
+	 * has a pixel of the same layer, its brightness factor is updated instead.
+	 * Positions outside of the frame view bounds are ignored.
+	 * @param x					the x-coordinate of the pixel
+	 * @param y					the y-coordinate of the pixel
+	 * @param layer				the layer of the pixel
+	 * @param brightnessFactor	the brightness factor of the pixel
+	 * @return	true if a new pixel was added
+	 */
+	public boolean setPixel(int x, int y, Layer layer, double brightnessFactor)
+	{
+		if(!raster.contains(x, y))
+			return false;
+		
+		boolean added = raster.set(x, y, layer, brightnessFactor);
+		markDirty(PixelBounds.of(x, y), 1);
+		return added;
 	}
 	
 //	/**
@@ -249,7 +419,31 @@ public class Frame implements ISerializable
 	 */
 	public void removePixel(Pixel p)
 	{
-		pixels.remove(p);
+		if(p == null)
+			return;
+		
+		removePixel(p.getX(), p.getY(), p.getLayer());
+		
+		// The pixel is no longer a view of this frame
+		if(p.frame == this)
+			p.frame = null;
+	}
+	
+	/**
+	 * Removes the pixel with the specified layer at the position. If there is no such pixel,
+	 * the function call would do nothing.
+	 * @param x		the x-coordinate of the pixel
+	 * @param y		the y-coordinate of the pixel
+	 * @param layer	the layer of the pixel
+	 * @return	true if a pixel was removed
+	 */
+	public boolean removePixel(int x, int y, Layer layer)
+	{
+		if(!raster.remove(x, y, layer))
+			return false;
+		
+		markDirty(PixelBounds.of(x, y), 1);
+		return true;
 	}
 	
 //	/**
@@ -271,49 +465,135 @@ public class Frame implements ISerializable
 	 */
 	public void clearPixels()
 	{
-		pixels.clear();
+		PixelBounds bounds = raster.getBounds();
+		int removed = raster.size();
+		raster.clear();
+		markDirty(bounds, removed);
+	}
+	
+	/**
+	 * Removes all pixels using the layer. Only the tiles of the frame containing
+	 * the layer are visited, so the cost scales with the affected pixels.
+	 * @param layer		the layer of the pixels to remove
+	 * @return	the amount of pixels removed
+	 */
+	public int removePixels(Layer layer)
+	{
+		PixelBounds bounds = raster.getBounds();
+		int removed = raster.removeAll(layer);
+		if(removed > 0)
+			markDirty(bounds, removed);
+		
+		return removed;
 	}
 	
 	/**
-	 * This method is called internally after the frame's width has been changed.
-	 * It will remove all pixels that are out of bound. Pixels that have a 
-	 * x-coordinate outside the boundary <code>[0, {@link #frameWidth} - 1]</code> are removed.
-	 * @see #frameWidth
+	 * Moves all pixels using <code>oldLayer</code> onto <code>newLayer</code>, keeping their brightness factors.
+	 * If a cell already has a pixel using <code>newLayer</code>, it is replaced.
+	 * @param oldLayer	the layer of the pixels to recolor
+	 * @param newLayer	the layer the pixels will use
+	 * @return	the amount of pixels recolored
 	 */
-	private void onFrameWidthChanged()
+	public int replaceLayer(Layer oldLayer, Layer newLayer)
 	{
-		Pixel p = null;
-		for(Iterator<Pixel> iterator = pixels.iterator(); iterator.hasNext();)
+		PixelBounds bounds = raster.getBounds();
+		int replaced = raster.replaceLayer(oldLayer, newLayer);
+		if(replaced > 0)
+			markDirty(bounds, replaced);
+		
+		return replaced;
+	}
+	
+	/**
+	 * Shifts all of the frame's pixels by the specified amount.
+	 * Pixels that end up outside of the frame view bounds are removed.
+	 * @param shiftX	the amount of horizontal shift
+	 * @param shiftY	the amount of vertical shift
+	 */
+	public void shiftPixels(int shiftX, int shiftY)
+	{
+		// Both the cells the pixels left and the cells they moved into are dirty
+		PixelBounds oldBounds = raster.getBounds();
+		int moved = raster.size();
+		raster.shift(shiftX, shiftY);
+		
+		if(oldBounds != null)
+			markDirty(oldBounds.union(raster.getBounds()), moved);
+	}
+	
+	/**
+	 * Copies the frame's pixels which lie outside of the region, such as the pixels a resize would crop,
+	 * so they can later be put back with {@link #restorePixels(PixelRaster)}. Only the tiles overlapping
+	 * the copied pixels take up memory.
+	 * @param kept		the cells which are not copied
+	 * @return	a raster of the frame's size, holding only the pixels outside of the region
+	 */
+	public PixelRaster copyPixelsOutside(PixelBounds kept)
+	{
+		PixelRaster outside = new PixelRaster(raster.getWidth(), raster.getHeight());
+		PixelBounds bounds = raster.getBounds();
+
+		// Nothing lies outside if the painted cells are all kept
+		if(bounds == null || (kept.contains(bounds.getMinX(), bounds.getMinY()) && kept.contains(bounds.getMaxX(), bounds.getMaxY())))
+			return outside;
+
+		raster.forEach(bounds, (x, y, layer, brightnessFactor) ->
 		{
-			p = iterator.next();
-			// Compare the x coordinate of the pixel with the new boundary
-			if(p.getX() < 0 || p.getX() > getFrameWidth() - 1)
-			{
-				// Remove because it is outside the boundary [0, frameWidth - 1]
-				iterator.remove();
-			}
-		}
+			if(!kept.contains(x, y))
+				outside.set(x, y, layer, brightnessFactor);
+		});
+		return outside;
 	}
 	
 	/**
-	 * This method is called internally after the frame's height has been changed.
-	 * It will remove all pixels that are out of bound. Pixels that have a 
-	 * y-coordinate outside the boundary [0, {@link #frameHeight} - 1] are removed.
-	 * @see #frameHeight
+	 * Puts back the pixels copied with {@link #copyPixelsOutside(PixelBounds)}. A pixel replaces the
+	 * pixel of the same layer in its cell, if any. The listeners are notified once.
+	 * @param copy		the pixels to put back, at the positions they had in this frame
 	 */
-	private void onFrameHeightChanged()
+	public void restorePixels(PixelRaster copy)
 	{
-		Pixel p = null;
-		for(Iterator<Pixel> iterator = pixels.iterator(); iterator.hasNext();)
+		PixelBounds bounds = copy.getBounds();
+		if(bounds == null)
+			return;
+		
+		copy.forEach(bounds, (x, y, layer, brightnessFactor) ->
 		{
-			p = iterator.next();
-			// Compare the y coordinate of the pixel with the new boundary
-			if(p.getY() < 0 || p.getY() > getFrameHeight() - 1)
-			{
-				// Remove because it is outside the boundary [0, frameHeight - 1]
-				iterator.remove();
-			}
-		}
+			if(raster.contains(x, y))
+				raster.set(x, y, layer, brightnessFactor);
+		});
+		markDirty(bounds, copy.size());
+	}
+	
+	/**
+	 * Takes an immutable snapshot of the frame, which can be read from any thread while the frame
+	 * keeps changing. It takes constant time with respect to the amount of pixels, as the tiles of
+	 * the pixels are shared until the frame writes to them. Must be called on the thread which changes the frame.
+	 * @return	a snapshot of the frame's pixels, visibility and the colors of its layers
+	 */
+	public FrameSnapshot snapshot()
+	{
+		raster.sortByDepth();
+		return new FrameSnapshot(getName(), getVisibility(), version, raster.copy());
+	}
+	
+	/**
+	 * The version changes whenever the pixels of the frame change, so anything derived from the pixels,
+	 * such as a cached image, can tell whether it is stale by comparing versions. It does not cover the
+	 * visibility of the frame, nor the colors of the layers, see {@link Layer#getAppearanceVersion()}.
+	 * @return	a number which changes whenever the pixels of the frame change
+	 */
+	public int getVersion()
+	{
+		return version;
+	}
+	
+	/**
+	 * This method is called internally after all frames have been resized.
+	 * The whole frame is reported as changed to the listeners.
+	 */
+	private void onFrameResized()
+	{
+		markDirty(new PixelBounds(0, 0, raster.getWidth() - 1, raster.getHeight() - 1), raster.size());
 	}
 	
 	/**
@@ -368,7 +648,57 @@ public class Frame implements ISerializable
 		
 		return pixels.stream().filter(predicate).collect(Collectors.<Pixel>toList());
 	}
+
+	/**
+	 * Looks up the pixel of the specified layer at the position. Unlike {@link #findPixel(Predicate)},
+	 * this does not scan the frame; it only checks the pixels stored in that cell.
+	 * @param x		the x-coordinate of the pixel
+	 * @param y		the y-coordinate of the pixel
+	 * @param layer	the layer of the pixel
+	 * @return	the pixel at the position with the specified layer, null if there is none
+	 */
+	public Pixel getPixelAt(int x, int y, Layer layer)
+	{
+		int slot = raster.find(x, y, layer);
+		if(slot < 0)
+			return null;
+
+		return createView(x, y, layer, PixelRaster.unpackBrightness(raster.get(slot, x, y)));
+	}
+
+	/**
+	 * Looks up all pixels using the layer. Only the tiles of the frame containing
+	 * the layer are visited, so the cost scales with the amount of matching pixels.
+	 * @param layer		the layer of the pixels
+	 * @return	a list of the pixels using the layer, empty if there are none
+	 */
+	public List<Pixel> getPixelsOf(Layer layer)
+	{
+		List<Pixel> result = new ArrayList<Pixel>(raster.count(layer));
+		raster.forEach(layer, (x, y, pixelLayer, brightnessFactor) -> result.add(createView(x, y, pixelLayer, brightnessFactor)));
+		return result;
+	}
 	
+	/**
+	 * Looks up all pixels at the position, one per layer. Unlike {@link #findPixels(Predicate)},
+	 * this does not scan the frame; it only checks the pixels stored in that cell.
+	 * @param x		the x-coordinate of the pixels
+	 * @param y		the y-coordinate of the pixels
+	 * @return	a list of the pixels at the position, empty if there are none
+	 */
+	public List<Pixel> getPixelsAt(int x, int y)
+	{
+		int count = raster.countAt(x, y);
+		List<Pixel> result = new ArrayList<Pixel>(count);
+		for(int slot = 0; slot < count; slot++)
+		{
+			int packed = raster.get(slot, x, y);
+			result.add(createView(x, y, raster.getLayer(PixelRaster.unpackLayerIndex(packed)), PixelRaster.unpackBrightness(packed)));
+		}
+
+		return result;
+	}
+
 	/**
 	 * Note that no pixel in the frame has an x-coordinate less
 	 * than 0 or greater than frameWidth - 1.
@@ -391,19 +721,21 @@ public class Frame implements ISerializable
 	}
 	
 	/**
+	 * The property is read only, the frames are resized with {@link #resizeFrame(int, int, Anchor)}.
 	 * @return 	the property that handles the frame's width
-	 * @see		IntegerProperty
+	 * @see		ReadOnlyIntegerProperty
 	 */
-	public static IntegerProperty frameWidthProperty()
+	public static ReadOnlyIntegerProperty frameWidthProperty()
 	{
 		return frameWidth;
 	}
 	
 	/**
+	 * The property is read only, the frames are resized with {@link #resizeFrame(int, int, Anchor)}.
 	 * @return 	the property that handles the frame's height
-	 * @see		IntegerProperty
+	 * @see		ReadOnlyIntegerProperty
 	 */
-	public static IntegerProperty frameHeightProperty()
+	public static ReadOnlyIntegerProperty frameHeightProperty()
 	{
 		return frameHeight;
 	}
@@ -422,12 +754,81 @@ public class Frame implements ISerializable
 	 * 						Must be greater than or equal to 1.
 	 */
 	public static void resizeFrame(int newWidth, int newHeight)
+	{
+		resizeFrame(newWidth, newHeight, Anchor.TOP_LEFT);
+	}
+	
+	/**
+	 * Resizes all of the frames to the specified width and height, keeping the anchor in place.
+	 * A smaller size crops the frames and a larger size extends them, away from the anchor.
+	 * <p>
+	 * If the new frame size has a width or height of 0 or less, then it shall do nothing.
+	 * All pixels in all frames that end up outside of the new boundary shall be removed.
+	 * The frames are resized in parallel, and the listeners of each frame are notified
+	 * once afterwards on the calling thread.
+	 * </p>
+	 * @param 	newWidth 	The new width of all the frames.
+	 * 						Must be greater than or equal to 1.
+	 * @param 	newHeight 	The new height of all the frames.
+	 * 						Must be greater than or equal to 1.
+	 * @param	anchor		The position of the contents which is kept in place
+	 * @throws IllegalArgumentException if the anchor is null
+	 */
+	public static void resizeFrame(int newWidth, int newHeight, Anchor anchor)
+	{
+		if(anchor == null)
+			throw new IllegalArgumentException("anchor cannot be null");
+		
+		resizeFrame(newWidth, newHeight, anchor.getOffsetX(getFrameWidth(), newWidth), anchor.getOffsetY(getFrameHeight(), newHeight));
+	}
+	
+	/**
+	 * Resizes all of the frames to the specified width and height, shifting their pixels by the offset.
+	 * Resizing back to the old size with the opposite offset reverses a resize, except for the pixels it cropped.
+	 * <p>
+	 * If the new frame size has a width or height of 0 or less, then it shall do nothing.
+	 * All pixels in all frames that end up outside of the new boundary shall be removed.
+	 * </p>
+	 * @param 	newWidth 	The new width of all the frames.
+	 * 						Must be greater than or equal to 1.
+	 * @param 	newHeight 	The new height of all the frames.
+	 * 						Must be greater than or equal to 1.
+	 * @param	offsetX		The amount the pixels are shifted horizontally
+	 * @param	offsetY		The amount the pixels are shifted vertically
+	 * @see Anchor#getOffsetX(int, int)
+	 */
+	public static void resizeFrame(int newWidth, int newHeight, int offsetX, int offsetY)
 	{
 		if(newWidth < 1 || newHeight < 1)
 			return;
 		
+		if(newWidth == getFrameWidth() && newHeight == getFrameHeight() && offsetX == 0 && offsetY == 0)
+			return;
+		
+		// Each frame owns its raster, so the frames can be resized independently of each other
+		List<Frame> frames = getLiveFrames();
+		frames.parallelStream().forEach(frame -> frame.raster.resize(newWidth, newHeight, offsetX, offsetY));
+		
 		frameWidth.set(newWidth);
 		frameHeight.set(newHeight);
+		
+		for(Frame frame : frames)
+		{
+			frame.onFrameResized();
+		}
+	}
+	
+	/**
+	 * The frames are held weakly, so a frame which is no longer used is not kept alive
+	 * nor resized by {@link #resizeFrame(int, int, Anchor)}.
+	 * @return a list of the frames which have not been garbage collected
+	 */
+	private static List<Frame> getLiveFrames()
+	{
+		synchronized(liveFrames)
+		{
+			return new ArrayList<Frame>(liveFrames);
+		}
 	}
 	
 	/** Export the frame's data into the file stream. */
@@ -454,39 +855,54 @@ public class Frame implements ISerializable
 	@Override
 	public void reset()
 	{
-		frameWidth.set(64);
-		frameHeight.set(64);
+		resizeFrame(64, 64);
 		name.set("");
 		visibility.set(true);
-		pixels.clear();
+		clearPixels();
 	}
 
 	/** Imports the frame's data from the file stream. */
 	@Override
 	public void load(ObjectInputStream in) throws IOException, ClassNotFoundException
 	{
-		frameWidth.set(in.readInt());
-		frameHeight.set(in.readInt());
+		int loadedWidth = in.readInt();
+		int loadedHeight = in.readInt();
+		resizeFrame(loadedWidth, loadedHeight);
 		name.set((String) in.readObject());
 		visibility.set(in.readBoolean());
 		
 		int size = in.readInt();
-		pixels.clear();
-		for(int i = 0; i < size; i++)
+		beginBatch();
+		try
+		{
+			clearPixels();
+			for(int i = 0; i < size; i++)
+			{
+				Pixel p = new Pixel(0, 0, 0, null);
+				p.load(in);
+				addPixel(p);
+			}
+		}
+		finally
 		{
-			Pixel p = new Pixel(0, 0, 0, null);
-			p.load(in);
-			pixels.add(p);
+			commitBatch();
 		}
 	}
 	
-	/** Undos the last action the user did on this frame. */
-	public void undo()
+	/**
+	 * Undos the last action the user did on this frame. An action which can no longer be
+	 * undone is kept, so the user can undo it once it can be, see {@link Commands#canUndo()}.
+	 * @return	true if an action was undone
+	 */
+	public boolean undo()
 	{
-		if(commands.size() > 0)
+		if(commands.size() > 0 && commands.peek().canUndo())
 		{
 			commands.pop().undo();
+			return true;
 		}
+		
+		return false;
 	}
 
 	/**
@@ -497,4 +913,198 @@ public class Frame implements ISerializable
 	{
 		return commands;
 	}
+	
+	/**
+	 * Adds a listener which is notified after the pixels of the frame change.
+	 * @param listener	the listener to add
+	 * @throws IllegalArgumentException if the listener is null
+	 */
+	public void addFrameChangeListener(FrameChangeListener listener)
+	{
+		if(listener == null)
+			throw new IllegalArgumentException("listener cannot be null");
+		
+		changeListeners.add(listener);
+	}
+	
+	/**
+	 * Removes a listener previously added with {@link #addFrameChangeListener(FrameChangeListener)}.
+	 * @param listener	the listener to remove
+	 */
+	public void removeFrameChangeListener(FrameChangeListener listener)
+	{
+		changeListeners.remove(listener);
+	}
+	
+	/**
+	 * Opens a batch of changes. Until the matching {@link #commitBatch()}, the changes made to the
+	 * frame are aggregated instead of being reported. Batches may be nested; the listeners are
+	 * only notified once the outer most batch is committed.
+	 * <p>
+	 * Every call must be paired with a call to {@link #commitBatch()}, preferably in a finally block.
+	 * See {@link #applyBatch(Runnable)} which does so.
+	 * </p>
+	 */
+	public void beginBatch()
+	{
+		batchDepth++;
+	}
+	
+	/**
+	 * Closes the batch opened by {@link #beginBatch()}. Once the outer most batch is closed, the
+	 * listeners are notified once with the bounds of all the cells changed inside it, if any.
+	 * @throws IllegalStateException if there is no open batch
+	 */
+	public void commitBatch()
+	{
+		if(batchDepth == 0)
+			throw new IllegalStateException("There is no open batch to commit");
+		
+		batchDepth--;
+		if(batchDepth == 0)
+			fireFrameChanged();
+	}
+	
+	/**
+	 * Runs the operation as a single batch, so the listeners are notified at most once.
+	 * @param operation		the changes to make to the frame
+	 * @see #beginBatch()
+	 */
+	public void applyBatch(Runnable operation)
+	{
+		beginBatch();
+		try
+		{
+			operation.run();
+		}
+		finally
+		{
+			commitBatch();
+		}
+	}
+	
+	/**
+	 * Records that the cells inside the bounds changed. The listeners are notified immediately,
+	 * unless a batch is open.
+	 * @param bounds	the changed cells, null if none changed
+	 * @param changes	the amount of pixel changes
+	 */
+	private void markDirty(PixelBounds bounds, int changes)
+	{
+		if(bounds == null)
+			return;
+		
+		pendingBounds = bounds.union(pendingBounds);
+		pendingChanges += changes;
+		version++;
+		
+		if(batchDepth == 0)
+			fireFrameChanged();
+	}
+	
+	/** Notifies the listeners of the pending changes, if any, and resets them. */
+	private void fireFrameChanged()
+	{
+		if(pendingBounds == null)
+			return;
+		
+		FrameChange change = new FrameChange(this, pendingBounds, pendingChanges);
+		pendingBounds = null;
+		pendingChanges = 0;
+		
+		// Iterate a copy, so a listener may remove itself
+		for(FrameChangeListener listener : new ArrayList<FrameChangeListener>(changeListeners))
+		{
+			listener.frameChanged(change);
+		}
+	}
+	
+	/**
+	 * Creates a pixel view of a pixel stored in the raster.
+	 * @return a pixel attached to this frame
+	 */
+	private Pixel createView(int x, int y, Layer layer, double brightnessFactor)
+	{
+		Pixel view = new Pixel(x, y, brightnessFactor, layer);
+		view.frame = this;
+		return view;
+	}
+	
+	/**
+	 * A set view of the pixels in the raster. The pixels are created on demand
+	 * while iterating, and removing from the set removes from the frame.
+	 */
+	private class PixelSet extends AbstractSet<Pixel>
+	{
+		@Override
+		public Iterator<Pixel> iterator()
+		{
+			PixelRaster.Cursor cursor = raster.cursor();
+			
+			return new Iterator<Pixel>()
+			{
+				@Override
+				public boolean hasNext()
+				{
+					return cursor.hasNext();
+				}
+				
+				@Override
+				public Pixel next()
+				{
+					cursor.next();
+					return createView(cursor.getX(), cursor.getY(), cursor.getLayer(), cursor.getBrightnessFactor());
+				}
+				
+				@Override
+				public void remove()
+				{
+					PixelBounds cell = PixelBounds.of(cursor.getX(), cursor.getY());
+					cursor.remove();
+					markDirty(cell, 1);
+				}
+			};
+		}
+		
+		@Override
+		public int size()
+		{
+			return raster.size();
+		}
+		
+		@Override
+		public boolean contains(Object o)
+		{
+			if(!(o instanceof Pixel))
+				return false;
+			
+			Pixel p = (Pixel) o;
+			return raster.find(p.getX(), p.getY(), p.getLayer()) >= 0;
+		}
+		
+		@Override
+		public boolean add(Pixel p)
+		{
+			int oldSize = raster.size();
+			addPixel(p);
+			return raster.size() != oldSize;
+		}
+		
+		@Override
+		public boolean remove(Object o)
+		{
+			if(!(o instanceof Pixel))
+				return false;
+			
+			int oldSize = raster.size();
+			removePixel((Pixel) o);
+			return raster.size() != oldSize;
+		}
+		
+		@Override
+		public void clear()
+		{
+			clearPixels();
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+/***************************************************************************************************************************
+ * Class:		FrameChange.java
+ * Author:		Mohammad Alali
+ *
+ * Description: An immutable record of the pixels a frame changed in a single operation. A batch of changes made between
+ * 				Frame.beginBatch() and Frame.commitBatch() is aggregated into a single record. It is not coupled with any
+ * 				GUI library.
+ *
+ * Attributes:
+ * 				Frame frame
+ * 				PixelBounds dirtyBounds
+ * 				int changeCount
+ *
+ * Methods:
+ * 				Frame getFrame()
+ * 				PixelBounds getDirtyBounds()
+ * 				int getChangeCount()
+ *
+ ***************************************************************************************************************************/
+
+package sanavesa.source;
+
+/**
+ * An immutable record of the pixels a {@link Frame} changed in a single operation.
+ * <p>
+ * All changes made inside a batch, see {@link Frame#beginBatch()}, are aggregated
+ * into one record, so listeners are notified once per operation instead of once per pixel.
+ * </p>
+ * @author Mohammad Alali
+ */
+public class FrameChange
+{
+	/** The frame whose pixels changed */
+	private final Frame frame;
+
+	/** The smallest bounds containing every changed cell */
+	private final PixelBounds dirtyBounds;
+
+	/** The amount of pixel changes aggregated into this record */
+	private final int changeCount;
+
+	/**
+	 * Creates a change record of the frame.
+	 * @param frame			the frame whose pixels changed
+	 * @param dirtyBounds	the smallest bounds containing every changed cell
+	 * @param changeCount	the amount of pixel changes aggregated into the record
+	 */
+	public FrameChange(Frame frame, PixelBounds dirtyBounds, int changeCount)
+	{
+		this.frame = frame;
+		this.dirtyBounds = dirtyBounds;
+		this.changeCount = changeCount;
+	}
+
+	/**
+	 * @return the frame whose pixels changed
+	 */
+	public Frame getFrame()
+	{
+		return frame;
+	}
+
+	/**
+	 * Cells outside of these bounds are guaranteed to be unchanged.
+	 * @return the smallest bounds containing every changed cell
+	 */
+	public PixelBounds getDirtyBounds()
+	{
+		return dirtyBounds;
+	}
+
+	/**
+	 * @return the amount of pixel changes aggregated into this record
+	 */
+	public int getChangeCount()
+	{
+		return changeCount;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "FrameChange[" + frame.getName() + ", " + dirtyBounds + ", " + changeCount + " changes]";
+	}
+}
@@ -0,0 +1,31 @@
+/***************************************************************************************************************************
+ * Interface:	FrameChangeListener.java
+ * Author:		Mohammad Alali
+ *
+ * Description: An interface that is notified after the pixels of a frame change. It receives a single aggregated record
+ * 				per operation, or per batch of operations.
+ *
+ * Attributes:
+ * 				N/A
+ *
+ * Methods:
+ * 				void frameChanged(FrameChange)
+ *
+ ***************************************************************************************************************************/
+
+package sanavesa.source;
+
+/**
+ * Listens to the pixel changes of a {@link Frame}.
+ * It is notified once per operation, or once per batch, with the aggregated {@link FrameChange}.
+ * @author Mohammad Alali
+ */
+@FunctionalInterface
+public interface FrameChangeListener
+{
+	/**
+	 * Called after the pixels of a frame have changed.
+	 * @param change	the aggregated record of the changes
+	 */
+	void frameChanged(FrameChange change);
+}
@@ -0,0 +1,216 @@
+/***************************************************************************************************************************
+ * Class:		FrameSnapshot.java
+ * Author:		Mohammad Alali
+ *
+ * Description: An immutable snapshot of a frame, taken by Frame.snapshot(). It holds a copy-on-write copy of the pixels
+ * 				along with the visibility of the frame and the colors of its layers at the time of the snapshot, so it can
+ * 				be read from any thread while the frame and its layers keep changing on the JavaFX thread.
+ *
+ * Attributes:
+ * 				String name
+ * 				boolean visibility
+ * 				int version
+ * 				PixelRaster raster
+ * 				int[][] layerArgbTables
+ * 				int appearanceVersion
+ *
+ * Methods:
+ * 				String getName()
+ * 				boolean getVisibility()
+ * 				int getVersion()
+ * 				int getWidth()
+ * 				int getHeight()
+ * 				int getAppearanceVersion()
+ * 				PixelBounds getPaintedBounds()
+ * 				void forEachArgb(PixelBounds, ArgbVisitor)
+ * 				void blendInto(PixelBounds, int[], int, int)
+ * 				int[] toArgb(int)
+ *
+ ***************************************************************************************************************************/
+
+package sanavesa.source;
+
+import java.util.Arrays;
+
+import sanavesa.util.ArgbUtil;
+
+/**
+ * An immutable snapshot of a {@link Frame}, which can be read from any thread.
+ * <p>
+ * The pixels are a copy of the frame's raster, which shares its tiles with the frame
+ * until the frame writes to them, so taking a snapshot does not copy any pixels.
+ * The colors and visibility of the layers are captured as well, so the snapshot
+ * does not read any JavaFX property once it is taken.
+ * </p>
+ * @author Mohammad Alali
+ */
+public class FrameSnapshot
+{
+	/** The name of the frame */
+	private final String name;
+
+	/** The visibility of the frame */
+	private final boolean visibility;
+
+	/** The {@link Frame#getVersion()} at the time of the snapshot */
+	private final int version;
+
+	/** The pixels of the frame, ordered by depth within each cell */
+	private final PixelRaster raster;
+
+	/** The ARGB values of each layer's color for each brightness factor step, indexed by layer index. Null for hidden layers. */
+	private final int[][] layerArgbTables;
+
+	/** The {@link Layer#getAppearanceVersion()} at the time of the snapshot */
+	private final int appearanceVersion;
+
+	/**
+	 * Creates the snapshot, on the JavaFX thread, from a copy of the frame's raster owned by the snapshot.
+	 * @param name			the name of the frame
+	 * @param visibility	the visibility of the frame
+	 * @param version		the version of the frame's pixels
+	 * @param raster		the copy of the frame's pixels, sorted by depth
+	 */
+	FrameSnapshot(String name, boolean visibility, int version, PixelRaster raster)
+	{
+		this.name = name;
+		this.visibility = visibility;
+		this.version = version;
+		this.raster = raster;
+		this.appearanceVersion = Layer.getAppearanceVersion();
+
+		// Capture the colors of the visible layers, the tables are never modified once built
+		layerArgbTables = new int[raster.getLayerCount()][];
+		for(int i = 0; i < layerArgbTables.length; i++)
+		{
+			Layer layer = raster.getLayer(i);
+			if(layer != null && layer.getVisibility())
+				layerArgbTables[i] = layer.getArgbTable();
+		}
+	}
+
+	/**
+	 * @return the name of the frame
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * @return the visibility of the frame
+	 */
+	public boolean getVisibility()
+	{
+		return visibility;
+	}
+
+	/**
+	 * @return the {@link Frame#getVersion()} at the time of the snapshot
+	 */
+	public int getVersion()
+	{
+		return version;
+	}
+
+	/**
+	 * @return the width of the frame in cells
+	 */
+	public int getWidth()
+	{
+		return raster.getWidth();
+	}
+
+	/**
+	 * @return the height of the frame in cells
+	 */
+	public int getHeight()
+	{
+		return raster.getHeight();
+	}
+
+	/**
+	 * @return the {@link Layer#getAppearanceVersion()} at the time of the snapshot
+	 */
+	public int getAppearanceVersion()
+	{
+		return appearanceVersion;
+	}
+
+	/**
+	 * @return the smallest bounds containing all of the frame's pixels, null if the frame is empty
+	 */
+	public PixelBounds getPaintedBounds()
+	{
+		return raster.getBounds();
+	}
+
+	/**
+	 * Visits the color of every pixel of a visible layer inside the region. The pixels of each
+	 * cell are visited from the lowest to the highest layer depth, so they can be blended as they come.
+	 * @param region	the cells to visit
+	 * @param visitor	called for each pixel of a visible layer
+	 */
+	public void forEachArgb(PixelBounds region, ArgbVisitor visitor)
+	{
+		raster.forEachPacked(region, (x, y, packed) ->
+		{
+			int[] table = layerArgbTables[PixelRaster.unpackLayerIndex(packed)];
+			if(table != null)
+				visitor.visit(x, y, Layer.lookupArgb(table, PixelRaster.unpackBrightness(packed)));
+		});
+	}
+
+	/**
+	 * Blends the pixels of the region onto an ARGB array, such as the pixels of an image. The cell at the top-left
+	 * of the region is blended onto <code>target[offset]</code>, and each row of the region is <code>scanlineStride</code>
+	 * values after the previous one. The visibility of the frame is not taken into account.
+	 * @param region			the cells to blend
+	 * @param target			the ARGB values to blend onto
+	 * @param offset			the index of the top-left cell of the region in the target
+	 * @param scanlineStride	the distance between two rows in the target
+	 */
+	public void blendInto(PixelBounds region, int[] target, int offset, int scanlineStride)
+	{
+		int minX = region.getMinX();
+		int minY = region.getMinY();
+		forEachArgb(region, (x, y, argb) ->
+		{
+			int index = offset + (y - minY) * scanlineStride + (x - minX);
+			target[index] = ArgbUtil.blend(argb, target[index]);
+		});
+	}
+
+	/**
+	 * Composites the whole frame over the background, one ARGB value per cell, row by row.
+	 * A hidden frame is only the background.
+	 * @param backgroundArgb	the ARGB color each cell starts as, transparent for none
+	 * @return	the composited cells, as many as the width times the height of the frame
+	 */
+	public int[] toArgb(int backgroundArgb)
+	{
+		int width = getWidth();
+		int[] values = new int[width * getHeight()];
+		Arrays.fill(values, backgroundArgb);
+
+		// Only the painted cells differ from the background
+		PixelBounds paintedBounds = getPaintedBounds();
+		if(visibility && paintedBounds != null)
+			blendInto(paintedBounds, values, paintedBounds.getMinY() * width + paintedBounds.getMinX(), width);
+
+		return values;
+	}
+
+	/** A function which is called for the color of every visible pixel in the snapshot */
+	@FunctionalInterface
+	public interface ArgbVisitor
+	{
+		/**
+		 * Called for a single pixel in the snapshot.
+		 * @param x		the x-coordinate of the pixel
+		 * @param y		the y-coordinate of the pixel
+		 * @param argb	the non-premultiplied ARGB color of the pixel
+		 */
+		void visit(int x, int y, int argb);
+	}
+}
@@ -11,8 +11,13 @@
  * 				Color color
  * 				string name
  * 				int depth
+ * 				int[] argbTable
  * 		
  * Methods:		
+ * 				Color getColor(double)
+ * 				int getArgb(double)
+ * 				static int getDepthOrderVersion()
+ * 				static int getAppearanceVersion()
  * 				void save(ObjectOutputStream)
  * 				void reset()
  * 				void load(ObjectInputStream)
@@ -34,6 +39,7 @@ import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.scene.paint.Color;
+import sanavesa.util.ArgbUtil;
 
 /**
  * A Layer represents a color layer with visibility and depth features.
@@ -65,6 +71,29 @@ public class Layer implements ISerializable
 	 */
 	private IntegerProperty depth = new SimpleIntegerProperty(this, "depth", 0);
 	
+	/**
+	 * Incremented whenever the depth of any layer changes. Storage ordered by depth
+	 * compares it against the version it was ordered by, see {@link PixelRaster#sortByDepth()}.
+	 */
+	private static volatile int depthOrderVersion = 0;
+	
+	/**
+	 * Incremented whenever the color, visibility or depth of any layer changes.
+	 * Cached images of frames compare it against the version they were drawn with.
+	 */
+	private static volatile int appearanceVersion = 0;
+	
+	/** The amount of brightness factor steps in each half of {@link #argbTable}, between 0 and 1 */
+	private static final int brightnessSteps = 1024;
+	
+	/**
+	 * The ARGB values of the layer's color for each brightness factor step in the range [-1, 1],
+	 * built on demand by {@link #getArgb(double)}. It is discarded whenever the color changes.
+	 * The steps are fine enough that every entry matches the exact color within 8-bit precision.
+	 * It is only built and discarded on the JavaFX thread, which changes the color.
+	 */
+	private transient int[] argbTable = null;
+	
 	/**
 	 * Creates a new Layer with the specified parameters.
 	 * @param newName		the name of the layer
@@ -74,10 +103,21 @@ public class Layer implements ISerializable
 	 */
 	public Layer(String newName, Color newColor, boolean isVisible, int newDepth)
 	{
+		// The lookup table is rebuilt with the next color lookup
+		color.addListener(e -> argbTable = null);
+		
 		setName(newName);
 		setColor(newColor);
 		setVisibility(isVisible);
 		setDepth(newDepth);
+		
+		// A new layer has no pixels yet, so only later changes of its depth reorder the pixels
+		depth.addListener(e -> depthOrderVersion++);
+		
+		// Likewise, only later changes alter how the pixels of the layer look
+		depth.addListener((args, oldV, newV) -> appearanceVersion++);
+		color.addListener((args, oldV, newV) -> appearanceVersion++);
+		visibility.addListener((args, oldV, newV) -> appearanceVersion++);
 	}
 	
 	/**
@@ -140,6 +180,96 @@ public class Layer implements ISerializable
 		return color;
 	}
 	
+	/**
+	 * Computes the color of the layer with the brightness factor applied onto it.
+	 * See {@link #getArgb(double)}, which looks the color up without any computation.
+	 * @param brightnessFactor	the brightness factor in the range [-1, 1], see {@link Pixel#getBrightnessFactor()}
+	 * @return the color of the layer with the brightness factor applied onto it
+	 */
+	public Color getColor(double brightnessFactor)
+	{
+		Color layerColor = getColor();
+		
+		// The lightnessFactor [-1, 1].
+		// Make lighter
+		if(brightnessFactor >= 0)
+		{
+			// New_Saturation = Saturation * (1 - lightnessGUIValue)
+			// New_Brightness = Brightness + lightnessGUIValue * (1 - Brightness)
+			return Color.hsb(
+					layerColor.getHue(),
+					layerColor.getSaturation() * (1 - brightnessFactor),
+					layerColor.getBrightness() + brightnessFactor * (1- layerColor.getBrightness()),
+					layerColor.getOpacity());
+		}
+		// Make darker
+		else
+		{
+			// New_Brightness = Brightness * (1 + lightnessGUIValue)
+			return Color.hsb(
+					layerColor.getHue(),
+					layerColor.getSaturation(),
+					layerColor.getBrightness() * (1 + brightnessFactor),
+					layerColor.getOpacity());
+		}
+	}
+	
+	/**
+	 * Looks up the color of the layer with the brightness factor applied onto it, as a non-premultiplied
+	 * ARGB value. The colors are computed once per color change, so the lookup neither computes
+	 * nor allocates anything. Must be called on the JavaFX thread, as the table is built from the color property;
+	 * other threads read the colors through a {@link FrameSnapshot}, which holds the tables taken on the JavaFX thread.
+	 * @param brightnessFactor	the brightness factor in the range [-1, 1], see {@link Pixel#getBrightnessFactor()}
+	 * @return the ARGB color of the layer with the brightness factor applied onto it
+	 */
+	public int getArgb(double brightnessFactor)
+	{
+		return lookupArgb(getArgbTable(), brightnessFactor);
+	}
+	
+	/**
+	 * The table is never modified once built, a color change replaces it with a new one.
+	 * Must be called on the JavaFX thread, after which the returned table can be read by any thread,
+	 * see {@link FrameSnapshot}.
+	 * @return the ARGB values of the layer's color for each brightness factor step
+	 */
+	int[] getArgbTable()
+	{
+		int[] table = argbTable;
+		if(table == null)
+		{
+			table = buildArgbTable();
+			argbTable = table;
+		}
+		
+		return table;
+	}
+	
+	/**
+	 * @param table				the ARGB values of a layer's color for each brightness factor step
+	 * @param brightnessFactor	the brightness factor in the range [-1, 1]
+	 * @return the ARGB color in the table closest to the brightness factor
+	 */
+	static int lookupArgb(int[] table, double brightnessFactor)
+	{
+		double bounded = Math.max(-1.0, Math.min(1.0, brightnessFactor));
+		return table[(int) Math.round((bounded + 1) * brightnessSteps)];
+	}
+	
+	/**
+	 * @return the ARGB values of the layer's color for each brightness factor step
+	 */
+	private int[] buildArgbTable()
+	{
+		int[] table = new int[2 * brightnessSteps + 1];
+		for(int step = 0; step < table.length; step++)
+		{
+			table[step] = ArgbUtil.toArgb(getColor((double) step / brightnessSteps - 1), 1.0);
+		}
+		
+		return table;
+	}
+	
 	/**
 	 * Sets the visibility of the layer (true visible, false hidden)
 	 * @param isVisible		whether the layer is visible or not
@@ -189,6 +319,22 @@ public class Layer implements ISerializable
 	{
 		return depth;
 	}
+	
+	/**
+	 * @return a version number which changes whenever the depth of any layer changes
+	 */
+	public static int getDepthOrderVersion()
+	{
+		return depthOrderVersion;
+	}
+	
+	/**
+	 * @return a version number which changes whenever the color, visibility or depth of any layer changes
+	 */
+	public static int getAppearanceVersion()
+	{
+		return appearanceVersion;
+	}
 
 	/** Export the layer's data into the file stream. */
 	@Override
@@ -3,16 +3,19 @@
  * Author:		Mohammad Alali
  * 
  * Description:	A pixel represents a single graphical unit used in Frame. It is not coupled with any GUI library. It implements 
- * 				the ISerializable interface which enables the class to be saved and loaded from an external file.
+ * 				the ISerializable interface which enables the class to be saved and loaded from an external file. A pixel 
+ * 				returned by a frame is a thin view over the frame's PixelRaster, and writes its changes through to it.
  * 	
  * Attributes: 	
  * 				int x
  * 				int y
  * 				double brightnessFactor
  * 				Layer layer
+ * 				Frame frame
  * 		
  * Methods:		
  * 				Color getColor()
+ * 				int getArgb()
  * 				void save(ObjectOutputStream)
  * 				void load(ObjectInputStream)
  * 				void reset()
@@ -36,6 +39,12 @@ import sanavesa.util.MathUtil;
  * It implements the {@link ISerializable} interface which enables
  * the class to be saved and loaded from an external file.
  * </p>
+ * <p>
+ * Frames do not store pixel objects; they store packed values in a {@link PixelRaster}.
+ * The pixels returned by a frame are thin views which write any change back to the frame.
+ * Pixel objects are compared by identity, as their position can change; the frame's set
+ * of pixels matches them by position and layer instead, see {@link Frame#getPixels()}.
+ * </p>
  * @author Mohammad Alali
  */
 public class Pixel implements ISerializable
@@ -82,6 +91,12 @@ public class Pixel implements ISerializable
 	 */
 	private double brightnessFactor = 0;
 	
+	/**
+	 * The frame this pixel is a view of, null if the pixel is not part of a frame.
+	 * Changes made to an attached pixel are written through to the frame.
+	 */
+	Frame frame = null;
+	
 	/**
 	 * Creates a new pixel with the specified parameters.
 	 * @param x					The x-position of the pixel in frame coordinates.
@@ -103,6 +118,7 @@ public class Pixel implements ISerializable
 
 	/**
 	 * Copy/Clone constructor - copies the members of <code>other</code>.
+	 * The copy is not attached to the frame of <code>other</code>.
 	 * @param other		the other pixel to copy the attributes from
 	 */
 	public Pixel(Pixel other)
@@ -116,23 +132,25 @@ public class Pixel implements ISerializable
 	/**
 	 * Sets the X position of the pixel in frame coordination.
 	 * The value will be bounded in the range [0, {@link Frame#getFrameWidth()} - 1]
+	 * The pixel is not moved if its frame already has a pixel of the same layer there.
 	 * @param newX	the new X position of the pixel
 	 */
 	public void setX(int newX)
 	{
 		// Bound the x value between [0, frameWidth - 1]
-		x = MathUtil.clamp(newX, 0, Frame.getFrameWidth() - 1);
+		move(MathUtil.clamp(newX, 0, Frame.getFrameWidth() - 1), y);
 	}
 	
 	/**
 	 * Sets the Y position of the pixel in frame coordination.
 	 * The value will be bounded in the range [0, {@link Frame#getFrameHeight()} - 1]
+	 * The pixel is not moved if its frame already has a pixel of the same layer there.
 	 * @param newY	the new Y position of the pixel
 	 */
 	public void setY(int newY)
 	{
 		// Bound the y value between [0, frameHeight - 1]
-		y = MathUtil.clamp(newY, 0, Frame.getFrameHeight() - 1);
+		move(x, MathUtil.clamp(newY, 0, Frame.getFrameHeight() - 1));
 	}
 	
 	/**
@@ -145,6 +163,10 @@ public class Pixel implements ISerializable
 	{
 		// Bound the brightness value between [-1, 1]
 		brightnessFactor = MathUtil.clamp(newBrightnessFactor, -1.0, 1.0);
+		
+		// Write the change through to the frame's storage
+		if(frame != null)
+			frame.setPixel(x, y, layer, brightnessFactor);
 	}
 	
 	/**
@@ -153,15 +175,51 @@ public class Pixel implements ISerializable
 	 * [0,0] to [frameWidth - 1, frameHeight - 1].
 	 * <p>
 	 * See {@link #setX(int)} and {@link #setY(int)} if you wish to change
-	 * X or Y only.
+	 * X or Y only. The pixel is not moved if its frame already has a pixel of the same layer there.
 	 * </p>
 	 * @param newX	the new X position of the pixel
 	 * @param newY	the new Y position of the pixel
 	 */
 	public void setPosition(int newX, int newY)
 	{
-		setX(newX);
-		setY(newY);
+		move(MathUtil.clamp(newX, 0, Frame.getFrameWidth() - 1), MathUtil.clamp(newY, 0, Frame.getFrameHeight() - 1));
+	}
+	
+	/**
+	 * Moves the pixel to the specified position. If the pixel is attached to a frame, it is moved
+	 * inside the frame as well, unless the frame already has a pixel of the same layer at the destination,
+	 * which would otherwise be lost without any way to undo it.
+	 * @param newX	the new X position of the pixel
+	 * @param newY	the new Y position of the pixel
+	 */
+	private void move(int newX, int newY)
+	{
+		if(newX == x && newY == y)
+			return;
+		
+		if(frame != null)
+		{
+			if(frame.getPixelAt(newX, newY, layer) != null)
+				return;
+			
+			// Report the move as a single change of the frame
+			frame.applyBatch(() ->
+			{
+				frame.removePixel(x, y, layer);
+				frame.setPixel(newX, newY, layer, brightnessFactor);
+			});
+		}
+		
+		x = newX;
+		y = newY;
+	}
+	
+	/**
+	 * @return the frame this pixel is a view of, null if it is not part of a frame
+	 */
+	public Frame getFrame()
+	{
+		return frame;
 	}
 	
 	/**
@@ -238,31 +296,16 @@ public class Pixel implements ISerializable
 	 */
 	public Color getColor()
 	{
-		Color color;
-		
-		// The lightnessFactor [-1, 1].
-		// Make lighter
-		if(brightnessFactor >= 0)
-		{
-			// New_Saturation = Saturation * (1 - lightnessGUIValue)
-			// New_Brightness = Brightness + lightnessGUIValue * (1 - Brightness)
-			color = Color.hsb(
-					layer.getColor().getHue(),
-					layer.getColor().getSaturation() * (1 - brightnessFactor),
-					layer.getColor().getBrightness() + brightnessFactor * (1- layer.getColor().getBrightness()),
-					layer.getColor().getOpacity());
-		}
-		// Make darker
-		else
-		{
-			// New_Brightness = Brightness * (1 + lightnessGUIValue)
-			color = Color.hsb(
-					layer.getColor().getHue(),
-					layer.getColor().getSaturation(),
-					layer.getColor().getBrightness() * (1 + brightnessFactor),
-					layer.getColor().getOpacity());
-		}
-		
-		return color;
+		return layer.getColor(brightnessFactor);
+	}
+	
+	/**
+	 * Unlike {@link #getColor()}, the color is looked up from the layer's table and nothing is allocated.
+	 * @return the color of the layer with the brightness factor applied onto it, as an ARGB value
+	 * @see Layer#getArgb(double)
+	 */
+	public int getArgb()
+	{
+		return layer.getArgb(brightnessFactor);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,192 @@
+/***************************************************************************************************************************
+ * Class:		PixelBounds.java
+ * Author:		Mohammad Alali
+ *
+ * Description: An immutable rectangle of cells in frame coordinates. Both the minimum and maximum corners are inclusive.
+ * 				It is not coupled with any GUI library.
+ *
+ * Attributes:
+ * 				int minX
+ * 				int minY
+ * 				int maxX
+ * 				int maxY
+ *
+ * Methods:
+ * 				boolean contains(int, int)
+ * 				boolean intersects(PixelBounds)
+ * 				PixelBounds union(PixelBounds)
+ * 				PixelBounds intersection(PixelBounds)
+ *
+ ***************************************************************************************************************************/
+
+package sanavesa.source;
+
+/**
+ * An immutable rectangle of cells in frame coordinates.
+ * Both the minimum and maximum corners are inclusive, so a
+ * single cell has a width and height of 1.
+ * @author Mohammad Alali
+ */
+public class PixelBounds
+{
+	/** The x-coordinate of the left most cell */
+	private final int minX;
+
+	/** The y-coordinate of the top most cell */
+	private final int minY;
+
+	/** The x-coordinate of the right most cell */
+	private final int maxX;
+
+	/** The y-coordinate of the bottom most cell */
+	private final int maxY;
+
+	/**
+	 * Creates the bounds between the two corners, inclusive.
+	 * @param minX	the x-coordinate of the left most cell
+	 * @param minY	the y-coordinate of the top most cell
+	 * @param maxX	the x-coordinate of the right most cell
+	 * @param maxY	the y-coordinate of the bottom most cell
+	 * @throws IllegalArgumentException if a maximum is less than its minimum
+	 */
+	public PixelBounds(int minX, int minY, int maxX, int maxY)
+	{
+		if(maxX < minX || maxY < minY)
+			throw new IllegalArgumentException("The maximum corner cannot be less than the minimum corner");
+
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+	}
+
+	/**
+	 * @param x		the x-coordinate of the cell
+	 * @param y		the y-coordinate of the cell
+	 * @return	the bounds of a single cell
+	 */
+	public static PixelBounds of(int x, int y)
+	{
+		return new PixelBounds(x, y, x, y);
+	}
+
+	/**
+	 * @return the x-coordinate of the left most cell
+	 */
+	public int getMinX()
+	{
+		return minX;
+	}
+
+	/**
+	 * @return the y-coordinate of the top most cell
+	 */
+	public int getMinY()
+	{
+		return minY;
+	}
+
+	/**
+	 * @return the x-coordinate of the right most cell
+	 */
+	public int getMaxX()
+	{
+		return maxX;
+	}
+
+	/**
+	 * @return the y-coordinate of the bottom most cell
+	 */
+	public int getMaxY()
+	{
+		return maxY;
+	}
+
+	/**
+	 * @return the amount of columns covered by the bounds
+	 */
+	public int getWidth()
+	{
+		return maxX - minX + 1;
+	}
+
+	/**
+	 * @return the amount of rows covered by the bounds
+	 */
+	public int getHeight()
+	{
+		return maxY - minY + 1;
+	}
+
+	/**
+	 * @param x		the x-coordinate of the cell
+	 * @param y		the y-coordinate of the cell
+	 * @return	whether the cell is inside the bounds
+	 */
+	public boolean contains(int x, int y)
+	{
+		return x >= minX && y >= minY && x <= maxX && y <= maxY;
+	}
+
+	/**
+	 * @param other		the other bounds
+	 * @return	whether the two bounds share at least one cell
+	 */
+	public boolean intersects(PixelBounds other)
+	{
+		return other != null && other.minX <= maxX && other.maxX >= minX && other.minY <= maxY && other.maxY >= minY;
+	}
+
+	/**
+	 * @param other		the other bounds, may be null
+	 * @return	the smallest bounds containing both bounds
+	 */
+	public PixelBounds union(PixelBounds other)
+	{
+		if(other == null)
+			return this;
+
+		return new PixelBounds(
+				Math.min(minX, other.minX), Math.min(minY, other.minY),
+				Math.max(maxX, other.maxX), Math.max(maxY, other.maxY));
+	}
+
+	/**
+	 * @param other		the other bounds
+	 * @return	the cells shared by both bounds, null if they do not intersect
+	 */
+	public PixelBounds intersection(PixelBounds other)
+	{
+		if(!intersects(other))
+			return null;
+
+		return new PixelBounds(
+				Math.max(minX, other.minX), Math.max(minY, other.minY),
+				Math.min(maxX, other.maxX), Math.min(maxY, other.maxY));
+	}
+
+	@Override
+	public boolean equals(Object other)
+	{
+		if(this == other)
+			return true;
+
+		if(!(other instanceof PixelBounds))
+			return false;
+
+		PixelBounds b = (PixelBounds) other;
+		return minX == b.minX && minY == b.minY && maxX == b.maxX && maxY == b.maxY;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return 31 * (31 * (31 * minX + minY) + maxX) + maxY;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "PixelBounds[" + minX + ", " + minY + " -> " + maxX + ", " + maxY + "]";
+	}
+}
@@ -0,0 +1,1397 @@
+/***************************************************************************************************************************
+ * Class:		PixelRaster.java
+ * Author:		Mohammad Alali
+ *
+ * Description: The storage engine behind a Frame. Instead of keeping one heap object per drawn cell, the raster stores
+ * 				every cell as a packed int (layer index + quantized brightness) inside primitive arrays. The raster is split
+ * 				into square tiles which are only allocated where pixels exist, so very large frames only cost memory and
+ * 				time for their painted area. A cell can hold several layers, each in its own slot plane of the tile.
+ * 				Copies of a raster share their tiles, and a tile is only copied when one of the rasters first writes to it.
+ * 				The raster also indexes which tiles hold each layer, so per-layer operations only visit those tiles.
+ * 				It is not coupled with any GUI library.
+ *
+ * Attributes:
+ * 				int width
+ * 				int height
+ * 				Tile[] tiles
+ * 				Layer[] layers
+ * 				int size
+ *
+ * Methods:
+ * 				boolean set(int, int, Layer, double)
+ * 				boolean remove(int, int, Layer)
+ * 				int find(int, int, Layer)
+ * 				PixelRaster copy()
+ * 				PixelBounds getBounds()
+ * 				void resize(int, int)
+ * 				void resize(int, int, int, int)
+ * 				void shift(int, int)
+ * 				void forEach(PixelVisitor)
+ * 				void forEach(PixelBounds, PixelVisitor)
+ * 				void forEachPacked(PixelBounds, PackedPixelVisitor)
+ * 				int count(Layer)
+ * 				void forEach(Layer, PixelVisitor)
+ * 				int removeAll(Layer)
+ * 				int replaceLayer(Layer, Layer)
+ * 				void sortByDepth()
+ *
+ ***************************************************************************************************************************/
+
+package sanavesa.source;
+
+import java.util.BitSet;
+import java.util.ConcurrentModificationException;
+import java.util.IdentityHashMap;
+import java.util.NoSuchElementException;
+
+/**
+ * The storage engine behind a {@link Frame}.
+ * <p>
+ * Every drawn cell is stored as a packed int inside primitive arrays,
+ * rather than as a {@link Pixel} object. A packed int holds the index of the
+ * pixel's layer in {@link #layers} (upper 16 bits, offset by one so that 0 means empty)
+ * and the brightness factor quantized to a signed 16-bit value (lower 16 bits).
+ * </p>
+ * <p>
+ * The raster is split into tiles of {@link #tileSize} by {@link #tileSize} cells.
+ * A tile is only allocated once a pixel is stored in it, and is released again once
+ * it becomes empty. Iteration, bounds queries, resizing and shifting only visit the
+ * allocated tiles, so their cost scales with the painted area rather than the frame size.
+ * </p>
+ * <p>
+ * Tiles are copy-on-write. {@link #copy()} shares the tile directory and every tile
+ * with the copy, and a raster only writes to the tiles it owns. The first write to a
+ * shared tile copies that tile alone, so rasters copied from each other only use
+ * memory for the tiles in which they differ.
+ * </p>
+ * <p>
+ * A cell can contain one pixel per layer. The pixels of a cell are kept in
+ * consecutive slot planes of its tile, starting at slot 0, with no gaps in between.
+ * The slots of a cell are ordered by the depth of their layers, lowest first, so
+ * compositing is a single walk over the slots without sorting. When the depths of the
+ * layers change, {@link #sortByDepth()} reorders the slots of the cells holding several pixels.
+ * The raster doubles as the coordinate index of the frame: looking up the pixels
+ * of a cell only touches that cell's slots, regardless of how many pixels are stored.
+ * </p>
+ * <p>
+ * The raster also keeps a reverse index from every layer to the tiles which contain it,
+ * along with the amount of pixels of each layer. Counting, visiting, removing or
+ * replacing the pixels of a layer only touches the tiles which contain that layer.
+ * </p>
+ * @author Mohammad Alali
+ */
+public class PixelRaster
+{
+	/** The packed value of an empty slot */
+	public static final int emptyPixel = 0;
+
+	/** The width and height of a tile in cells */
+	public static final int tileSize = 32;
+
+	/** The amount of bits to shift a coordinate by to get its tile coordinate */
+	private static final int tileShift = 5;
+
+	/** The mask which gives the coordinate of a cell inside its tile */
+	private static final int tileMask = tileSize - 1;
+
+	/** The amount of cells in a single tile */
+	private static final int tileArea = tileSize * tileSize;
+
+	/** The scale used to quantize the brightness factor [-1, 1] into a signed 16-bit value */
+	private static final double brightnessScale = Short.MAX_VALUE;
+
+	/** The maximum amount of distinct layers a single raster can reference */
+	private static final int maxLayers = 0xFFFF;
+
+	/** The width of the raster in cells */
+	private int width = 0;
+
+	/** The height of the raster in cells */
+	private int height = 0;
+
+	/** The amount of tile columns needed to cover {@link #width} */
+	private int tilesX = 0;
+
+	/** The amount of tile rows needed to cover {@link #height} */
+	private int tilesY = 0;
+
+	/**
+	 * The tile directory of the raster, row by row. <code>tiles[ty * tilesX + tx]</code>
+	 * is the tile covering the cells [tx * tileSize, ty * tileSize] to
+	 * [tx * tileSize + tileSize - 1, ty * tileSize + tileSize - 1], or null if they are all empty.
+	 */
+	private Tile[] tiles = new Tile[0];
+
+	/** Whether {@link #tiles} is shared with a copy of this raster, and must be copied before it is changed */
+	private boolean sharedDirectory = false;
+
+	/**
+	 * The identity of this raster as the owner of tiles. The raster may only write
+	 * to the tiles it owns; any other tile is shared and is copied on the first write.
+	 */
+	private Object owner = new Object();
+
+	/** The layers referenced by the packed pixels, indexed by their layer index */
+	private Layer[] layers = new Layer[4];
+
+	/** The amount of used entries in {@link #layers} */
+	private int layerCount = 0;
+
+	/** Maps every layer in {@link #layers} to its layer index, for constant time lookups */
+	private IdentityHashMap<Layer, Integer> layerIndices = new IdentityHashMap<Layer, Integer>();
+
+	/** The amount of pixels of each layer, indexed by their layer index */
+	private int[] layerSizes = new int[4];
+
+	/** The indices of the tiles which contain each layer, indexed by their layer index */
+	private BitSet[] layerTiles = new BitSet[4];
+
+	/** The amount of pixels stored in the raster */
+	private int size = 0;
+
+	/** The amount of allocated tiles in {@link #tiles} */
+	private int tileCount = 0;
+
+	/** The amount of structural modifications, used to detect concurrent modification while iterating */
+	private int modCount = 0;
+
+	/**
+	 * The {@link Layer#getDepthOrderVersion()} by which the slots of every cell are ordered.
+	 * If it differs from the current version, the slots must be reordered by {@link #sortByDepth()}.
+	 */
+	private int sortedDepthVersion = Layer.getDepthOrderVersion();
+
+	/**
+	 * Creates an empty raster with the specified size.
+	 * @param width		the width of the raster in cells
+	 * @param height	the height of the raster in cells
+	 */
+	public PixelRaster(int width, int height)
+	{
+		this.width = Math.max(width, 0);
+		this.height = Math.max(height, 0);
+		tilesX = tilesFor(this.width);
+		tilesY = tilesFor(this.height);
+		tiles = new Tile[tilesX * tilesY];
+	}
+
+	/**
+	 * Creates a copy of the raster in constant time with respect to the amount of pixels.
+	 * The copy shares all of its tiles with this raster. Whichever raster writes to a shared
+	 * tile first, copies that tile, so neither raster sees the changes of the other.
+	 * @return	a copy of the raster
+	 */
+	public PixelRaster copy()
+	{
+		PixelRaster copy = new PixelRaster(0, 0);
+		copy.width = width;
+		copy.height = height;
+		copy.tilesX = tilesX;
+		copy.tilesY = tilesY;
+		copy.tiles = tiles;
+		copy.layers = layers.clone();
+		copy.layerCount = layerCount;
+		copy.layerIndices = new IdentityHashMap<Layer, Integer>(layerIndices);
+		copy.layerSizes = layerSizes.clone();
+		copy.layerTiles = new BitSet[layerTiles.length];
+		for(int i = 0; i < layerCount; i++)
+			copy.layerTiles[i] = (BitSet) layerTiles[i].clone();
+		copy.size = size;
+		copy.tileCount = tileCount;
+		copy.sortedDepthVersion = sortedDepthVersion;
+
+		// Both rasters now refer to the same directory
+		copy.sharedDirectory = true;
+		sharedDirectory = true;
+
+		// This raster gives up the ownership of its tiles, as they are now shared with the copy
+		owner = new Object();
+
+		return copy;
+	}
+
+	/**
+	 * Packs the layer index and brightness factor into a single int.
+	 * @param layerIndex		the index of the layer in the raster
+	 * @param brightnessFactor	the brightness factor in the range [-1, 1]
+	 * @return	the packed pixel
+	 */
+	public static int pack(int layerIndex, double brightnessFactor)
+	{
+		return ((layerIndex + 1) << 16) | (quantizeBrightness(brightnessFactor) & 0xFFFF);
+	}
+
+	/**
+	 * @param packed	a packed pixel
+	 * @return	the layer index of the packed pixel, -1 if empty
+	 */
+	public static int unpackLayerIndex(int packed)
+	{
+		return (packed >>> 16) - 1;
+	}
+
+	/**
+	 * @param packed	a packed pixel
+	 * @return	the quantized brightness of the packed pixel, a value in the range [-32767, 32767]
+	 */
+	public static short unpackBrightnessCode(int packed)
+	{
+		return (short) packed;
+	}
+
+	/**
+	 * @param packed	a packed pixel
+	 * @return	the brightness factor of the packed pixel, a value in the range [-1, 1]
+	 */
+	public static double unpackBrightness(int packed)
+	{
+		return (short) packed / brightnessScale;
+	}
+
+	/**
+	 * Quantizes the brightness factor into a signed 16-bit value.
+	 * A brightness factor of 0 is always stored exactly.
+	 * @param brightnessFactor	the brightness factor, will be bounded in [-1, 1]
+	 * @return	the quantized brightness
+	 */
+	public static short quantizeBrightness(double brightnessFactor)
+	{
+		double bounded = Math.max(-1.0, Math.min(1.0, brightnessFactor));
+		return (short) Math.round(bounded * brightnessScale);
+	}
+
+	/**
+	 * @return the width of the raster in cells
+	 */
+	public int getWidth()
+	{
+		return width;
+	}
+
+	/**
+	 * @return the height of the raster in cells
+	 */
+	public int getHeight()
+	{
+		return height;
+	}
+
+	/**
+	 * @return the amount of pixels stored in the raster
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return the amount of tiles currently allocated
+	 */
+	public int getTileCount()
+	{
+		return tileCount;
+	}
+
+	/**
+	 * @param layerIndex	the index of the layer in the raster
+	 * @return the layer with the specified index
+	 */
+	public Layer getLayer(int layerIndex)
+	{
+		return layers[layerIndex];
+	}
+
+	/**
+	 * @param x		the x-coordinate of the cell
+	 * @param y		the y-coordinate of the cell
+	 * @return	whether the cell is inside the raster
+	 */
+	public boolean contains(int x, int y)
+	{
+		return x >= 0 && y >= 0 && x < width && y < height;
+	}
+
+	/**
+	 * @param slot	the slot plane
+	 * @param x		the x-coordinate of the cell
+	 * @param y		the y-coordinate of the cell
+	 * @return	the packed pixel at the slot of the cell, {@link #emptyPixel} if nothing is there
+	 */
+	public int get(int slot, int x, int y)
+	{
+		if(!contains(x, y) || slot < 0)
+			return emptyPixel;
+
+		Tile tile = tiles[tileIndexOf(x, y)];
+		if(tile == null || slot >= tile.planes.length)
+			return emptyPixel;
+
+		return tile.planes[slot][cellIndexOf(x, y)];
+	}
+
+	/**
+	 * @param x		the x-coordinate of the cell
+	 * @param y		the y-coordinate of the cell
+	 * @return	the amount of pixels in the cell
+	 */
+	public int countAt(int x, int y)
+	{
+		if(!contains(x, y))
+			return 0;
+
+		Tile tile = tiles[tileIndexOf(x, y)];
+		if(tile == null)
+			return 0;
+
+		int cell = cellIndexOf(x, y);
+		int slot = 0;
+		while(slot < tile.planes.length && tile.planes[slot][cell] != emptyPixel)
+			slot++;
+
+		return slot;
+	}
+
+	/**
+	 * Finds the slot of the pixel with the specified layer in the cell.
+	 * @param x		the x-coordinate of the cell
+	 * @param y		the y-coordinate of the cell
+	 * @param layer	the layer of the pixel
+	 * @return	the slot of the pixel, -1 if the cell has no pixel with that layer
+	 */
+	public int find(int x, int y, Layer layer)
+	{
+		if(!contains(x, y))
+			return -1;
+
+		int layerIndex = indexOfLayer(layer);
+		if(layerIndex < 0)
+			return -1;
+
+		Tile tile = tiles[tileIndexOf(x, y)];
+		if(tile == null)
+			return -1;
+
+		int cell = cellIndexOf(x, y);
+		for(int slot = 0; slot < tile.planes.length; slot++)
+		{
+			int packed = tile.planes[slot][cell];
+			if(packed == emptyPixel)
+				break;
+
+			if(unpackLayerIndex(packed) == layerIndex)
+				return slot;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Stores a pixel in the raster. If the cell already has a pixel with the same layer,
+	 * its brightness factor is updated instead.
+	 * @param x					the x-coordinate of the cell
+	 * @param y					the y-coordinate of the cell
+	 * @param layer				the layer of the pixel
+	 * @param brightnessFactor	the brightness factor of the pixel
+	 * @return	true if a new pixel was added, false if an existing one was updated or the cell is out of bounds
+	 */
+	public boolean set(int x, int y, Layer layer, double brightnessFactor)
+	{
+		if(!contains(x, y) || layer == null)
+			return false;
+
+		int layerIndex = registerLayer(layer);
+		int packed = pack(layerIndex, brightnessFactor);
+		int cell = cellIndexOf(x, y);
+
+		// Allocate the tile the first time a pixel is stored in it
+		int tileIndex = tileIndexOf(x, y);
+		Tile tile = tiles[tileIndex];
+		if(tile == null)
+		{
+			tile = new Tile(owner);
+			writableDirectory()[tileIndex] = tile;
+			tileCount++;
+		}
+
+		// Look for the layer in the occupied slots, or the first empty slot
+		int slot = 0;
+		for(; slot < tile.planes.length; slot++)
+		{
+			int existing = tile.planes[slot][cell];
+			if(existing == emptyPixel)
+				break;
+
+			if(unpackLayerIndex(existing) == layerIndex)
+			{
+				// Avoid copying a shared tile if nothing changes
+				if(existing != packed)
+					writableTile(tileIndex).planes[slot][cell] = packed;
+
+				return false;
+			}
+		}
+
+		// Allocate a new slot plane if all of them are occupied at this cell
+		tile = writableTile(tileIndex);
+		if(slot == tile.planes.length)
+			tile.addPlane();
+
+		// Keep the slots ordered by depth, after any pixel of the same depth
+		if(sortedDepthVersion == Layer.getDepthOrderVersion())
+		{
+			int depth = layer.getDepth();
+			while(slot > 0 && layers[unpackLayerIndex(tile.planes[slot - 1][cell])].getDepth() > depth)
+			{
+				tile.planes[slot][cell] = tile.planes[slot - 1][cell];
+				slot--;
+			}
+		}
+
+		tile.planes[slot][cell] = packed;
+		tile.size++;
+		size++;
+		indexLayer(tile, tileIndex, layerIndex, 1);
+		modCount++;
+		return true;
+	}
+
+	/**
+	 * Removes the pixel with the specified layer from the cell.
+	 * @param x		the x-coordinate of the cell
+	 * @param y		the y-coordinate of the cell
+	 * @param layer	the layer of the pixel
+	 * @return	true if a pixel was removed
+	 */
+	public boolean remove(int x, int y, Layer layer)
+	{
+		int slot = find(x, y, layer);
+		if(slot < 0)
+			return false;
+
+		removeSlot(tileIndexOf(x, y), cellIndexOf(x, y), slot);
+		return true;
+	}
+
+	/** Removes all the pixels from the raster and releases the tiles. */
+	public void clear()
+	{
+		tiles = new Tile[tilesX * tilesY];
+		sharedDirectory = false;
+		layers = new Layer[4];
+		layerCount = 0;
+		layerIndices.clear();
+		layerSizes = new int[4];
+		layerTiles = new BitSet[4];
+		size = 0;
+		tileCount = 0;
+		sortedDepthVersion = Layer.getDepthOrderVersion();
+		modCount++;
+	}
+
+	/**
+	 * @param layer		the layer to count
+	 * @return	the amount of pixels of the layer in the raster
+	 */
+	public int count(Layer layer)
+	{
+		int layerIndex = indexOfLayer(layer);
+		return layerIndex < 0 ? 0 : layerSizes[layerIndex];
+	}
+
+	/**
+	 * Visits every pixel of the layer. Only the tiles which contain the layer are visited.
+	 * @param layer		the layer of the pixels to visit
+	 * @param visitor	the visitor which is called for each pixel
+	 */
+	public void forEach(Layer layer, PixelVisitor visitor)
+	{
+		int layerIndex = indexOfLayer(layer);
+		if(layerIndex < 0)
+			return;
+
+		BitSet tileIndices = layerTiles[layerIndex];
+		for(int tileIndex = tileIndices.nextSetBit(0); tileIndex >= 0; tileIndex = tileIndices.nextSetBit(tileIndex + 1))
+		{
+			Tile tile = tiles[tileIndex];
+			int originX = (tileIndex % tilesX) << tileShift;
+			int originY = (tileIndex / tilesX) << tileShift;
+
+			for(int cell = 0; cell < tileArea; cell++)
+			{
+				for(int slot = 0; slot < tile.planes.length; slot++)
+				{
+					int packed = tile.planes[slot][cell];
+					if(packed == emptyPixel)
+						break;
+
+					if(unpackLayerIndex(packed) == layerIndex)
+					{
+						visitor.visit(originX + (cell & tileMask), originY + (cell >>> tileShift), layer, unpackBrightness(packed));
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes every pixel of the layer. Only the tiles which contain the layer are visited.
+	 * @param layer		the layer of the pixels to remove
+	 * @return	the amount of pixels removed
+	 */
+	public int removeAll(Layer layer)
+	{
+		int layerIndex = indexOfLayer(layer);
+		if(layerIndex < 0 || layerSizes[layerIndex] == 0)
+			return 0;
+
+		int removed = layerSizes[layerIndex];
+		BitSet tileIndices = layerTiles[layerIndex];
+		for(int tileIndex = tileIndices.nextSetBit(0); tileIndex >= 0; tileIndex = tileIndices.nextSetBit(tileIndex + 1))
+		{
+			Tile tile = writableTile(tileIndex);
+			for(int cell = 0; cell < tileArea; cell++)
+			{
+				// Keep the pixels of the other layers, packed towards slot 0
+				int kept = 0;
+				for(int slot = 0; slot < tile.planes.length && tile.planes[slot][cell] != emptyPixel; slot++)
+				{
+					int packed = tile.planes[slot][cell];
+					if(unpackLayerIndex(packed) != layerIndex)
+						tile.planes[kept++][cell] = packed;
+					else
+						tile.size--;
+				}
+
+				for(int slot = kept; slot < tile.planes.length && tile.planes[slot][cell] != emptyPixel; slot++)
+					tile.planes[slot][cell] = emptyPixel;
+			}
+
+			tile.layerCounts[layerIndex] = 0;
+			if(tile.size == 0)
+			{
+				writableDirectory()[tileIndex] = null;
+				tileCount--;
+			}
+		}
+
+		tileIndices.clear();
+		layerSizes[layerIndex] = 0;
+		size -= removed;
+		modCount++;
+		return removed;
+	}
+
+	/**
+	 * Moves every pixel of a layer onto another layer, keeping their brightness factors.
+	 * If a cell already has a pixel of the new layer, it is replaced. Only the tiles which
+	 * contain the old layer are visited.
+	 * @param oldLayer	the layer of the pixels to move
+	 * @param newLayer	the layer the pixels are moved to
+	 * @return	the amount of pixels moved
+	 */
+	public int replaceLayer(Layer oldLayer, Layer newLayer)
+	{
+		if(oldLayer == newLayer || newLayer == null || count(oldLayer) == 0)
+			return 0;
+
+		// Record the pixels of the old layer before removing them
+		int moved = count(oldLayer);
+		int[] xs = new int[moved], ys = new int[moved];
+		double[] brightnessFactors = new double[moved];
+		int[] next = new int[1];
+		forEach(oldLayer, (x, y, layer, brightnessFactor) ->
+		{
+			xs[next[0]] = x;
+			ys[next[0]] = y;
+			brightnessFactors[next[0]] = brightnessFactor;
+			next[0]++;
+		});
+
+		removeAll(oldLayer);
+		for(int i = 0; i < moved; i++)
+			set(xs[i], ys[i], newLayer, brightnessFactors[i]);
+
+		return moved;
+	}
+
+	/**
+	 * Reorders the slots of every cell by the current depth of their layers, lowest first.
+	 * Only cells holding more than one pixel are inspected, and only tiles whose cells
+	 * are out of order are copied. Does nothing if the depths have not changed since the
+	 * last call, so it is cheap to call before every walk over the pixels.
+	 */
+	public void sortByDepth()
+	{
+		int version = Layer.getDepthOrderVersion();
+		if(sortedDepthVersion == version)
+			return;
+
+		// Read the depth of each layer once
+		int[] depths = new int[layerCount];
+		for(int i = 0; i < layerCount; i++)
+			depths[i] = (layers[i] == null) ? 0 : layers[i].getDepth();
+
+		boolean changed = false;
+		for(int tileIndex = 0; tileIndex < tiles.length; tileIndex++)
+		{
+			Tile tile = tiles[tileIndex];
+			if(tile == null || tile.planes.length < 2)
+				continue;
+
+			for(int cell = 0; cell < tileArea; cell++)
+			{
+				if(tile.planes[1][cell] == emptyPixel)
+					continue;
+
+				// Insertion sort, which keeps pixels of the same depth in their current order
+				for(int slot = 1; slot < tile.planes.length && tile.planes[slot][cell] != emptyPixel; slot++)
+				{
+					int packed = tile.planes[slot][cell];
+					int depth = depths[unpackLayerIndex(packed)];
+					int target = slot;
+					while(target > 0 && depths[unpackLayerIndex(tile.planes[target - 1][cell])] > depth)
+						target--;
+
+					if(target == slot)
+						continue;
+
+					// Only copy a shared tile once it is known to be out of order
+					tile = writableTile(tileIndex);
+					for(int i = slot; i > target; i--)
+						tile.planes[i][cell] = tile.planes[i - 1][cell];
+
+					tile.planes[target][cell] = packed;
+					changed = true;
+				}
+			}
+		}
+
+		sortedDepthVersion = version;
+		if(changed)
+			modCount++;
+	}
+
+	/**
+	 * Computes the smallest bounds containing every pixel in the raster.
+	 * Only the allocated tiles are inspected, and tiles which lie completely
+	 * inside the bounds found so far are skipped.
+	 * @return	the bounds of the painted cells, null if the raster is empty
+	 */
+	public PixelBounds getBounds()
+	{
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+
+		for(int tileIndex = 0; tileIndex < tiles.length; tileIndex++)
+		{
+			Tile tile = tiles[tileIndex];
+			if(tile == null)
+				continue;
+
+			int originX = (tileIndex % tilesX) << tileShift;
+			int originY = (tileIndex / tilesX) << tileShift;
+
+			// A tile inside the current bounds cannot grow them
+			if(originX >= minX && originY >= minY && originX + tileMask <= maxX && originY + tileMask <= maxY)
+				continue;
+
+			int[] firstPlane = tile.planes[0];
+			for(int cell = 0; cell < tileArea; cell++)
+			{
+				if(firstPlane[cell] == emptyPixel)
+					continue;
+
+				int x = originX + (cell & tileMask);
+				int y = originY + (cell >>> tileShift);
+				minX = Math.min(minX, x);
+				minY = Math.min(minY, y);
+				maxX = Math.max(maxX, x);
+				maxY = Math.max(maxY, y);
+			}
+		}
+
+		if(maxX < minX)
+			return null;
+
+		return new PixelBounds(minX, minY, maxX, maxY);
+	}
+
+	/**
+	 * Resizes the raster. The top-left corner is kept in place, and all pixels outside
+	 * of the new boundary are removed. Tiles which stay inside the raster are kept as is.
+	 * @param newWidth	the new width of the raster
+	 * @param newHeight	the new height of the raster
+	 */
+	public void resize(int newWidth, int newHeight)
+	{
+		newWidth = Math.max(newWidth, 0);
+		newHeight = Math.max(newHeight, 0);
+
+		if(newWidth == width && newHeight == height)
+			return;
+
+		relayout(newWidth, newHeight, 0, 0);
+	}
+
+	/**
+	 * Resizes the raster, shifting all pixels by the specified amount. All pixels outside of the
+	 * new boundary are removed. When the offset is a whole amount of tiles, the tiles are moved
+	 * instead of their pixels.
+	 * @param newWidth	the new width of the raster
+	 * @param newHeight	the new height of the raster
+	 * @param offsetX	the amount of horizontal shift
+	 * @param offsetY	the amount of vertical shift
+	 */
+	public void resize(int newWidth, int newHeight, int offsetX, int offsetY)
+	{
+		newWidth = Math.max(newWidth, 0);
+		newHeight = Math.max(newHeight, 0);
+
+		if(newWidth == width && newHeight == height && offsetX == 0 && offsetY == 0)
+			return;
+
+		relayout(newWidth, newHeight, offsetX, offsetY);
+	}
+
+	/**
+	 * Shifts all the pixels by the specified amount. Pixels that end up outside of the raster are removed.
+	 * @param shiftX	the amount of horizontal shift
+	 * @param shiftY	the amount of vertical shift
+	 */
+	public void shift(int shiftX, int shiftY)
+	{
+		if(shiftX == 0 && shiftY == 0)
+			return;
+
+		relayout(width, height, shiftX, shiftY);
+	}
+
+	/**
+	 * Visits every pixel in the raster, tile by tile, then row by row and slot by slot inside each tile.
+	 * @param visitor	the visitor which is called for each pixel
+	 */
+	public void forEach(PixelVisitor visitor)
+	{
+		if(width > 0 && height > 0)
+			forEach(new PixelBounds(0, 0, width - 1, height - 1), visitor);
+	}
+
+	/**
+	 * Visits every pixel inside the region. Only the tiles overlapping the region are visited.
+	 * @param region	the cells to visit
+	 * @param visitor	the visitor which is called for each pixel
+	 */
+	public void forEach(PixelBounds region, PixelVisitor visitor)
+	{
+		forEachPacked(region, (x, y, packed) -> visitor.visit(x, y, layers[unpackLayerIndex(packed)], unpackBrightness(packed)));
+	}
+
+	/**
+	 * Visits the packed value of every pixel inside the region, in the same order as {@link #forEach(PixelBounds, PixelVisitor)}.
+	 * The layer of a packed value is looked up with {@link #getLayer(int)}.
+	 * @param region	the cells to visit
+	 * @param visitor	the visitor which is called for each pixel
+	 */
+	void forEachPacked(PixelBounds region, PackedPixelVisitor visitor)
+	{
+		int minX = Math.max(region.getMinX(), 0);
+		int minY = Math.max(region.getMinY(), 0);
+		int maxX = Math.min(region.getMaxX(), width - 1);
+		int maxY = Math.min(region.getMaxY(), height - 1);
+		if(maxX < minX || maxY < minY)
+			return;
+
+		for(int ty = minY >> tileShift; ty <= maxY >> tileShift; ty++)
+		{
+			for(int tx = minX >> tileShift; tx <= maxX >> tileShift; tx++)
+			{
+				Tile tile = tiles[ty * tilesX + tx];
+				if(tile == null)
+					continue;
+
+				// Clip the region to the tile, in tile coordinates
+				int originX = tx << tileShift;
+				int originY = ty << tileShift;
+				int fromX = Math.max(minX - originX, 0);
+				int fromY = Math.max(minY - originY, 0);
+				int toX = Math.min(maxX - originX, tileMask);
+				int toY = Math.min(maxY - originY, tileMask);
+
+				for(int ly = fromY; ly <= toY; ly++)
+				{
+					for(int lx = fromX; lx <= toX; lx++)
+					{
+						int cell = (ly << tileShift) | lx;
+						for(int slot = 0; slot < tile.planes.length; slot++)
+						{
+							int packed = tile.planes[slot][cell];
+							if(packed == emptyPixel)
+								break;
+
+							visitor.visit(originX + lx, originY + ly, packed);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return a cursor which walks through all the pixels in the raster
+	 */
+	public Cursor cursor()
+	{
+		return new Cursor();
+	}
+
+	/**
+	 * @param length	the length in cells
+	 * @return the amount of tiles needed to cover the length
+	 */
+	private static int tilesFor(int length)
+	{
+		return (length + tileMask) >> tileShift;
+	}
+
+	/**
+	 * @return the index in {@link #tiles} of the tile containing the cell
+	 */
+	private int tileIndexOf(int x, int y)
+	{
+		return (y >> tileShift) * tilesX + (x >> tileShift);
+	}
+
+	/**
+	 * @return the index of the cell inside its tile
+	 */
+	private static int cellIndexOf(int x, int y)
+	{
+		return ((y & tileMask) << tileShift) | (x & tileMask);
+	}
+
+	/**
+	 * @param layer		the layer to look for
+	 * @return the index of the layer in the raster, -1 if the raster never referenced it
+	 */
+	private int indexOfLayer(Layer layer)
+	{
+		Integer layerIndex = layerIndices.get(layer);
+		return layerIndex == null ? -1 : layerIndex;
+	}
+
+	/**
+	 * @param layer		the layer to register
+	 * @return the index of the layer in the raster, registering it if necessary
+	 */
+	private int registerLayer(Layer layer)
+	{
+		int layerIndex = indexOfLayer(layer);
+		if(layerIndex >= 0)
+			return layerIndex;
+
+		if(layerCount == maxLayers)
+			throw new IllegalStateException("A frame cannot reference more than " + maxLayers + " layers");
+
+		if(layerCount == layers.length)
+		{
+			Layer[] grown = new Layer[layers.length * 2];
+			System.arraycopy(layers, 0, grown, 0, layerCount);
+			layers = grown;
+		}
+
+		if(layerCount == layerSizes.length)
+		{
+			int[] grownSizes = new int[layerSizes.length * 2];
+			System.arraycopy(layerSizes, 0, grownSizes, 0, layerCount);
+			layerSizes = grownSizes;
+
+			BitSet[] grownTiles = new BitSet[layerTiles.length * 2];
+			System.arraycopy(layerTiles, 0, grownTiles, 0, layerCount);
+			layerTiles = grownTiles;
+		}
+
+		layers[layerCount] = layer;
+		layerIndices.put(layer, layerCount);
+		layerTiles[layerCount] = new BitSet();
+		return layerCount++;
+	}
+
+	/**
+	 * Updates the layer index after pixels of a layer were added to or removed from a tile.
+	 * @param tile			the tile that changed, owned by this raster
+	 * @param tileIndex		the index of the tile
+	 * @param layerIndex	the index of the layer
+	 * @param delta			the change in the amount of pixels of the layer in the tile
+	 */
+	private void indexLayer(Tile tile, int tileIndex, int layerIndex, int delta)
+	{
+		int tileLayerCount = tile.addLayerCount(layerIndex, delta);
+		layerSizes[layerIndex] += delta;
+
+		if(tileLayerCount == 0)
+			layerTiles[layerIndex].clear(tileIndex);
+		else if(tileLayerCount == delta)
+			layerTiles[layerIndex].set(tileIndex);
+	}
+
+	/** Rebuilds the layer index from the layer counts of the tiles, used after the tile directory is rebuilt */
+	private void reindexLayers()
+	{
+		for(int layerIndex = 0; layerIndex < layerCount; layerIndex++)
+		{
+			layerSizes[layerIndex] = 0;
+			layerTiles[layerIndex].clear();
+		}
+
+		for(int tileIndex = 0; tileIndex < tiles.length; tileIndex++)
+		{
+			Tile tile = tiles[tileIndex];
+			if(tile == null)
+				continue;
+
+			for(int layerIndex = 0; layerIndex < tile.layerCounts.length; layerIndex++)
+			{
+				if(tile.layerCounts[layerIndex] > 0)
+				{
+					layerSizes[layerIndex] += tile.layerCounts[layerIndex];
+					layerTiles[layerIndex].set(tileIndex);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes the pixel at the slot of the cell, moving the pixels
+	 * in the higher slots down by one to keep the slots packed.
+	 * The tile is released if it becomes empty.
+	 * @param tileIndex	the index of the tile
+	 * @param cell		the index of the cell inside the tile
+	 * @param slot		the slot of the pixel
+	 */
+	private void removeSlot(int tileIndex, int cell, int slot)
+	{
+		Tile tile = writableTile(tileIndex);
+		int layerIndex = unpackLayerIndex(tile.planes[slot][cell]);
+		int last = slot;
+		while(last + 1 < tile.planes.length && tile.planes[last + 1][cell] != emptyPixel)
+		{
+			tile.planes[last][cell] = tile.planes[last + 1][cell];
+			last++;
+		}
+
+		tile.planes[last][cell] = emptyPixel;
+		tile.size--;
+		size--;
+		indexLayer(tile, tileIndex, layerIndex, -1);
+		modCount++;
+
+		if(tile.size == 0)
+		{
+			writableDirectory()[tileIndex] = null;
+			tileCount--;
+		}
+	}
+
+	/**
+	 * Makes sure the tile directory is not shared with a copy of this raster.
+	 * @return the tile directory, which can be written to
+	 */
+	private Tile[] writableDirectory()
+	{
+		if(sharedDirectory)
+		{
+			tiles = tiles.clone();
+			sharedDirectory = false;
+		}
+
+		return tiles;
+	}
+
+	/**
+	 * Makes sure the tile is owned by this raster, copying it if it is shared.
+	 * @param tileIndex		the index of an allocated tile
+	 * @return the tile, which can be written to
+	 */
+	private Tile writableTile(int tileIndex)
+	{
+		Tile tile = tiles[tileIndex];
+		if(tile.owner != owner)
+		{
+			tile = new Tile(tile, owner);
+			writableDirectory()[tileIndex] = tile;
+		}
+
+		return tile;
+	}
+
+	/**
+	 * Moves the pixels into a freshly allocated tile directory of the given size,
+	 * offsetting every pixel by the given amount. Pixels falling outside are dropped.
+	 * <p>
+	 * When the offset is a whole amount of tiles, the tiles themselves are moved and only
+	 * the tiles on the new right and bottom edges are clipped. Otherwise the pixels of the
+	 * allocated tiles are copied cell by cell.
+	 * </p>
+	 */
+	private void relayout(int newWidth, int newHeight, int offsetX, int offsetY)
+	{
+		int newTilesX = tilesFor(newWidth);
+		int newTilesY = tilesFor(newHeight);
+		Tile[] newTiles = new Tile[newTilesX * newTilesY];
+		boolean aligned = (offsetX & tileMask) == 0 && (offsetY & tileMask) == 0;
+
+		for(int tileIndex = 0; tileIndex < tiles.length; tileIndex++)
+		{
+			Tile tile = tiles[tileIndex];
+			if(tile == null)
+				continue;
+
+			int tx = tileIndex % tilesX;
+			int ty = tileIndex / tilesX;
+
+			if(aligned)
+			{
+				// Move the whole tile
+				int newTx = tx + (offsetX >> tileShift);
+				int newTy = ty + (offsetY >> tileShift);
+				if(newTx >= 0 && newTy >= 0 && newTx < newTilesX && newTy < newTilesY)
+					newTiles[newTy * newTilesX + newTx] = tile;
+				continue;
+			}
+
+			// Copy the tile's pixels cell by cell
+			for(int cell = 0; cell < tileArea; cell++)
+			{
+				if(tile.planes[0][cell] == emptyPixel)
+					continue;
+
+				int newX = (tx << tileShift) + (cell & tileMask) + offsetX;
+				int newY = (ty << tileShift) + (cell >>> tileShift) + offsetY;
+				if(newX < 0 || newY < 0 || newX >= newWidth || newY >= newHeight)
+					continue;
+
+				int newTileIndex = (newY >> tileShift) * newTilesX + (newX >> tileShift);
+				Tile target = newTiles[newTileIndex];
+				if(target == null)
+				{
+					target = new Tile(owner);
+					newTiles[newTileIndex] = target;
+				}
+
+				int newCell = cellIndexOf(newX, newY);
+				for(int slot = 0; slot < tile.planes.length && tile.planes[slot][cell] != emptyPixel; slot++)
+				{
+					if(slot == target.planes.length)
+						target.addPlane();
+
+					target.planes[slot][newCell] = tile.planes[slot][cell];
+					target.addLayerCount(unpackLayerIndex(tile.planes[slot][cell]), 1);
+					target.size++;
+				}
+			}
+		}
+
+		tiles = newTiles;
+		sharedDirectory = false;
+		tilesX = newTilesX;
+		tilesY = newTilesY;
+		width = newWidth;
+		height = newHeight;
+
+		// Moved tiles on the right and bottom edges may hold pixels outside of the raster
+		if(aligned)
+			clipEdgeTiles();
+
+		// Recount the pixels and tiles that made it into the new directory
+		size = 0;
+		tileCount = 0;
+		for(Tile tile : tiles)
+		{
+			if(tile != null)
+			{
+				size += tile.size;
+				tileCount++;
+			}
+		}
+
+		reindexLayers();
+
+		modCount++;
+	}
+
+	/**
+	 * Removes the pixels of the last tile column and row which lie outside of the raster,
+	 * releasing the tiles that become empty.
+	 */
+	private void clipEdgeTiles()
+	{
+		for(int tileIndex = 0; tileIndex < tiles.length; tileIndex++)
+		{
+			Tile tile = tiles[tileIndex];
+			if(tile == null)
+				continue;
+
+			// The amount of columns and rows of this tile that are inside the raster
+			int insideX = Math.min(width - ((tileIndex % tilesX) << tileShift), tileSize);
+			int insideY = Math.min(height - ((tileIndex / tilesX) << tileShift), tileSize);
+			if(insideX == tileSize && insideY == tileSize)
+				continue;
+
+			for(int cell = 0; cell < tileArea; cell++)
+			{
+				if((cell & tileMask) < insideX && (cell >>> tileShift) < insideY)
+					continue;
+
+				// Only copy a shared tile once it is known to have pixels outside of the raster
+				if(tile.planes[0][cell] != emptyPixel)
+					tile = writableTile(tileIndex);
+
+				for(int slot = 0; slot < tile.planes.length && tile.planes[slot][cell] != emptyPixel; slot++)
+				{
+					tile.addLayerCount(unpackLayerIndex(tile.planes[slot][cell]), -1);
+					tile.planes[slot][cell] = emptyPixel;
+					tile.size--;
+				}
+			}
+
+			if(tile.size == 0)
+				tiles[tileIndex] = null;
+		}
+	}
+
+	/**
+	 * @return the amount of layer indices used by the packed pixels
+	 */
+	int getLayerCount()
+	{
+		return layerCount;
+	}
+
+	/** A function which is called for the packed value of every pixel in the raster */
+	@FunctionalInterface
+	interface PackedPixelVisitor
+	{
+		/**
+		 * Called for a single pixel in the raster.
+		 * @param x			the x-coordinate of the pixel
+		 * @param y			the y-coordinate of the pixel
+		 * @param packed	the packed layer index and brightness of the pixel
+		 */
+		void visit(int x, int y, int packed);
+	}
+
+	/** A function which is called for every pixel in the raster */
+	@FunctionalInterface
+	public interface PixelVisitor
+	{
+		/**
+		 * Called for a single pixel in the raster.
+		 * @param x					the x-coordinate of the pixel
+		 * @param y					the y-coordinate of the pixel
+		 * @param layer				the layer of the pixel
+		 * @param brightnessFactor	the brightness factor of the pixel
+		 */
+		void visit(int x, int y, Layer layer, double brightnessFactor);
+	}
+
+	/**
+	 * A square block of {@link #tileSize} by {@link #tileSize} cells.
+	 * <code>planes[slot][ly * tileSize + lx]</code> is the packed pixel of the
+	 * cell (lx, ly) of the tile in that slot, or {@link #emptyPixel}.
+	 */
+	private static class Tile
+	{
+		/** The slot planes of the tile, a tile always has at least one plane */
+		private int[][] planes = new int[][] { new int[tileArea] };
+
+		/** The amount of pixels stored in the tile */
+		private int size = 0;
+
+		/** The amount of pixels of each layer stored in the tile, indexed by their layer index */
+		private int[] layerCounts = new int[0];
+
+		/** The identity of the raster which may write to this tile */
+		private final Object owner;
+
+		/**
+		 * Creates an empty tile.
+		 * @param owner	the identity of the raster which may write to the tile
+		 */
+		private Tile(Object owner)
+		{
+			this.owner = owner;
+		}
+
+		/**
+		 * Copy constructor - copies the pixels of <code>other</code>.
+		 * @param other	the tile to copy the pixels from
+		 * @param owner	the identity of the raster which may write to the copy
+		 */
+		private Tile(Tile other, Object owner)
+		{
+			this.owner = owner;
+			planes = new int[other.planes.length][];
+			for(int slot = 0; slot < planes.length; slot++)
+				planes[slot] = other.planes[slot].clone();
+
+			size = other.size;
+			layerCounts = other.layerCounts.clone();
+		}
+
+		/**
+		 * Changes the amount of pixels of a layer stored in the tile.
+		 * @param layerIndex	the index of the layer
+		 * @param delta			the change in the amount of pixels
+		 * @return the new amount of pixels of the layer in the tile
+		 */
+		private int addLayerCount(int layerIndex, int delta)
+		{
+			if(layerIndex >= layerCounts.length)
+			{
+				int[] grown = new int[Math.max(layerIndex + 1, layerCounts.length * 2)];
+				System.arraycopy(layerCounts, 0, grown, 0, layerCounts.length);
+				layerCounts = grown;
+			}
+
+			layerCounts[layerIndex] += delta;
+			return layerCounts[layerIndex];
+		}
+
+		/** Allocates one more slot plane */
+		private void addPlane()
+		{
+			int[][] grown = new int[planes.length + 1][];
+			System.arraycopy(planes, 0, grown, 0, planes.length);
+			grown[planes.length] = new int[tileArea];
+			planes = grown;
+		}
+	}
+
+	/**
+	 * Walks through the pixels of the raster tile by tile, then row by row and slot by slot.
+	 * The pixel the cursor is on can be removed without breaking the iteration.
+	 */
+	public class Cursor
+	{
+		/** The tile, cell and slot of the next pixel */
+		private int tileIndex = 0, cell = 0, slot = -1;
+
+		/** The tile, cell and slot of the current pixel, -1 if there isn't one */
+		private int currentTileIndex = -1, currentCell = -1, currentSlot = -1;
+
+		/** The tile the current pixel is in */
+		private Tile currentTile = null;
+
+		/** The modification count the cursor expects the raster to have */
+		private int expectedModCount = modCount;
+
+		/** Creates a cursor positioned before the first pixel */
+		private Cursor()
+		{
+			advance();
+		}
+
+		/**
+		 * @return whether there are more pixels to walk through
+		 */
+		public boolean hasNext()
+		{
+			return tileIndex < tiles.length;
+		}
+
+		/** Moves the cursor to the next pixel */
+		public void next()
+		{
+			if(expectedModCount != modCount)
+				throw new ConcurrentModificationException();
+
+			if(!hasNext())
+				throw new NoSuchElementException();
+
+			currentTileIndex = tileIndex;
+			currentTile = tiles[tileIndex];
+			currentCell = cell;
+			currentSlot = slot;
+			advance();
+		}
+
+		/** Removes the current pixel from the raster */
+		public void remove()
+		{
+			if(currentTileIndex < 0)
+				throw new IllegalStateException();
+
+			if(expectedModCount != modCount)
+				throw new ConcurrentModificationException();
+
+			removeSlot(currentTileIndex, currentCell, currentSlot);
+			expectedModCount = modCount;
+
+			// The higher slots of the same cell have moved down by one
+			if(tileIndex == currentTileIndex && cell == currentCell)
+				slot--;
+
+			currentTileIndex = -1;
+			currentCell = -1;
+			currentSlot = -1;
+		}
+
+		/**
+		 * @return the x-coordinate of the current pixel
+		 */
+		public int getX()
+		{
+			return ((currentTileIndex % tilesX) << tileShift) + (currentCell & tileMask);
+		}
+
+		/**
+		 * @return the y-coordinate of the current pixel
+		 */
+		public int getY()
+		{
+			return ((currentTileIndex / tilesX) << tileShift) + (currentCell >>> tileShift);
+		}
+
+		/**
+		 * @return the layer of the current pixel
+		 */
+		public Layer getLayer()
+		{
+			return layers[unpackLayerIndex(currentTile.planes[currentSlot][currentCell])];
+		}
+
+		/**
+		 * @return the brightness factor of the current pixel
+		 */
+		public double getBrightnessFactor()
+		{
+			return unpackBrightness(currentTile.planes[currentSlot][currentCell]);
+		}
+
+		/** Moves {@link #tileIndex}, {@link #cell} and {@link #slot} to the next occupied slot */
+		private void advance()
+		{
+			slot++;
+			while(tileIndex < tiles.length)
+			{
+				Tile tile = tiles[tileIndex];
+				if(tile != null)
+				{
+					while(cell < tileArea)
+					{
+						if(slot < tile.planes.length && tile.planes[slot][cell] != emptyPixel)
+							return;
+
+						cell++;
+						slot = 0;
+					}
+				}
+
+				tileIndex++;
+				cell = 0;
+				slot = 0;
+			}
+		}
+	}
+}
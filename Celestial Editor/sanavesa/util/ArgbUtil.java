@@ -0,0 +1,117 @@
+/***************************************************************************************************************************
+ * Class:		ArgbUtil.java
+ * Author:		Mohammad Alali
+ * 
+ * Description:	Contains useful functions for colors packed into a single int as 0xAARRGGBB, non-premultiplied. It is used
+ * 				to composite images in software without allocating color objects.
+ * 	
+ * Attributes: 	
+ * 				N/A
+ * 		
+ * Methods:		
+ * 				static int toArgb(Color, double)
+ * 				static int fade(int, double)
+ * 				static int tint(int, int)
+ * 				static int blend(int, int)
+ * 
+ ***************************************************************************************************************************/
+package sanavesa.util;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Contains useful functions for colors packed into a single int
+ * as <code>0xAARRGGBB</code>, non-premultiplied.
+ * <p>
+ * The ArgbUtil class cannot be instantiated.
+ * </p>
+ * @author Mohammad Alali
+ */
+public class ArgbUtil
+{
+	/** Private constructor to disallow instantiation of this class */
+	private ArgbUtil() {}
+	
+	/**
+	 * @param color				the color to convert
+	 * @param opacityFactor		the amount by which the opacity is multiplied
+	 * @return	the color as a non-premultiplied ARGB value
+	 */
+	public static int toArgb(Color color, double opacityFactor)
+	{
+		int a = (int) Math.round(color.getOpacity() * opacityFactor * 255);
+		int r = (int) Math.round(color.getRed() * 255);
+		int g = (int) Math.round(color.getGreen() * 255);
+		int b = (int) Math.round(color.getBlue() * 255);
+		return (a << 24) | (r << 16) | (g << 8) | b;
+	}
+	
+	/**
+	 * @param argb				the ARGB value
+	 * @param opacityFactor		the amount by which the opacity is multiplied, in the range [0, 1]
+	 * @return	the ARGB value with its opacity multiplied
+	 */
+	public static int fade(int argb, double opacityFactor)
+	{
+		int a = (int) Math.round((argb >>> 24) * opacityFactor);
+		return (a << 24) | (argb & 0xFFFFFF);
+	}
+	
+	/**
+	 * Mixes the color channels of the ARGB value towards the tint, keeping its opacity.
+	 * The opacity of the tint is the amount of mixing, a fully opaque tint replaces the color channels.
+	 * @param argb		the ARGB value
+	 * @param tint		the ARGB tint, where its alpha is the amount of mixing
+	 * @return	the tinted ARGB value
+	 */
+	public static int tint(int argb, int tint)
+	{
+		int amount = tint >>> 24;
+		if(amount == 0)
+			return argb;
+		
+		int inverse = 255 - amount;
+		int r = (((tint >> 16) & 0xFF) * amount + ((argb >> 16) & 0xFF) * inverse + 127) / 255;
+		int g = (((tint >> 8) & 0xFF) * amount + ((argb >> 8) & 0xFF) * inverse + 127) / 255;
+		int b = ((tint & 0xFF) * amount + (argb & 0xFF) * inverse + 127) / 255;
+		return (argb & 0xFF000000) | (r << 16) | (g << 8) | b;
+	}
+	
+	/**
+	 * Blends the source over the destination, the same way a canvas draws a color on top of another.
+	 * @param source		the ARGB color drawn on top
+	 * @param destination	the ARGB color below
+	 * @return	the blended ARGB color
+	 */
+	public static int blend(int source, int destination)
+	{
+		int sourceAlpha = source >>> 24;
+		if(sourceAlpha == 255)
+			return source;
+		
+		if(sourceAlpha == 0)
+			return destination;
+		
+		int destinationAlpha = destination >>> 24;
+		
+		// Fast path for opaque destinations, such as a background color
+		if(destinationAlpha == 255)
+		{
+			int inverse = 255 - sourceAlpha;
+			int r = (((source >> 16) & 0xFF) * sourceAlpha + ((destination >> 16) & 0xFF) * inverse + 127) / 255;
+			int g = (((source >> 8) & 0xFF) * sourceAlpha + ((destination >> 8) & 0xFF) * inverse + 127) / 255;
+			int b = ((source & 0xFF) * sourceAlpha + (destination & 0xFF) * inverse + 127) / 255;
+			return 0xFF000000 | (r << 16) | (g << 8) | b;
+		}
+		
+		// The destination's contribution, scaled by 255
+		int destinationWeight = destinationAlpha * (255 - sourceAlpha);
+		int outAlpha255 = sourceAlpha * 255 + destinationWeight;
+		int half = outAlpha255 / 2;
+		int r = (((source >> 16) & 0xFF) * sourceAlpha * 255 + ((destination >> 16) & 0xFF) * destinationWeight + half) / outAlpha255;
+		int g = (((source >> 8) & 0xFF) * sourceAlpha * 255 + ((destination >> 8) & 0xFF) * destinationWeight + half) / outAlpha255;
+		int b = ((source & 0xFF) * sourceAlpha * 255 + (destination & 0xFF) * destinationWeight + half) / outAlpha255;
+		int a = (outAlpha255 + 127) / 255;
+		return (a << 24) | (r << 16) | (g << 8) | b;
+	}
+}
@@ -0,0 +1,118 @@
+/***************************************************************************************************************************
+ * Class:		Rasterizer.java
+ * Author:		Mohammad Alali
+ *
+ * Description:	Contains integer rasterizers which visit the cells covered by simple shapes, such as lines and circles.
+ * 				They only use integer arithmetic, so the same shape always covers the same cells.
+ *
+ * Attributes:
+ * 				N/A
+ *
+ * Methods:
+ * 				static void line(int, int, int, int, CellVisitor)
+ * 				static void circle(int, int, int, CellVisitor)
+ *
+ ***************************************************************************************************************************/
+package sanavesa.util;
+
+/**
+ * Contains integer rasterizers which visit the cells covered by lines and circles.
+ * <p>
+ * The Rasterizer class cannot be instantiated.
+ * </p>
+ * @author Mohammad Alali
+ */
+public class Rasterizer
+{
+	/** Private constructor to disallow instantiation of this class */
+	private Rasterizer() {}
+
+	/**
+	 * Visits every cell of the line between the two cells, both included, using Bresenham's algorithm.
+	 * Each cell is visited once, from the start to the end.
+	 * @param x0		the x-coordinate of the start cell
+	 * @param y0		the y-coordinate of the start cell
+	 * @param x1		the x-coordinate of the end cell
+	 * @param y1		the y-coordinate of the end cell
+	 * @param visitor	called for each cell of the line
+	 */
+	public static void line(int x0, int y0, int x1, int y1, CellVisitor visitor)
+	{
+		int dx = Math.abs(x1 - x0);
+		int dy = -Math.abs(y1 - y0);
+		int stepX = (x0 < x1) ? 1 : -1;
+		int stepY = (y0 < y1) ? 1 : -1;
+		int error = dx + dy;
+
+		while(true)
+		{
+			visitor.visit(x0, y0);
+			if(x0 == x1 && y0 == y1)
+				return;
+
+			// Step along whichever axes keep the cells closest to the line
+			int error2 = 2 * error;
+			if(error2 >= dy)
+			{
+				error += dy;
+				x0 += stepX;
+			}
+			if(error2 <= dx)
+			{
+				error += dx;
+				y0 += stepY;
+			}
+		}
+	}
+
+	/**
+	 * Visits every cell of the outline of the circle, using the midpoint circle algorithm.
+	 * The cells where the eight octants meet may be visited more than once.
+	 * @param centerX	the x-coordinate of the center cell
+	 * @param centerY	the y-coordinate of the center cell
+	 * @param radius	the radius of the circle in cells
+	 * @param visitor	called for each cell of the outline
+	 */
+	public static void circle(int centerX, int centerY, int radius, CellVisitor visitor)
+	{
+		int x = radius;
+		int y = 0;
+		int error = 0;
+
+		while(x >= y)
+		{
+			// Mirror the cell of the first octant into the other seven
+			visitor.visit(centerX + x, centerY + y);
+			visitor.visit(centerX + y, centerY + x);
+			visitor.visit(centerX - y, centerY + x);
+			visitor.visit(centerX - x, centerY + y);
+			visitor.visit(centerX - x, centerY - y);
+			visitor.visit(centerX - y, centerY - x);
+			visitor.visit(centerX + y, centerY - x);
+			visitor.visit(centerX + x, centerY - y);
+
+			if(error <= 0)
+			{
+				y += 1;
+				error += 2 * y + 1;
+			}
+			if(error > 0)
+			{
+				x -= 1;
+				error -= 2 * x + 1;
+			}
+		}
+	}
+
+	/** A function which is called for every cell covered by a shape */
+	@FunctionalInterface
+	public interface CellVisitor
+	{
+		/**
+		 * Called for a single cell covered by the shape.
+		 * @param x		the x-coordinate of the cell
+		 * @param y		the y-coordinate of the cell
+		 */
+		void visit(int x, int y);
+	}
+}